@@ -1,3 +1,6 @@
+-- Reference schema. The application applies the same changes as versioned
+-- migrations in DatabaseInitializer; add new changes there first.
+
 CREATE DATABASE IF NOT EXISTS bangla_bank;
 
 USE bangla_bank;
@@ -16,7 +19,9 @@ CREATE TABLE IF NOT EXISTS accounts (
     address TEXT,
     balance DECIMAL(15, 2) DEFAULT 0.00,
     blocked BOOLEAN DEFAULT FALSE,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    opening_balance DECIMAL(15, 2) NULL,
+    version BIGINT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS transactions (
@@ -27,3 +32,136 @@ CREATE TABLE IF NOT EXISTS transactions (
     timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (card_number) REFERENCES accounts(card_number)
 );
+
+CREATE INDEX idx_transactions_card_time ON transactions (card_number, timestamp, id);
+CREATE INDEX idx_transactions_card_type_time ON transactions (card_number, transaction_type, timestamp, amount);
+CREATE INDEX idx_transactions_time ON transactions (timestamp);
+
+-- Lets AccountNumberFilter catch up on accounts created since its last scan
+CREATE INDEX idx_accounts_created_at ON accounts (created_at);
+
+-- Running per-day totals used for the daily deposit/withdraw limits.
+-- Maintained by DatabaseAccountService in the same transaction as the ledger insert;
+-- rebuild from the ledger with DailyUsageMaintenance.
+CREATE TABLE IF NOT EXISTS daily_usage (
+    card_number VARCHAR(20) NOT NULL,
+    usage_date DATE NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    total_amount DECIMAL(15, 2) NOT NULL DEFAULT 0.00,
+    txn_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (card_number, usage_date, transaction_type)
+);
+
+-- Block-allocated account and card numbers (see SequenceAllocator)
+CREATE TABLE IF NOT EXISTS number_sequences (
+    name VARCHAR(40) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+
+INSERT IGNORE INTO number_sequences (name, next_value) VALUES
+    ('account_number', 100000000000),
+    ('card_number', 10000000000);
+
+-- Card-number hash bucket -> owning shard; frozen while a bucket is being moved
+CREATE TABLE IF NOT EXISTS shard_buckets (
+    bucket INT PRIMARY KEY,
+    shard_id INT NOT NULL,
+    frozen BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+-- Globally unique keys (PHONE, EMAIL, NID, ACCOUNT) -> card number
+CREATE TABLE IF NOT EXISTS account_directory (
+    key_type VARCHAR(10) NOT NULL,
+    key_value VARCHAR(100) NOT NULL,
+    card_number VARCHAR(20) NOT NULL,
+    PRIMARY KEY (key_type, key_value),
+    INDEX idx_account_directory_card (card_number)
+);
+
+-- One row per bucket on every shard; writers lock their bucket's row and
+-- ShardRebalancer fences a bucket here before copying it away
+CREATE TABLE IF NOT EXISTS bucket_fences (
+    bucket INT PRIMARY KEY,
+    fenced BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+INSERT IGNORE INTO bucket_fences (bucket)
+    WITH RECURSIVE n (i) AS (SELECT 0 UNION ALL SELECT i + 1 FROM n WHERE i < 31)
+    SELECT a.i * 32 + b.i FROM n a CROSS JOIN n b;
+
+-- Cold history, moved out of transactions by TransactionArchiver. No foreign
+-- key, since partitioned InnoDB tables can't have one; the archiver splits
+-- one partition per month off pmax
+CREATE TABLE IF NOT EXISTS transactions_archive (
+    id INT NOT NULL,
+    card_number VARCHAR(20) NOT NULL,
+    amount DECIMAL(15, 2) NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, timestamp),
+    INDEX idx_transactions_archive_card_time (card_number, timestamp, id),
+    INDEX idx_transactions_archive_card_id (card_number, id)
+) ROW_FORMAT=COMPRESSED
+PARTITION BY RANGE (UNIX_TIMESTAMP(timestamp)) (
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+-- Everything before archived_before may be in the archive; NULL until the first run
+CREATE TABLE IF NOT EXISTS transaction_archive_state (
+    id INT PRIMARY KEY,
+    archived_before TIMESTAMP NULL
+);
+
+INSERT IGNORE INTO transaction_archive_state (id, archived_before) VALUES (1, NULL);
+
+-- Event-sourced balances: balance as of last_event_id; events after it are added on read
+CREATE TABLE IF NOT EXISTS balance_snapshots (
+    card_number VARCHAR(20) PRIMARY KEY,
+    balance DECIMAL(15, 2) NOT NULL,
+    last_event_id INT NOT NULL,
+    taken_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Retry-safe money movements; counterparty is a transfer's recipient card
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idem_key VARCHAR(64) PRIMARY KEY,
+    operation VARCHAR(20) NOT NULL,
+    card_number VARCHAR(20) NOT NULL,
+    counterparty VARCHAR(20) NULL,
+    amount DECIMAL(15, 2) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    INDEX idx_idempotency_keys_expiry (expires_at),
+    INDEX idx_idempotency_keys_card (card_number)
+);
+
+-- End-of-day settlement (see SettlementJob): one row per card-number range,
+-- completed_at is the checkpoint a rerun resumes from
+CREATE TABLE IF NOT EXISTS settlement_ranges (
+    settlement_date DATE NOT NULL,
+    range_no INT NOT NULL,
+    after_card VARCHAR(20) NULL,
+    through_card VARCHAR(20) NULL,
+    cards INT NULL,
+    ledger_rows BIGINT NULL,
+    discrepancies INT NULL,
+    completed_at TIMESTAMP NULL,
+    PRIMARY KEY (settlement_date, range_no)
+);
+
+CREATE TABLE IF NOT EXISTS settlement_totals (
+    settlement_date DATE NOT NULL,
+    range_no INT NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    total_amount DECIMAL(20, 2) NOT NULL,
+    txn_count BIGINT NOT NULL,
+    PRIMARY KEY (settlement_date, range_no, transaction_type)
+);
+
+CREATE TABLE IF NOT EXISTS settlement_discrepancies (
+    settlement_date DATE NOT NULL,
+    card_number VARCHAR(20) NOT NULL,
+    stored_balance DECIMAL(15, 2) NULL,
+    ledger_balance DECIMAL(20, 2) NULL,
+    PRIMARY KEY (settlement_date, card_number)
+);
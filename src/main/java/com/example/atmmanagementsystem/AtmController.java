@@ -3,8 +3,9 @@ package com.example.atmmanagementsystem;
 import com.example.atmmanagementsystem.api.SessionManager;
 import com.example.atmmanagementsystem.api.dto.LoginResponse;
 import com.example.atmmanagementsystem.model.Account;
-import com.example.atmmanagementsystem.service.AccountService;
+import com.example.atmmanagementsystem.model.Money;
 import com.example.atmmanagementsystem.service.ApiAccountService;
+import com.example.atmmanagementsystem.service.CachingAccountService;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
@@ -70,7 +71,10 @@ public class AtmController {
     private String transferRecipientValue;
     private int failedAttempts = 0;
 
-    private final ApiAccountService apiService = (ApiAccountService) AccountService.getInstance();
+    private final ApiAccountService apiService = new ApiAccountService();
+    // Shared by every controller: restoreSession runs on a new one after each mini statement.
+    // Mutations of the card go through it (or invalidate it) so it never shows an old balance
+    private static final CachingAccountService accountCache = new CachingAccountService(new ApiAccountService());
 
     @FXML
     public void initialize() {
@@ -242,16 +246,16 @@ public class AtmController {
             System.out.println("Session: " + SessionManager.getInstance());
             System.out.println("Amount: " + input);
 
-            double amount = Double.parseDouble(input);
+            Money amount = Money.parse(input);
 
             runApiTaskVoid(() -> {
-                apiService.deposit(currentCardNumber, amount);
+                accountCache.deposit(currentCardNumber, amount);
                 ((ApiAccountService) apiService).refreshSessionBalance(currentCardNumber);
             }, () -> {
-                String balanceStr = String.format("%.2f", SessionManager.getInstance().getBalance());
+                String balanceStr = SessionManager.getInstance().getBalance().toString();
                 System.out.println("Deposit successful. New balance from API: " + balanceStr);
                 screenMessage
-                        .setText("Deposited " + String.format("%.0f", amount) + " TK. Balance: " + balanceStr + " TK");
+                        .setText("Deposited " + amount + " TK. Balance: " + balanceStr + " TK");
                 currentMode = AtmMode.LOGGED_IN;
                 updateOptions();
             }, e -> {
@@ -276,16 +280,16 @@ public class AtmController {
             System.out.println("Session: " + SessionManager.getInstance());
             System.out.println("Amount: " + input);
 
-            double amount = Double.parseDouble(input);
+            Money amount = Money.parse(input);
 
             runApiTaskVoid(() -> {
-                apiService.withdraw(currentCardNumber, amount);
+                accountCache.withdraw(currentCardNumber, amount);
                 ((ApiAccountService) apiService).refreshSessionBalance(currentCardNumber);
             }, () -> {
-                String balanceStr = String.format("%.2f", SessionManager.getInstance().getBalance());
+                String balanceStr = SessionManager.getInstance().getBalance().toString();
                 System.out.println("Withdraw successful. New balance from API: " + balanceStr);
                 screenMessage
-                        .setText("Withdrawn " + String.format("%.0f", amount) + " TK. Balance: " + balanceStr + " TK");
+                        .setText("Withdrawn " + amount + " TK. Balance: " + balanceStr + " TK");
                 currentMode = AtmMode.LOGGED_IN;
                 updateOptions();
             }, e -> {
@@ -321,7 +325,7 @@ public class AtmController {
             return;
         }
 
-        runApiTask(() -> apiService.resetPin(currentCardNumber, input),
+        runApiTask(() -> accountCache.resetPin(currentCardNumber, input),
                 newPin -> {
                     resetSession();
                     screenMessage.setText("Success! New PIN: " + newPin + "\nPlease save it and login.");
@@ -356,7 +360,7 @@ public class AtmController {
             return;
         }
 
-        runApiTaskVoid(() -> apiService.updatePin(currentCardNumber, confirmPin),
+        runApiTaskVoid(() -> accountCache.updatePin(currentCardNumber, confirmPin),
                 () -> {
                     screenMessage.setText("PIN Changed Successfully.");
                     currentMode = AtmMode.LOGGED_IN;
@@ -434,7 +438,7 @@ public class AtmController {
             return;
         }
 
-        runApiTaskVoid(() -> apiService.blockAccount(currentCardNumber, input),
+        runApiTaskVoid(() -> accountCache.blockAccount(currentCardNumber, input),
                 () -> {
                     screenMessage.setText("Card Successfully BLOCKED. Please contact bank.");
                     resetSession();
@@ -474,7 +478,7 @@ public class AtmController {
         System.out.println("NID Proof: " + cardlessDepositNidProof);
 
         try {
-            double amount = Double.parseDouble(input);
+            Money amount = Money.parse(input);
 
             System.out.println("=== CARDLESS DEPOSIT ===");
             System.out.println("Account Number: " + cardlessDepositAccountNumber);
@@ -494,7 +498,13 @@ public class AtmController {
             }
 
             runApiTaskVoid(
-                    () -> apiService.cardlessDeposit(cardlessDepositAccountNumber, cardlessDepositNidProof, amount),
+                    () -> {
+                        try {
+                            apiService.cardlessDeposit(cardlessDepositAccountNumber, cardlessDepositNidProof, amount);
+                        } finally {
+                            accountCache.invalidateAccountNumber(cardlessDepositAccountNumber);
+                        }
+                    },
                     () -> {
                         System.out.println("Cardless deposit successful");
 
@@ -503,7 +513,7 @@ public class AtmController {
                         cardlessDepositNidProof = null;
 
                         // Store message before reset
-                        String successMsg = "Success! Deposited " + String.format("%.0f", amount) + " TK.";
+                        String successMsg = "Success! Deposited " + amount + " TK.";
 
                         resetSession();
 
@@ -588,16 +598,16 @@ public class AtmController {
 
             runApiTaskVoid(() -> {
                 if (transferType == TransferType.ACCOUNT) {
-                    apiService.transferToAccount(currentCardNumber, transferRecipientValue, amount);
+                    accountCache.transferToAccount(currentCardNumber, transferRecipientValue, Money.ofTaka(amount));
                 } else {
-                    apiService.transferToCard(currentCardNumber, transferRecipientValue, amount);
+                    accountCache.transferToCard(currentCardNumber, transferRecipientValue, Money.ofTaka(amount));
                 }
                 ((ApiAccountService) apiService).refreshSessionBalance(currentCardNumber);
             }, () -> {
                 String targetLabel = transferType == TransferType.ACCOUNT ? "account" : "card";
                 String successMsg = "Transfer successful. Sent " + amount + " TK to " + targetLabel + " "
                         + transferRecipientValue + ". Balance: "
-                        + String.format("%.2f", SessionManager.getInstance().getBalance()) + " TK";
+                        + SessionManager.getInstance().getBalance().toString() + " TK";
 
                 transferType = null;
                 transferRecipientValue = null;
@@ -736,8 +746,8 @@ public class AtmController {
                 break;
             case "L2": // Check Balance
                 // Use session balance
-                double balance = SessionManager.getInstance().getBalance();
-                screenMessage.setText("Your Current Balance is: " + String.format("%.2f", balance) + " TK");
+                Money balance = SessionManager.getInstance().getBalance();
+                screenMessage.setText("Your Current Balance is: " + balance + " TK");
                 break;
             case "R1": // Deposit
                 currentMode = AtmMode.DEPOSIT_INPUT;
@@ -856,7 +866,7 @@ public class AtmController {
         this.currentMode = AtmMode.LOGGED_IN;
         this.failedAttempts = 0;
 
-        runApiTask(() -> apiService.findByCardNumber(cardNumber).orElse(null),
+        runApiTask(() -> accountCache.findByCardNumber(cardNumber).orElse(null),
                 acc -> {
                     if (acc != null) {
                         screenMessage.setText("Welcome Back, " + acc.getName());
@@ -1,7 +1,7 @@
 package com.example.atmmanagementsystem;
 
 import com.example.atmmanagementsystem.model.Account;
-import com.example.atmmanagementsystem.service.AccountService;
+import com.example.atmmanagementsystem.model.Money;
 import com.example.atmmanagementsystem.service.ApiAccountService;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
@@ -56,7 +56,7 @@ public class BanglaBankController {
     @FXML
     private VBox resultContainer;
 
-    private final ApiAccountService apiService = (ApiAccountService) AccountService.getInstance();
+    private final ApiAccountService apiService = new ApiAccountService();
 
     @FXML
     public void initialize() {
@@ -126,17 +126,17 @@ public class BanglaBankController {
             return;
         }
 
-        double deposit;
+        Money deposit;
         try {
             String normalized = depositText == null ? "" : depositText.trim().replace(',', '.');
-            deposit = Double.parseDouble(normalized);
+            deposit = Money.parse(normalized);
         } catch (Exception e) {
             errorLabel.setText("Invalid deposit amount");
             return;
         }
 
-        if (deposit < Account.MIN_INITIAL_DEPOSIT) {
-            errorLabel.setText(String.format("Initial deposit must be at least %.2f", Account.MIN_INITIAL_DEPOSIT));
+        if (deposit.isLessThan(Account.MIN_INITIAL_DEPOSIT)) {
+            errorLabel.setText("Initial deposit must be at least " + Account.MIN_INITIAL_DEPOSIT);
             return;
         }
 
@@ -173,7 +173,7 @@ public class BanglaBankController {
             out.append("Account#:    ").append(acc.getAccountNumber()).append("\n");
             out.append("Card#:       ").append(acc.getCardNumber()).append("\n");
             out.append("PIN:         ").append(acc.getPin()).append("\n");
-            out.append("Balance:     ").append(String.format("%.2f", acc.getBalance())).append("\n\n");
+            out.append("Balance:     ").append(acc.getBalance()).append("\n\n");
 
             outputArea.setText(out.toString());
             createResultLabel.setText("New card: " + acc.getCardNumber() + "   PIN: " + acc.getPin());
@@ -1,16 +1,18 @@
 package com.example.atmmanagementsystem;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.example.atmmanagementsystem.model.Transaction;
-import com.example.atmmanagementsystem.service.AccountService;
+import com.example.atmmanagementsystem.model.TransactionPage;
 import com.example.atmmanagementsystem.service.ApiAccountService;
-import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
+import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
@@ -19,7 +21,9 @@ import javafx.scene.control.TableView;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Locale;
 
@@ -37,25 +41,41 @@ public class MiniStatementController {
     @FXML
     private TableView<Transaction> trxTable;
 
+    @FXML
+    private Button newerButton;
+    @FXML
+    private Button olderButton;
+
     @FXML
     private TableColumn<Transaction, Integer> colId;
     @FXML
     private TableColumn<Transaction, String> colType;
     @FXML
-    private TableColumn<Transaction, Double> colAmount;
+    private TableColumn<Transaction, Money> colAmount;
     @FXML
     private TableColumn<Transaction, String> colDate;
 
+    private static final int PAGE_SIZE = 20;
+
     private String currentCardNumber;
-    private final ApiAccountService apiService = (ApiAccountService) AccountService.getInstance();
+    private final ApiAccountService apiService = new ApiAccountService();
     private ObservableList<Transaction> masterData = FXCollections.observableArrayList();
 
+    // Active filters and paging position; only the current page is kept in memory
+    private String filterType;
+    private String filterDateFrom;
+    private String filterDateTo;
+    private boolean transferFilter;
+    private String pageCursor;
+    private String nextCursor;
+    private final Deque<String> newerCursors = new ArrayDeque<>();
+
     @FXML
     public void initialize() {
         // Setup Columns
         colId.setCellValueFactory(data -> new SimpleIntegerProperty(data.getValue().getId()).asObject());
         colType.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getType()));
-        colAmount.setCellValueFactory(data -> new SimpleDoubleProperty(data.getValue().getAmount()).asObject());
+        colAmount.setCellValueFactory(data -> new SimpleObjectProperty<>(data.getValue().getAmount()));
 
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         colDate.setCellValueFactory(data -> {
@@ -73,17 +93,25 @@ public class MiniStatementController {
 
     public void setCardNumber(String cardNumber) {
         this.currentCardNumber = cardNumber;
-        loadData();
+        loadData(null, null, null, false);
     }
 
-    private void loadData() {
-        loadData(null, null, null, null, false);
+    /**
+     * Apply new filters and show the first (newest) page
+     */
+    private void loadData(String type, String dateFrom, String dateTo, boolean applyTransferFilter) {
+        this.filterType = type;
+        this.filterDateFrom = dateFrom;
+        this.filterDateTo = dateTo;
+        this.transferFilter = applyTransferFilter;
+        newerCursors.clear();
+        loadPage(null);
     }
 
     /**
-     * Load transactions with optional filters
+     * Load one page of transactions for the active filters
      */
-    private void loadData(String type, String dateFrom, String dateTo, Integer limit, boolean applyTransferFilter) {
+    private void loadPage(String cursor) {
         if (currentCardNumber == null) {
             System.err.println("No card number set, cannot load transactions");
             if (transactionCountLabel != null) {
@@ -93,26 +121,33 @@ public class MiniStatementController {
         }
 
         System.out.println("=== Loading transactions for card: " + currentCardNumber + " ===");
-        System.out.println("Filters - Type: " + type + ", DateFrom: " + dateFrom + 
-                          ", DateTo: " + dateTo + ", Limit: " + limit);
+        System.out.println("Filters - Type: " + filterType + ", DateFrom: " + filterDateFrom +
+                          ", DateTo: " + filterDateTo + ", Cursor: " + cursor);
         
         if (transactionCountLabel != null) {
             transactionCountLabel.setText("Loading transactions...");
         }
         
-        javafx.concurrent.Task<List<Transaction>> task = new javafx.concurrent.Task<List<Transaction>>() {
+        String type = filterType;
+        String dateFrom = filterDateFrom;
+        String dateTo = filterDateTo;
+        javafx.concurrent.Task<TransactionPage> task = new javafx.concurrent.Task<TransactionPage>() {
             @Override
-            protected List<Transaction> call() throws Exception {
-                return apiService.getTransactions(currentCardNumber, type, dateFrom, dateTo, limit);
+            protected TransactionPage call() throws Exception {
+                return apiService.getTransactionPage(currentCardNumber, type, dateFrom, dateTo, cursor, PAGE_SIZE);
             }
         };
 
         task.setOnSucceeded(e -> {
-            List<Transaction> list = task.getValue();
+            TransactionPage page = task.getValue();
+            List<Transaction> list = page.getTransactions();
+            pageCursor = cursor;
+            nextCursor = page.getNextCursor();
+            updatePagingButtons();
             masterData.clear();
             masterData.setAll(list);
             
-            if (applyTransferFilter) {
+            if (transferFilter) {
                 applyLocalTransferFilter();
             } else {
                 trxTable.setItems(masterData);
@@ -134,6 +169,31 @@ public class MiniStatementController {
         new Thread(task).start();
     }
 
+    @FXML
+    private void onOlderPage() {
+        if (nextCursor != null) {
+            newerCursors.push(pageCursor == null ? "" : pageCursor);
+            loadPage(nextCursor);
+        }
+    }
+
+    @FXML
+    private void onNewerPage() {
+        if (!newerCursors.isEmpty()) {
+            String cursor = newerCursors.pop();
+            loadPage(cursor.isEmpty() ? null : cursor);
+        }
+    }
+
+    private void updatePagingButtons() {
+        if (olderButton != null) {
+            olderButton.setDisable(nextCursor == null);
+        }
+        if (newerButton != null) {
+            newerButton.setDisable(newerCursors.isEmpty());
+        }
+    }
+
     @FXML
     private void onFilterApply() {
         String typeParams = typeFilter.getValue();
@@ -148,7 +208,6 @@ public class MiniStatementController {
 
         String dateFrom = null;
         String dateTo = null;
-        Integer limit = null;
 
         LocalDate today = LocalDate.now();
         DateTimeFormatter dateFormatter = DateTimeFormatter.ISO_LOCAL_DATE;
@@ -179,9 +238,9 @@ public class MiniStatementController {
         // For send-money filter, fetch by date and then match transfer aliases locally
         // because backends may use different names (e.g., TRANSFER, SEND_MONEY).
         if (transferFilterSelected) {
-            loadData(null, dateFrom, dateTo, limit, true);
+            loadData(null, dateFrom, dateTo, true);
         } else {
-            loadData(type, dateFrom, dateTo, limit, false);
+            loadData(type, dateFrom, dateTo, false);
         }
     }
 
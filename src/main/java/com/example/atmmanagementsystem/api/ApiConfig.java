@@ -4,8 +4,21 @@ public class ApiConfig {
     // For Development Environment
     // public static final String BASE_URL = "http://localhost:5000/api";
 
-    // For Production Environment
-    public static final String BASE_URL = "https://atm-management-system-backend.vercel.app/api";
+    // For Production Environment; -Datm.api.baseUrl points the terminal elsewhere,
+    // e.g. at LocalBackend on http://localhost:5000/api
+    public static final String BASE_URL =
+            System.getProperty("atm.api.baseUrl", "https://atm-management-system-backend.vercel.app/api");
     public static final int CONNECT_TIMEOUT_SECONDS = 10;
     public static final int READ_TIMEOUT_SECONDS = 30;
+
+    // Money-moving calls always carry an idempotency key, but are only retried
+    // when -Datm.api.idempotentRetries=true says the backend applies a key at
+    // most once (LocalBackend does; the hosted backend isn't documented to).
+    // Otherwise they are sent once with the normal timeout, and a lost response
+    // is reported as status unknown.
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final boolean MONEY_RETRIES = Boolean.getBoolean("atm.api.idempotentRetries");
+    public static final int MONEY_TIMEOUT_SECONDS = MONEY_RETRIES ? 8 : READ_TIMEOUT_SECONDS;
+    public static final int MONEY_ATTEMPTS = MONEY_RETRIES ? 3 : 1;
+    public static final long MONEY_RETRY_BACKOFF_MILLIS = 250;
 }
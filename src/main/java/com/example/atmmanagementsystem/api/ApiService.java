@@ -2,14 +2,17 @@ package com.example.atmmanagementsystem.api;
 
 import com.example.atmmanagementsystem.api.dto.*;
 import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.Money;
 import com.example.atmmanagementsystem.model.Transaction;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.IOException;
+import java.net.ConnectException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -17,16 +20,29 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 public class ApiService {
 
+    /** Message of a money-moving call whose response never arrived. */
+    public static final String STATUS_UNKNOWN = "Transaction status unknown: the bank did not respond."
+            + " Check your balance before trying again.";
+
     private static ApiService instance;
     private final Gson gson;
     private final HttpClient httpClient;
     private String authToken;
 
     private ApiService() {
-        this.gson = new GsonBuilder().create();
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(Money.class, new MoneyTypeAdapter())
+                .create();
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(ApiConfig.CONNECT_TIMEOUT_SECONDS))
                 .build();
@@ -64,7 +80,7 @@ public class ApiService {
      * Refresh the session balance by fetching from the backend
      */
     public void refreshSessionBalance(String cardNumber) throws Exception {
-        double balance = getBalance(cardNumber);
+        Money balance = getBalance(cardNumber);
         SessionManager.getInstance().setBalance(balance);
         System.out.println("Session balance refreshed: " + balance);
     }
@@ -120,7 +136,7 @@ public class ApiService {
 
     // ==================== Accounts ====================
 
-    public Account createAccount(String name, String phone, double initialDeposit,
+    public Account createAccount(String name, String phone, Money initialDeposit,
                                   String email, String gender, String profession,
                                   String nationality, String nid, String address) throws Exception {
         CreateAccountRequest request = new CreateAccountRequest(
@@ -219,11 +235,15 @@ public class ApiService {
         throw new Exception("Account not found");
     }
 
-    public double getBalance(String cardNumber) throws Exception {
+    /**
+     * One page of the admin account listing (GET /api/accounts?limit&offset).
+     * Requires an admin token.
+     */
+    public List<AccountResponse.AccountData> listAccounts(int limit, int offset) throws Exception {
         String token = getAuthToken(); // Auto-inject from session
-        
+
         HttpRequest httpRequest = HttpRequest.newBuilder()
-                .uri(URI.create(ApiConfig.BASE_URL + "/accounts/" + cardNumber + "/balance"))
+                .uri(URI.create(ApiConfig.BASE_URL + "/accounts?limit=" + limit + "&offset=" + offset))
                 .header("Authorization", "Bearer " + token)
                 .GET()
                 .timeout(Duration.ofSeconds(ApiConfig.READ_TIMEOUT_SECONDS))
@@ -232,17 +252,43 @@ public class ApiService {
         HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
 
         if (response.statusCode() == 200) {
-            BalanceResponse balanceResponse = gson.fromJson(
-                    response.body(),
-                    BalanceResponse.class
-            );
-
-            if (balanceResponse.isSuccess() && balanceResponse.getData() != null) {
-                return balanceResponse.getData().getBalance();
+            AccountListResponse listResponse = gson.fromJson(response.body(), AccountListResponse.class);
+            if (listResponse != null && listResponse.isSuccess()) {
+                return listResponse.getData() != null ? listResponse.getData() : new ArrayList<>();
             }
         }
 
-        throw new Exception("Failed to get balance");
+        throw new Exception(extractApiErrorMessage(response.body(), "Failed to list accounts"));
+    }
+
+    public Money getBalance(String cardNumber) throws Exception {
+        return await(getBalanceAsync(cardNumber));
+    }
+
+    public CompletableFuture<Money> getBalanceAsync(String cardNumber) {
+        String token = getAuthToken(); // Auto-inject from session
+        
+        HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(ApiConfig.BASE_URL + "/accounts/" + cardNumber + "/balance"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .timeout(Duration.ofSeconds(ApiConfig.READ_TIMEOUT_SECONDS))
+                .build();
+
+        return cancellable(httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString()), response -> {
+            if (response.statusCode() == 200) {
+                BalanceResponse balanceResponse = gson.fromJson(
+                        response.body(),
+                        BalanceResponse.class
+                );
+
+                if (balanceResponse.isSuccess() && balanceResponse.getData() != null) {
+                    return balanceResponse.getData().getBalance();
+                }
+            }
+
+            throw new CompletionException(new Exception("Failed to get balance"));
+        });
     }
 
     public void blockAccount(String cardNumber, String nidProof) throws Exception {
@@ -395,7 +441,24 @@ public class ApiService {
 
     // ==================== Transactions ====================
 
-    public void deposit(String cardNumber, double amount) throws Exception {
+    public void deposit(String cardNumber, Money amount) throws Exception {
+        deposit(cardNumber, amount, newIdempotencyKey());
+    }
+
+    /**
+     * Deposit with a caller-chosen idempotency key; pass the same key again to
+     * retry a deposit whose outcome is unknown.
+     */
+    public void deposit(String cardNumber, Money amount, String idempotencyKey) throws Exception {
+        await(depositAsync(cardNumber, amount, idempotencyKey));
+    }
+
+    /**
+     * Asynchronous deposit; the future fails with the same messages the blocking
+     * call throws. Cancelling it aborts the exchange in progress, which leaves
+     * the outcome unknown: retry with the same key to find out.
+     */
+    public CompletableFuture<Void> depositAsync(String cardNumber, Money amount, String idempotencyKey) {
         String token = getAuthToken(); // Auto-inject from session
         String jsonBody = "{\"amount\":" + amount + "}"; // Manually create JSON
 
@@ -404,64 +467,81 @@ public class ApiService {
         System.out.println("Amount: " + amount);
         System.out.println("Token: " + (token != null ? token.substring(0, 20) + "..." : "NULL"));
         System.out.println("JSON Body: " + jsonBody);
+        System.out.println("Idempotency-Key: " + idempotencyKey);
         System.out.println("URL: " + ApiConfig.BASE_URL + "/transactions/" + cardNumber + "/deposit");
         System.out.println("================================");
 
-        HttpRequest httpRequest = HttpRequest.newBuilder()
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
                 .uri(URI.create(ApiConfig.BASE_URL + "/transactions/" + cardNumber + "/deposit"))
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + token)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                .timeout(Duration.ofSeconds(ApiConfig.READ_TIMEOUT_SECONDS))
-                .build();
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody));
 
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        return cancellable(sendIdempotentAsync(httpRequest, idempotencyKey), response -> {
 
-        System.out.println("=== API DEPOSIT RESPONSE ===");
-        System.out.println("Status: " + response.statusCode());
-        System.out.println("Body: " + response.body());
-        System.out.println("==============================");
+            System.out.println("=== API DEPOSIT RESPONSE ===");
+            System.out.println("Status: " + response.statusCode());
+            System.out.println("Body: " + response.body());
+            System.out.println("==============================");
 
-        if (response.statusCode() == 200 || response.statusCode() == 201) {
-            System.out.println("Deposit successful");
+            if (response.statusCode() == 200 || response.statusCode() == 201) {
+                System.out.println("Deposit successful");
             
-            // Parse response to get updated balance
-            try {
-                TransactionResponse transactionResponse = gson.fromJson(
-                        response.body(),
-                        TransactionResponse.class
-                );
+                // Parse response to get updated balance
+                try {
+                    TransactionResponse transactionResponse = gson.fromJson(
+                            response.body(),
+                            TransactionResponse.class
+                    );
                 
-                if (transactionResponse != null && transactionResponse.getData() != null) {
-                    double newBalance = transactionResponse.getData().getBalance();
-                    SessionManager.getInstance().setBalance(newBalance);
-                    System.out.println("Session balance updated: " + newBalance);
+                    if (transactionResponse != null && transactionResponse.getData() != null) {
+                        Money newBalance = transactionResponse.getData().getBalance();
+                        SessionManager.getInstance().setBalance(newBalance);
+                        System.out.println("Session balance updated: " + newBalance);
+                    }
+                } catch (Exception parseEx) {
+                    System.err.println("Failed to parse deposit response: " + parseEx.getMessage());
+                    // Don't throw - deposit was successful even if we couldn't parse the balance
                 }
-            } catch (Exception parseEx) {
-                System.err.println("Failed to parse deposit response: " + parseEx.getMessage());
-                // Don't throw - deposit was successful even if we couldn't parse the balance
-            }
             
-            return;
-        }
+                return null;
+            }
         
-        // Error handling
-        String errorMsg = "Deposit failed";
-        if (response.body() != null && !response.body().isEmpty()) {
-            try {
-                ApiResponse<Object> errorResponse = gson.fromJson(response.body(), ApiResponse.class);
-                if (errorResponse != null && errorResponse.getMessage() != null) {
-                    errorMsg = errorResponse.getMessage();
+            // Error handling
+            String errorMsg = "Deposit failed";
+            if (response.body() != null && !response.body().isEmpty()) {
+                try {
+                    ApiResponse<Object> errorResponse = gson.fromJson(response.body(), ApiResponse.class);
+                    if (errorResponse != null && errorResponse.getMessage() != null) {
+                        errorMsg = errorResponse.getMessage();
+                    }
+                } catch (Exception parseEx) {
+                    System.err.println("Failed to parse error response, using raw body: " + parseEx.getMessage());
+                    errorMsg = response.body();
                 }
-            } catch (Exception parseEx) {
-                System.err.println("Failed to parse error response, using raw body: " + parseEx.getMessage());
-                errorMsg = response.body();
             }
-        }
-        throw new Exception(errorMsg);
+            throw new CompletionException(new Exception(errorMsg));
+        });
+    }
+
+    public void withdraw(String cardNumber, Money amount) throws Exception {
+        withdraw(cardNumber, amount, newIdempotencyKey());
+    }
+
+    /**
+     * Withdraw with a caller-chosen idempotency key; see
+     * {@link #deposit(String, Money, String)}.
+     */
+    public void withdraw(String cardNumber, Money amount, String idempotencyKey) throws Exception {
+        await(withdrawAsync(cardNumber, amount, idempotencyKey));
     }
 
-    public void withdraw(String cardNumber, double amount) throws Exception {
+    /**
+     * Asynchronous withdraw; the future fails with the same messages the blocking
+     * call throws. Cancelling it aborts the exchange in progress, which leaves
+     * the outcome unknown: retry with the same key to find out.
+     */
+    public CompletableFuture<Void> withdrawAsync(String cardNumber, Money amount, String idempotencyKey) {
         String token = getAuthToken(); // Auto-inject from session
         String jsonBody = "{\"amount\":" + amount + "}"; // Manually create JSON
 
@@ -470,61 +550,61 @@ public class ApiService {
         System.out.println("Amount: " + amount);
         System.out.println("Token: " + (token != null ? token.substring(0, 20) + "..." : "NULL"));
         System.out.println("JSON Body: " + jsonBody);
+        System.out.println("Idempotency-Key: " + idempotencyKey);
         System.out.println("URL: " + ApiConfig.BASE_URL + "/transactions/" + cardNumber + "/withdraw");
         System.out.println("================================");
 
-        HttpRequest httpRequest = HttpRequest.newBuilder()
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
                 .uri(URI.create(ApiConfig.BASE_URL + "/transactions/" + cardNumber + "/withdraw"))
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + token)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                .timeout(Duration.ofSeconds(ApiConfig.READ_TIMEOUT_SECONDS))
-                .build();
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody));
 
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        return cancellable(sendIdempotentAsync(httpRequest, idempotencyKey), response -> {
 
-        System.out.println("=== API WITHDRAW RESPONSE ===");
-        System.out.println("Status: " + response.statusCode());
-        System.out.println("Body: " + response.body());
-        System.out.println("================================");
+            System.out.println("=== API WITHDRAW RESPONSE ===");
+            System.out.println("Status: " + response.statusCode());
+            System.out.println("Body: " + response.body());
+            System.out.println("================================");
 
-        if (response.statusCode() == 200 || response.statusCode() == 201) {
-            System.out.println("Withdraw successful");
+            if (response.statusCode() == 200 || response.statusCode() == 201) {
+                System.out.println("Withdraw successful");
             
-            // Parse response to get updated balance
-            try {
-                TransactionResponse transactionResponse = gson.fromJson(
-                        response.body(),
-                        TransactionResponse.class
-                );
+                // Parse response to get updated balance
+                try {
+                    TransactionResponse transactionResponse = gson.fromJson(
+                            response.body(),
+                            TransactionResponse.class
+                    );
                 
-                if (transactionResponse != null && transactionResponse.getData() != null) {
-                    double newBalance = transactionResponse.getData().getBalance();
-                    SessionManager.getInstance().setBalance(newBalance);
-                    System.out.println("Session balance updated: " + newBalance);
+                    if (transactionResponse != null && transactionResponse.getData() != null) {
+                        Money newBalance = transactionResponse.getData().getBalance();
+                        SessionManager.getInstance().setBalance(newBalance);
+                        System.out.println("Session balance updated: " + newBalance);
+                    }
+                } catch (Exception parseEx) {
+                    System.err.println("Failed to parse withdraw response: " + parseEx.getMessage());
+                    // Don't throw - withdraw was successful even if we couldn't parse the balance
                 }
-            } catch (Exception parseEx) {
-                System.err.println("Failed to parse withdraw response: " + parseEx.getMessage());
-                // Don't throw - withdraw was successful even if we couldn't parse the balance
-            }
             
-            return;
-        }
+                return null;
+            }
         
-        // Error handling
-        String errorMsg = "Withdrawal failed";
-        if (response.body() != null && !response.body().isEmpty()) {
-            try {
-                ApiResponse<Object> errorResponse = gson.fromJson(response.body(), ApiResponse.class);
-                if (errorResponse != null && errorResponse.getMessage() != null) {
-                    errorMsg = errorResponse.getMessage();
+            // Error handling
+            String errorMsg = "Withdrawal failed";
+            if (response.body() != null && !response.body().isEmpty()) {
+                try {
+                    ApiResponse<Object> errorResponse = gson.fromJson(response.body(), ApiResponse.class);
+                    if (errorResponse != null && errorResponse.getMessage() != null) {
+                        errorMsg = errorResponse.getMessage();
+                    }
+                } catch (Exception parseEx) {
+                    System.err.println("Failed to parse error response, using raw body: " + parseEx.getMessage());
+                    errorMsg = response.body();
                 }
-            } catch (Exception parseEx) {
-                System.err.println("Failed to parse error response, using raw body: " + parseEx.getMessage());
-                errorMsg = response.body();
             }
-        }
-        throw new Exception(errorMsg);
+            throw new CompletionException(new Exception(errorMsg));
+        });
     }
 
     public List<Transaction> getTransactions(String cardNumber) throws Exception {
@@ -543,13 +623,32 @@ public class ApiService {
     public List<Transaction> getTransactions(String cardNumber, String type, 
                                               String dateFrom, String dateTo, 
                                               Integer limit) throws Exception {
+        return getTransactions(cardNumber, type, dateFrom, dateTo, limit, null);
+    }
+
+    /**
+     * Get one window of transaction history, newest first. Combined with
+     * {@code limit} this lets callers page through history instead of pulling
+     * the whole list in one response.
+     *
+     * @param offset Number of transactions to skip
+     */
+    public List<Transaction> getTransactions(String cardNumber, String type,
+                                              String dateFrom, String dateTo,
+                                              Integer limit, Integer offset) throws Exception {
+        return await(getTransactionsAsync(cardNumber, type, dateFrom, dateTo, limit, offset));
+    }
+
+    public CompletableFuture<List<Transaction>> getTransactionsAsync(String cardNumber, String type,
+                                                                     String dateFrom, String dateTo,
+                                                                     Integer limit, Integer offset) {
         String token = getAuthToken(); // Auto-inject from session
 
         // Build URL with query parameters
         StringBuilder urlBuilder = new StringBuilder(ApiConfig.BASE_URL + "/transactions/" + cardNumber);
         boolean hasQueryParams = false;
         
-        if (type != null || dateFrom != null || dateTo != null || limit != null) {
+        if (type != null || dateFrom != null || dateTo != null || limit != null || offset != null) {
             urlBuilder.append("?");
             hasQueryParams = true;
             
@@ -571,6 +670,11 @@ public class ApiService {
             if (limit != null) {
                 if (!first) urlBuilder.append("&");
                 urlBuilder.append("limit=").append(limit);
+                first = false;
+            }
+            if (offset != null) {
+                if (!first) urlBuilder.append("&");
+                urlBuilder.append("offset=").append(offset);
             }
         }
 
@@ -580,6 +684,7 @@ public class ApiService {
         System.out.println("Date From: " + dateFrom);
         System.out.println("Date To: " + dateTo);
         System.out.println("Limit: " + limit);
+        System.out.println("Offset: " + offset);
         System.out.println("Token: " + (token != null ? token.substring(0, 20) + "..." : "NULL"));
         System.out.println("Full URL: " + urlBuilder.toString());
         System.out.println("=====================================");
@@ -591,107 +696,107 @@ public class ApiService {
                 .timeout(Duration.ofSeconds(ApiConfig.READ_TIMEOUT_SECONDS))
                 .build();
 
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        return cancellable(httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString()), response -> {
 
-        System.out.println("=== API GET TRANSACTIONS RESPONSE ===");
-        System.out.println("Status: " + response.statusCode());
-        System.out.println("Body: " + response.body());
-        System.out.println("=====================================");
+            System.out.println("=== API GET TRANSACTIONS RESPONSE ===");
+            System.out.println("Status: " + response.statusCode());
+            System.out.println("Body: " + response.body());
+            System.out.println("=====================================");
 
-        if (response.statusCode() == 200) {
-            try {
-                String responseBody = response.body();
-                System.out.println("=== Parsing Transaction Response ===");
-                System.out.println("Full response body: " + responseBody);
+            if (response.statusCode() == 200) {
+                try {
+                    String responseBody = response.body();
+                    System.out.println("=== Parsing Transaction Response ===");
+                    System.out.println("Full response body: " + responseBody);
                 
-                // Parse using JsonObject for manual extraction
-                com.google.gson.JsonObject jsonObj = com.google.gson.JsonParser.parseString(responseBody)
-                        .getAsJsonObject();
+                    // Parse using JsonObject for manual extraction
+                    com.google.gson.JsonObject jsonObj = com.google.gson.JsonParser.parseString(responseBody)
+                            .getAsJsonObject();
                 
-                // Check if response is successful
-                boolean success = false;
-                if (jsonObj.has("success")) {
-                    success = jsonObj.get("success").getAsBoolean();
-                    System.out.println("Response success: " + success);
-                }
+                    // Check if response is successful
+                    boolean success = false;
+                    if (jsonObj.has("success")) {
+                        success = jsonObj.get("success").getAsBoolean();
+                        System.out.println("Response success: " + success);
+                    }
                 
-                // Extract the data array manually
-                List<Transaction> result = new ArrayList<>();
-                if (jsonObj.has("data") && !jsonObj.get("data").isJsonNull()) {
-                    com.google.gson.JsonArray dataArray = jsonObj.getAsJsonArray("data");
-                    System.out.println("Found data array with " + dataArray.size() + " items");
+                    // Extract the data array manually
+                    List<Transaction> result = new ArrayList<>();
+                    if (jsonObj.has("data") && !jsonObj.get("data").isJsonNull()) {
+                        com.google.gson.JsonArray dataArray = jsonObj.getAsJsonArray("data");
+                        System.out.println("Found data array with " + dataArray.size() + " items");
                     
-                    for (int i = 0; i < dataArray.size(); i++) {
-                        com.google.gson.JsonObject itemObj = dataArray.get(i).getAsJsonObject();
-                        System.out.println("\nParsing transaction item " + (i + 1) + ":");
-                        System.out.println("  Raw JSON: " + itemObj.toString());
+                        for (int i = 0; i < dataArray.size(); i++) {
+                            com.google.gson.JsonObject itemObj = dataArray.get(i).getAsJsonObject();
+                            System.out.println("\nParsing transaction item " + (i + 1) + ":");
+                            System.out.println("  Raw JSON: " + itemObj.toString());
                         
-                        try {
-                            int id = itemObj.has("id") ? itemObj.get("id").getAsInt() : 0;
-                            String cardNum = itemObj.has("card_number") ? itemObj.get("card_number").getAsString() : "";
+                            try {
+                                int id = itemObj.has("id") ? itemObj.get("id").getAsInt() : 0;
+                                String cardNum = itemObj.has("card_number") ? itemObj.get("card_number").getAsString() : "";
                             
-                            // Parse amount - could be string or number
-                            double amount = 0.0;
-                            if (itemObj.has("amount")) {
-                                com.google.gson.JsonElement amountElement = itemObj.get("amount");
-                                if (amountElement.isJsonPrimitive()) {
-                                    if (amountElement.getAsJsonPrimitive().isString()) {
-                                        amount = Double.parseDouble(amountElement.getAsString());
-                                    } else {
-                                        amount = amountElement.getAsDouble();
+                                // Parse amount - could be string or number
+                                Money amount = Money.ZERO;
+                                if (itemObj.has("amount")) {
+                                    com.google.gson.JsonElement amountElement = itemObj.get("amount");
+                                    if (amountElement.isJsonPrimitive()) {
+                                        // Same text either way; parsed exactly rather than through a double
+                                        amount = Money.parse(amountElement.getAsString());
                                     }
                                 }
-                            }
                             
-                            String transactionType = itemObj.has("transaction_type") ? itemObj.get("transaction_type").getAsString() : "";
-                            String timestamp = itemObj.has("timestamp") ? itemObj.get("timestamp").getAsString() : "";
+                                String transactionType = itemObj.has("transaction_type") ? itemObj.get("transaction_type").getAsString() : "";
+                                String timestamp = itemObj.has("timestamp") ? itemObj.get("timestamp").getAsString() : "";
                             
-                            System.out.println("  Parsed values:");
-                            System.out.println("    id: " + id);
-                            System.out.println("    cardNumber: " + cardNum);
-                            System.out.println("    amount: " + amount);
-                            System.out.println("    transactionType: " + transactionType);
-                            System.out.println("    timestamp: " + timestamp);
+                                System.out.println("  Parsed values:");
+                                System.out.println("    id: " + id);
+                                System.out.println("    cardNumber: " + cardNum);
+                                System.out.println("    amount: " + amount);
+                                System.out.println("    transactionType: " + transactionType);
+                                System.out.println("    timestamp: " + timestamp);
                             
-                            // Parse timestamp
-                            java.sql.Timestamp ts = null;
-                            if (timestamp != null && !timestamp.isEmpty()) {
-                                try {
-                                    String cleaned = timestamp.replace("Z", "").replace("T", " ");
-                                    if (cleaned.contains(".")) {
-                                        cleaned = cleaned.substring(0, cleaned.indexOf("."));
+                                // Parse timestamp
+                                java.sql.Timestamp ts = null;
+                                if (timestamp != null && !timestamp.isEmpty()) {
+                                    try {
+                                        String cleaned = timestamp.replace("Z", "").replace("T", " ");
+                                        if (cleaned.contains(".")) {
+                                            cleaned = cleaned.substring(0, cleaned.indexOf("."));
+                                        }
+                                        ts = java.sql.Timestamp.valueOf(cleaned);
+                                    } catch (Exception e) {
+                                        System.err.println("    Failed to parse timestamp: " + e.getMessage());
+                                        ts = new java.sql.Timestamp(System.currentTimeMillis());
                                     }
-                                    ts = java.sql.Timestamp.valueOf(cleaned);
-                                } catch (Exception e) {
-                                    System.err.println("    Failed to parse timestamp: " + e.getMessage());
-                                    ts = new java.sql.Timestamp(System.currentTimeMillis());
                                 }
-                            }
                             
-                            Transaction txn = new Transaction(id, cardNum, amount, transactionType, ts);
-                            result.add(txn);
-                            System.out.println("  Successfully parsed transaction: " + txn);
+                                Transaction txn = new Transaction(id, cardNum, amount, transactionType, ts);
+                                result.add(txn);
+                                System.out.println("  Successfully parsed transaction: " + txn);
                             
-                        } catch (Exception ex) {
-                            System.err.println("  Failed to parse transaction item " + (i + 1) + ": " + ex.getMessage());
-                            ex.printStackTrace();
+                            } catch (Exception ex) {
+                                System.err.println("  Failed to parse transaction item " + (i + 1) + ": " + ex.getMessage());
+                                ex.printStackTrace();
+                            }
                         }
+                    } else {
+                        System.out.println("No 'data' field found in response");
                     }
-                } else {
-                    System.out.println("No 'data' field found in response");
-                }
                 
-                System.out.println("\nTotal transactions parsed: " + result.size());
-                return result;
+                    System.out.println("\nTotal transactions parsed: " + result.size());
+                    return result;
                 
-            } catch (Exception parseEx) {
-                System.err.println("Failed to parse transactions response: " + parseEx.getMessage());
-                parseEx.printStackTrace();
-                throw new Exception("Failed to parse transactions: " + parseEx.getMessage());
+                } catch (Exception parseEx) {
+                    System.err.println("Failed to parse transactions response: " + parseEx.getMessage());
+                    parseEx.printStackTrace();
+                    throw new CompletionException(
+                            new Exception("Failed to parse transactions: " + parseEx.getMessage()));
+                }
             }
-        }
 
-        throw new Exception("Failed to get transactions - Status: " + response.statusCode());
+            throw new CompletionException(
+                    new Exception("Failed to get transactions - Status: " + response.statusCode()));
+        });
     }
 
     /**
@@ -754,7 +859,12 @@ public class ApiService {
         throw new Exception(errorMsg);
     }
 
-    public void cardlessDeposit(String accountNumber, String nidProof, double amount) throws Exception {
+    public void cardlessDeposit(String accountNumber, String nidProof, Money amount) throws Exception {
+        cardlessDeposit(accountNumber, nidProof, amount, newIdempotencyKey());
+    }
+
+    public void cardlessDeposit(String accountNumber, String nidProof, Money amount, String idempotencyKey)
+            throws Exception {
         String jsonBody = "{\"account_number\":\"" + accountNumber + "\",\"nid_proof\":\"" + nidProof + "\",\"amount\":" + amount + "}";
 
         System.out.println("==========================================");
@@ -763,18 +873,17 @@ public class ApiService {
         System.out.println("NID Proof: " + nidProof);
         System.out.println("Amount: " + amount);
         System.out.println("JSON Body: " + jsonBody);
+        System.out.println("Idempotency-Key: " + idempotencyKey);
         System.out.println("URL: " + ApiConfig.BASE_URL + "/transactions/cardless-deposit");
         System.out.println("==========================================");
 
-        HttpRequest httpRequest = HttpRequest.newBuilder()
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
                 .uri(URI.create(ApiConfig.BASE_URL + "/transactions/cardless-deposit"))
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                .timeout(Duration.ofSeconds(ApiConfig.READ_TIMEOUT_SECONDS))
-                .build();
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody));
 
         System.out.println("Sending HTTP request...");
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = sendIdempotent(httpRequest, idempotencyKey);
 
         System.out.println("==========================================");
         System.out.println("=== API CARDLESS DEPOSIT RESPONSE ===");
@@ -793,7 +902,7 @@ public class ApiService {
                 );
                 
                 if (transactionResponse != null && transactionResponse.getData() != null) {
-                    double newBalance = transactionResponse.getData().getBalance();
+                    Money newBalance = transactionResponse.getData().getBalance();
                     SessionManager.getInstance().setBalance(newBalance);
                     System.out.println("Session balance updated from response: " + newBalance);
                 } else {
@@ -824,7 +933,12 @@ public class ApiService {
         throw new Exception(errorMsg);
     }
 
-    public void transferToCard(String cardNumber, String recipientCardNumber, double amount) throws Exception {
+    public void transferToCard(String cardNumber, String recipientCardNumber, Money amount) throws Exception {
+        transferToCard(cardNumber, recipientCardNumber, amount, newIdempotencyKey());
+    }
+
+    public void transferToCard(String cardNumber, String recipientCardNumber, Money amount,
+                               String idempotencyKey) throws Exception {
         Map<String, Object> payload = new LinkedHashMap<>();
         payload.put("recipient_card_number", recipientCardNumber);
         payload.put("amount", amount);
@@ -833,11 +947,17 @@ public class ApiService {
                 cardNumber,
                 "/transactions/" + cardNumber + "/transfer/card",
                 payload,
-                "card transfer"
+                "card transfer",
+                idempotencyKey
         );
     }
 
-    public void transferToAccount(String cardNumber, String recipientAccountNumber, double amount) throws Exception {
+    public void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount) throws Exception {
+        transferToAccount(cardNumber, recipientAccountNumber, amount, newIdempotencyKey());
+    }
+
+    public void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount,
+                                  String idempotencyKey) throws Exception {
         Map<String, Object> payload = new LinkedHashMap<>();
         payload.put("recipient_account_number", recipientAccountNumber);
         payload.put("amount", amount);
@@ -846,24 +966,23 @@ public class ApiService {
                 cardNumber,
                 "/transactions/" + cardNumber + "/transfer/account",
                 payload,
-                "account transfer"
+                "account transfer",
+                idempotencyKey
         );
     }
 
     private void executeTransferRequest(String cardNumber, String endpoint, Map<String, Object> payload,
-                                        String transferType) throws Exception {
+                                        String transferType, String idempotencyKey) throws Exception {
         String token = getAuthToken();
         String jsonBody = gson.toJson(payload);
 
-        HttpRequest httpRequest = HttpRequest.newBuilder()
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
                 .uri(URI.create(ApiConfig.BASE_URL + endpoint))
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + token)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                .timeout(Duration.ofSeconds(ApiConfig.READ_TIMEOUT_SECONDS))
-                .build();
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody));
 
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = sendIdempotent(httpRequest, idempotencyKey);
         int status = response.statusCode();
 
         if (status == 200 || status == 201) {
@@ -883,6 +1002,131 @@ public class ApiService {
         throw new Exception("HTTP_" + status + ": " + parsedMessage);
     }
 
+    /**
+     * A fresh key for one logical money movement. Reuse it for every retry of
+     * that movement, and only for that.
+     */
+    public static String newIdempotencyKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Send a money-moving request with its idempotency key. With
+     * {@link ApiConfig#MONEY_RETRIES}, a lost response (timeout, dropped
+     * connection) or a transient server failure sends the same request again
+     * with the same key, which that backend applies at most once. Without it
+     * the request is sent once, and a response lost after the request may
+     * have reached the server fails with {@link #STATUS_UNKNOWN}.
+     */
+    private HttpResponse<String> sendIdempotent(HttpRequest.Builder builder, String idempotencyKey)
+            throws Exception {
+        return await(sendIdempotentAsync(builder, idempotencyKey));
+    }
+
+    /**
+     * Asynchronous {@link #sendIdempotent}. Completing the returned future
+     * early (cancel, timeout) aborts the exchange in progress and stops the
+     * retries.
+     */
+    private CompletableFuture<HttpResponse<String>> sendIdempotentAsync(HttpRequest.Builder builder,
+                                                                      String idempotencyKey) {
+        HttpRequest request = builder
+                .header(ApiConfig.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                .timeout(Duration.ofSeconds(ApiConfig.MONEY_TIMEOUT_SECONDS))
+                .build();
+
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<HttpResponse<String>>> inFlight = new AtomicReference<>();
+        result.whenComplete((response, error) -> {
+            CompletableFuture<HttpResponse<String>> exchange = inFlight.get();
+            if (exchange != null) {
+                exchange.cancel(true);
+            }
+        });
+        sendAttempt(request, idempotencyKey, 1, result, inFlight);
+        return result;
+    }
+
+    private void sendAttempt(HttpRequest request, String idempotencyKey, int attempt,
+                             CompletableFuture<HttpResponse<String>> result,
+                             AtomicReference<CompletableFuture<HttpResponse<String>>> inFlight) {
+        if (result.isDone()) {
+            return;
+        }
+        CompletableFuture<HttpResponse<String>> exchange =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        inFlight.set(exchange);
+        if (result.isDone()) {
+            exchange.cancel(true);
+            return;
+        }
+
+        exchange.whenComplete((response, error) -> {
+            boolean last = attempt >= ApiConfig.MONEY_ATTEMPTS;
+            if (error == null) {
+                int status = response.statusCode();
+                if (last || (status != 502 && status != 503 && status != 504)) {
+                    result.complete(response);
+                    return;
+                }
+                System.err.println("Request " + idempotencyKey + " got HTTP " + status + ", retrying");
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                // HttpTimeoutException included: the request may or may not have been applied
+                if (last || !(cause instanceof IOException)) {
+                    result.completeExceptionally(mayHaveBeenApplied(cause)
+                            ? new Exception(STATUS_UNKNOWN, cause) : cause);
+                    return;
+                }
+                System.err.println("Request " + idempotencyKey + " failed (" + cause + "), retrying");
+            }
+            CompletableFuture.delayedExecutor(ApiConfig.MONEY_RETRY_BACKOFF_MILLIS * attempt, TimeUnit.MILLISECONDS)
+                    .execute(() -> sendAttempt(request, idempotencyKey, attempt + 1, result, inFlight));
+        });
+    }
+
+    /**
+     * Whether a failed exchange may still have reached the server: anything
+     * but failing to connect at all.
+     */
+    private static boolean mayHaveBeenApplied(Throwable cause) {
+        return cause instanceof IOException
+                && !(cause instanceof ConnectException)
+                && !(cause instanceof HttpConnectTimeoutException);
+    }
+
+    /**
+     * {@code exchange.thenApply(handler)}, except that completing the result
+     * early (cancel, timeout) also cancels the exchange, aborting the request.
+     */
+    private static <T> CompletableFuture<T> cancellable(CompletableFuture<HttpResponse<String>> exchange,
+                                                        Function<HttpResponse<String>, T> handler) {
+        CompletableFuture<T> result = exchange.thenApply(handler);
+        result.whenComplete((value, error) -> exchange.cancel(true));
+        return result;
+    }
+
+    /**
+     * Wait for an asynchronous call the way the blocking methods always
+     * behaved: the failure's own exception is thrown, and an interrupt
+     * cancels the call.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new Exception(cause);
+        }
+    }
+
     private String extractApiErrorMessage(String responseBody, String fallback) {
         if (responseBody == null || responseBody.isEmpty()) {
             return fallback;
@@ -988,14 +1232,14 @@ public class ApiService {
     // Separate DTO class for transaction requests
     private static class TransactionRequest {
         @com.google.gson.annotations.SerializedName("amount")
-        private double amount;
+        private Money amount;
 
-        TransactionRequest(double amount) {
+        TransactionRequest(Money amount) {
             this.amount = amount;
         }
         
-        public double getAmount() { return amount; }
-        public void setAmount(double amount) { this.amount = amount; }
+        public Money getAmount() { return amount; }
+        public void setAmount(Money amount) { this.amount = amount; }
     }
 
     private static class TransactionListResponse {
@@ -1032,15 +1276,15 @@ public class ApiService {
             public String getCardNumber() { return cardNumber; }
             
             /**
-             * Gets the amount as a double value.
+             * Gets the amount as Money.
              * Parses from string since API returns amount as string.
              */
-            public double getAmount() { 
+            public Money getAmount() { 
                 try {
-                    return amount != null ? Double.parseDouble(amount) : 0.0;
+                    return amount != null ? Money.parse(amount) : Money.ZERO;
                 } catch (NumberFormatException e) {
                     System.err.println("Failed to parse amount: " + amount + " - " + e.getMessage());
-                    return 0.0;
+                    return Money.ZERO;
                 }
             }
             
@@ -0,0 +1,306 @@
+package com.example.atmmanagementsystem.api;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AuthView;
+import com.example.atmmanagementsystem.model.BalanceView;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.service.AccountService;
+import com.example.atmmanagementsystem.service.DatabaseAccountService;
+import com.example.atmmanagementsystem.service.IdempotencyKeys;
+import com.example.atmmanagementsystem.util.SecurityUtil;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the REST backend that serves the terminal's login, balance and
+ * money-moving endpoints straight from the database, for development and for
+ * exercising retries against a server that honors idempotency keys.
+ * <p>
+ * Deposits, withdrawals, transfers and cardless deposits pass the request's
+ * {@code Idempotency-Key} header to the account service, so a retried request
+ * gets the same answer without moving money twice. Backends without transfers
+ * answer 501 to them. Expired keys are purged hourly.
+ * With {@code -Datm.bloom.enabled=true} a login with an unknown card is
+ * turned away by the number filter, after at most a small catch-up scan
+ * instead of an account query.
+ * <p>
+ * Usage: {@code LocalBackend [port]}, then start the terminal with
+ * {@code -Datm.api.baseUrl=http://localhost:5000/api}, adding
+ * {@code -Datm.api.idempotentRetries=true} to let it retry money-moving calls
+ * whose response was lost. The accounts backend is the database unless
+ * {@code -Datm.accounts} names another one.
+ */
+public class LocalBackend implements AutoCloseable {
+
+    private static final String PREFIX = "/api";
+
+    private final AccountService accounts;
+    private final HttpServer server;
+    private final ScheduledExecutorService purger;
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Money.class, new MoneyTypeAdapter())
+            .create();
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public LocalBackend(AccountService accounts, int port) throws IOException {
+        this.accounts = accounts;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(PREFIX, this::handle);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-key-purger");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        server.start();
+        purger.scheduleWithFixedDelay(() -> {
+            try {
+                int purged = IdempotencyKeys.purgeExpired();
+                if (purged > 0) {
+                    System.out.println("Purged " + purged + " expired idempotency key(s)");
+                }
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Idempotency key purge failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void close() {
+        purger.shutdownNow();
+        server.stop(1);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring(PREFIX.length()).split("/");
+            // path[0] is empty: "/accounts/login" splits into "", "accounts", "login"
+            if ("POST".equals(method) && path.length == 3 && "accounts".equals(path[1])
+                    && "login".equals(path[2])) {
+                login(exchange);
+            } else if ("GET".equals(method) && path.length == 4 && "accounts".equals(path[1])
+                    && "balance".equals(path[3])) {
+                authorize(exchange, path[2]);
+                balance(exchange, path[2]);
+            } else if ("POST".equals(method) && path.length == 3 && "transactions".equals(path[1])
+                    && "cardless-deposit".equals(path[2])) {
+                cardlessDeposit(exchange);
+            } else if ("POST".equals(method) && path.length == 4 && "transactions".equals(path[1])
+                    && ("deposit".equals(path[3]) || "withdraw".equals(path[3]))) {
+                authorize(exchange, path[2]);
+                post(exchange, path[2], "deposit".equals(path[3]));
+            } else if ("POST".equals(method) && path.length == 5 && "transactions".equals(path[1])
+                    && "transfer".equals(path[3]) && ("card".equals(path[4]) || "account".equals(path[4]))) {
+                authorize(exchange, path[2]);
+                transfer(exchange, path[2], "card".equals(path[4]));
+            } else {
+                respond(exchange, 404, error("Not found"));
+            }
+        } catch (SecurityException e) {
+            respond(exchange, 401, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (UnsupportedOperationException e) {
+            respond(exchange, 501, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            respond(exchange, 500, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        JsonObject body = readBody(exchange);
+        String cardNumber = string(body, "card_number");
+        AuthView auth = accounts instanceof DatabaseAccountService
+                ? ((DatabaseAccountService) accounts).findAuth(cardNumber).orElse(null)
+                : accounts.findByCardNumber(cardNumber)
+                        .map(a -> new AuthView(a.getCardNumber(), a.getPin(), a.isBlocked())).orElse(null);
+        if (auth == null || !auth.getPinHash().equals(SecurityUtil.hashPin(string(body, "pin")))) {
+            throw new SecurityException("Invalid card number or PIN");
+        }
+        if (auth.isBlocked()) {
+            throw new SecurityException("This card is blocked");
+        }
+        Account account = accounts.findByCardNumber(cardNumber)
+                .orElseThrow(() -> new SecurityException("Invalid card number or PIN"));
+
+        byte[] tokenBytes = new byte[24];
+        random.nextBytes(tokenBytes);
+        String token = HexFormat.of().formatHex(tokenBytes);
+        sessions.put(token, cardNumber);
+
+        Map<String, Object> accountData = new LinkedHashMap<>();
+        accountData.put("account_number", account.getAccountNumber());
+        accountData.put("card_number", account.getCardNumber());
+        accountData.put("name", account.getName());
+        accountData.put("phone_number", account.getPhoneNumber());
+        accountData.put("email", account.getEmail());
+        accountData.put("balance", account.getBalance());
+        accountData.put("blocked", account.isBlocked());
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("token", token);
+        data.put("account", accountData);
+        respond(exchange, 200, success("Login successful", data));
+    }
+
+    private void balance(HttpExchange exchange, String cardNumber) throws IOException {
+        respond(exchange, 200, success("Balance retrieved", balanceData(cardNumber)));
+    }
+
+    private void post(HttpExchange exchange, String cardNumber, boolean deposit) throws IOException {
+        Money amount = amount(readBody(exchange));
+        String key = exchange.getRequestHeaders().getFirst(ApiConfig.IDEMPOTENCY_KEY_HEADER);
+        if (deposit) {
+            accounts.deposit(cardNumber, amount, key);
+        } else {
+            accounts.withdraw(cardNumber, amount, key);
+        }
+        respond(exchange, 200, success(deposit ? "Deposit successful" : "Withdrawal successful",
+                balanceData(cardNumber)));
+    }
+
+    private void transfer(HttpExchange exchange, String cardNumber, boolean toCard) throws IOException {
+        JsonObject body = readBody(exchange);
+        Money amount = amount(body);
+        String key = exchange.getRequestHeaders().getFirst(ApiConfig.IDEMPOTENCY_KEY_HEADER);
+        if (toCard) {
+            accounts.transferToCard(cardNumber, string(body, "recipient_card_number"), amount, key);
+        } else {
+            accounts.transferToAccount(cardNumber, string(body, "recipient_account_number"), amount, key);
+        }
+        respond(exchange, 200, success("Transfer successful", balanceData(cardNumber)));
+    }
+
+    private void cardlessDeposit(HttpExchange exchange) throws IOException {
+        JsonObject body = readBody(exchange);
+        String nidProof = string(body, "nid_proof");
+        Account account = accounts.findByAccountNumber(string(body, "account_number"))
+                .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        if (!nidProof.equals(account.getNid()) && !nidProof.equals(account.getPhoneNumber())) {
+            throw new IllegalArgumentException("NID verification failed");
+        }
+        String key = exchange.getRequestHeaders().getFirst(ApiConfig.IDEMPOTENCY_KEY_HEADER);
+        accounts.deposit(account.getCardNumber(), amount(body), key);
+        respond(exchange, 200, success("Deposit successful", balanceData(account.getCardNumber())));
+    }
+
+    private void authorize(HttpExchange exchange, String cardNumber) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = header != null && header.startsWith("Bearer ") ? header.substring(7) : null;
+        if (token == null || !cardNumber.equals(sessions.get(token))) {
+            throw new SecurityException("Not authorized for this card");
+        }
+    }
+
+    private Map<String, Object> balanceData(String cardNumber) {
+        Money balance;
+        if (accounts instanceof DatabaseAccountService) {
+            balance = ((DatabaseAccountService) accounts).findBalance(cardNumber)
+                    .map(BalanceView::getBalance)
+                    .orElseThrow(() -> new IllegalArgumentException("Card not found"));
+        } else {
+            balance = accounts.findByCardNumber(cardNumber)
+                    .map(Account::getBalance)
+                    .orElseThrow(() -> new IllegalArgumentException("Card not found"));
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("balance", balance);
+        return data;
+    }
+
+    private JsonObject readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonElement body = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            if (!body.isJsonObject()) {
+                throw new IllegalArgumentException("Request body must be a JSON object");
+            }
+            return body.getAsJsonObject();
+        } catch (com.google.gson.JsonParseException e) {
+            throw new IllegalArgumentException("Malformed JSON body");
+        }
+    }
+
+    private static String string(JsonObject body, String field) {
+        JsonElement value = body.get(field);
+        if (value == null || value.isJsonNull()) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value.getAsString();
+    }
+
+    private static Money amount(JsonObject body) {
+        try {
+            return Money.parse(string(body, "amount"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("amount must be a number");
+        }
+    }
+
+    private static Map<String, Object> success(String message, Object data) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", true);
+        body.put("message", message);
+        body.put("data", data);
+        return body;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", false);
+        body.put("message", message);
+        return body;
+    }
+
+    private void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        String backend = System.getProperty("atm.accounts", "database");
+        if ("api".equals(backend)) {
+            System.err.println("LocalBackend needs a database-backed -Datm.accounts, not the API itself");
+            return;
+        }
+        AccountService accounts = "database".equals(backend)
+                ? new DatabaseAccountService()
+                : AccountService.getInstance();
+
+        LocalBackend localBackend = new LocalBackend(accounts, port);
+        localBackend.start();
+        System.out.println("Local backend listening on http://localhost:" + port + PREFIX);
+    }
+}
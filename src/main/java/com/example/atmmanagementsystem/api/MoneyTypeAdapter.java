@@ -0,0 +1,41 @@
+package com.example.atmmanagementsystem.api;
+
+import com.example.atmmanagementsystem.model.Money;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link Money} as a plain JSON number such as {@code 500.00}.
+ * The backend sends amounts both as numbers and as strings (DECIMAL columns);
+ * either form is parsed from its text, so no amount goes through a double.
+ */
+class MoneyTypeAdapter extends TypeAdapter<Money> {
+
+    @Override
+    public void write(JsonWriter out, Money value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.jsonValue(value.toString());
+    }
+
+    @Override
+    public Money read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String text = in.nextString();
+        try {
+            return Money.parse(text);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException("Invalid amount '" + text + "' at " + in.getPath(), e);
+        }
+    }
+}
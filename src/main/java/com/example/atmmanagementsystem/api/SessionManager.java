@@ -1,5 +1,7 @@
 package com.example.atmmanagementsystem.api;
 
+import com.example.atmmanagementsystem.model.Money;
+
 /**
  * Session manager to store token and user info after login.
  * Acts like localStorage/sessionStorage for the JavaFX application.
@@ -12,7 +14,7 @@ public class SessionManager {
     private String cardNumber;
     private String accountNumber;
     private String name;
-    private double balance;
+    private Money balance = Money.ZERO;
     
     private SessionManager() {
         // Private constructor for singleton
@@ -29,7 +31,7 @@ public class SessionManager {
      * Save session data after successful login
      */
     public void saveSession(String token, String cardNumber, String accountNumber, 
-                           String name, double balance) {
+                           String name, Money balance) {
         this.token = token;
         this.cardNumber = cardNumber;
         this.accountNumber = accountNumber;
@@ -45,7 +47,7 @@ public class SessionManager {
         this.cardNumber = null;
         this.accountNumber = null;
         this.name = null;
-        this.balance = 0.0;
+        this.balance = Money.ZERO;
     }
     
     /**
@@ -60,14 +62,14 @@ public class SessionManager {
     public String getCardNumber() { return cardNumber; }
     public String getAccountNumber() { return accountNumber; }
     public String getName() { return name; }
-    public double getBalance() { return balance; }
+    public Money getBalance() { return balance; }
     
     // Setters (for updating balance after transactions)
     public void setToken(String token) { this.token = token; }
     public void setCardNumber(String cardNumber) { this.cardNumber = cardNumber; }
     public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
     public void setName(String name) { this.name = name; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public void setBalance(Money balance) { this.balance = balance; }
     
     @Override
     public String toString() {
@@ -0,0 +1,19 @@
+package com.example.atmmanagementsystem.api.dto;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+
+public class AccountListResponse {
+    @SerializedName("success")
+    private boolean success;
+
+    @SerializedName("message")
+    private String message;
+
+    @SerializedName("data")
+    private List<AccountResponse.AccountData> data;
+
+    public boolean isSuccess() { return success; }
+    public String getMessage() { return message; }
+    public List<AccountResponse.AccountData> getData() { return data; }
+}
@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 
 public class AccountResponse {
@@ -48,7 +49,7 @@ public class AccountResponse {
         private String address;
 
         @SerializedName("balance")
-        private double balance;
+        private Money balance;
 
         @SerializedName("created_at")
         private String createdAt;
@@ -63,7 +64,7 @@ public class AccountResponse {
         public String getNationality() { return nationality; }
         public String getNid() { return nid; }
         public String getAddress() { return address; }
-        public double getBalance() { return balance; }
+        public Money getBalance() { return balance; }
         public String getCreatedAt() { return createdAt; }
     }
 }
@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 
 public class BalanceResponse {
@@ -18,8 +19,8 @@ public class BalanceResponse {
 
     public static class BalanceData {
         @SerializedName("balance")
-        private double balance;
+        private Money balance;
 
-        public double getBalance() { return balance; }
+        public Money getBalance() { return balance; }
     }
 }
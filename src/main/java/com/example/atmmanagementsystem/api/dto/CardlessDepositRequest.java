@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 
 public class CardlessDepositRequest {
@@ -10,9 +11,9 @@ public class CardlessDepositRequest {
     private String nidProof;
 
     @SerializedName("amount")
-    private double amount;
+    private Money amount;
 
-    public CardlessDepositRequest(String accountNumber, String nidProof, double amount) {
+    public CardlessDepositRequest(String accountNumber, String nidProof, Money amount) {
         this.accountNumber = accountNumber;
         this.nidProof = nidProof;
         this.amount = amount;
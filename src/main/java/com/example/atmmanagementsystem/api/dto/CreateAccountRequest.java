@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 
 public class CreateAccountRequest {
@@ -28,11 +29,11 @@ public class CreateAccountRequest {
     private String address;
 
     @SerializedName("initial_deposit")
-    private double initialDeposit;
+    private Money initialDeposit;
 
     public CreateAccountRequest(String name, String phone, String email, String gender, 
                                  String profession, String nationality, String nid, 
-                                 String address, double initialDeposit) {
+                                 String address, Money initialDeposit) {
         this.name = name;
         this.phone = phone;
         this.email = email;
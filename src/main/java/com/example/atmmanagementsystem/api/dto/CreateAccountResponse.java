@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 
 public class CreateAccountResponse {
@@ -59,7 +60,7 @@ public class CreateAccountResponse {
         private String address;
 
         @SerializedName("balance")
-        private double balance;
+        private Money balance;
 
         @SerializedName("created_at")
         private String createdAt;
@@ -74,7 +75,7 @@ public class CreateAccountResponse {
         public String getNationality() { return nationality; }
         public String getNid() { return nid; }
         public String getAddress() { return address; }
-        public double getBalance() { return balance; }
+        public Money getBalance() { return balance; }
         public String getCreatedAt() { return createdAt; }
     }
 }
@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 
 public class LoginResponse {
@@ -69,7 +70,7 @@ public class LoginResponse {
         private String address;
 
         @SerializedName("balance")
-        private double balance;
+        private Money balance;
 
         @SerializedName("blocked")
         private boolean blocked;
@@ -87,7 +88,7 @@ public class LoginResponse {
         public String getNationality() { return nationality; }
         public String getNid() { return nid; }
         public String getAddress() { return address; }
-        public double getBalance() { return balance; }
+        public Money getBalance() { return balance; }
         public boolean isBlocked() { return blocked; }
         public String getCreatedAt() { return createdAt; }
     }
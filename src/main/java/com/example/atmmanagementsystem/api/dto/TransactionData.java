@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 import java.util.Date;
 
@@ -11,7 +12,7 @@ public class TransactionData {
     private String cardNumber;
     
     @SerializedName("amount")
-    private double amount;
+    private Money amount;
     
     @SerializedName("transaction_type")
     private String transactionType;
@@ -21,7 +22,7 @@ public class TransactionData {
 
     public int getId() { return id; }
     public String getCardNumber() { return cardNumber; }
-    public double getAmount() { return amount; }
+    public Money getAmount() { return amount; }
     public String getTransactionType() { return transactionType; }
     public Date getTimestamp() { return timestamp; }
 }
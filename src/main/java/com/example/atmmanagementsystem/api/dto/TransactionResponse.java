@@ -1,5 +1,6 @@
 package com.example.atmmanagementsystem.api.dto;
 
+import com.example.atmmanagementsystem.model.Money;
 import com.google.gson.annotations.SerializedName;
 
 public class TransactionResponse {
@@ -21,10 +22,10 @@ public class TransactionResponse {
         private TransactionDetail transaction;
 
         @SerializedName("balance")
-        private double balance;
+        private Money balance;
 
         public TransactionDetail getTransaction() { return transaction; }
-        public double getBalance() { return balance; }
+        public Money getBalance() { return balance; }
     }
 
     public static class TransactionDetail {
@@ -35,7 +36,7 @@ public class TransactionResponse {
         private String cardNumber;
 
         @SerializedName("amount")
-        private double amount;
+        private Money amount;
 
         @SerializedName("transaction_type")
         private String transactionType;
@@ -45,7 +46,7 @@ public class TransactionResponse {
 
         public int getId() { return id; }
         public String getCardNumber() { return cardNumber; }
-        public double getAmount() { return amount; }
+        public Money getAmount() { return amount; }
         public String getTransactionType() { return transactionType; }
         public String getTimestamp() { return timestamp; }
     }
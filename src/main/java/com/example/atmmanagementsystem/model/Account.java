@@ -3,14 +3,14 @@ package com.example.atmmanagementsystem.model;
 import java.util.Objects;
 
 public class Account {
-    public static final double MIN_INITIAL_DEPOSIT = 100.0; // assumption: minimum required
+    public static final Money MIN_INITIAL_DEPOSIT = Money.ofTaka(100); // assumption: minimum required
 
     private String name;
     private String phoneNumber;
     private String accountNumber;
     private String cardNumber;
     private String pin; // 4-digit PIN
-    private double balance;
+    private Money balance;
     private boolean blocked = false;
 
     private String email;
@@ -25,7 +25,7 @@ public class Account {
     }
 
     // constructor: use AccountService to create accounts
-    public Account(String name, String phoneNumber, double initialDeposit,
+    public Account(String name, String phoneNumber, Money initialDeposit,
             String email, String gender, String profession, String nationality, String nid, String address) {
         setName(name);
         setPhoneNumber(phoneNumber);
@@ -38,6 +38,23 @@ public class Account {
         setAddress(address);
     }
 
+    // Copy constructor: copies fields as-is, without the setters' validation
+    public Account(Account other) {
+        this.name = other.name;
+        this.phoneNumber = other.phoneNumber;
+        this.accountNumber = other.accountNumber;
+        this.cardNumber = other.cardNumber;
+        this.pin = other.pin;
+        this.balance = other.balance;
+        this.blocked = other.blocked;
+        this.email = other.email;
+        this.gender = other.gender;
+        this.profession = other.profession;
+        this.nationality = other.nationality;
+        this.nid = other.nid;
+        this.address = other.address;
+    }
+
     // Getters
     public String getName() {
         return name;
@@ -59,7 +76,7 @@ public class Account {
         return pin;
     }
 
-    public double getBalance() {
+    public Money getBalance() {
         return balance;
     }
 
@@ -125,8 +142,8 @@ public class Account {
         this.pin = pin;
     }
 
-    public void setBalance(double balance) {
-        if (Double.isNaN(balance) || balance < MIN_INITIAL_DEPOSIT) {
+    public void setBalance(Money balance) {
+        if (balance == null || balance.isLessThan(MIN_INITIAL_DEPOSIT)) {
             throw new IllegalArgumentException("Initial deposit must be at least " + MIN_INITIAL_DEPOSIT);
         }
         this.balance = balance;
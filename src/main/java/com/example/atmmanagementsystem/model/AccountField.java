@@ -0,0 +1,69 @@
+package com.example.atmmanagementsystem.model;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Account columns that can be requested from a streaming account scan.
+ * Leaving out wide columns such as the address keeps batch scans cheap.
+ */
+public enum AccountField {
+    ACCOUNT_NUMBER("account_number"),
+    CARD_NUMBER("card_number"),
+    PIN("pin"),
+    NAME("name"),
+    PHONE_NUMBER("phone_number"),
+    EMAIL("email"),
+    GENDER("gender"),
+    PROFESSION("profession"),
+    NATIONALITY("nationality"),
+    NID("nid"),
+    ADDRESS("address"),
+    BALANCE("balance"),
+    BLOCKED("blocked");
+
+    private final String column;
+
+    AccountField(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Copy a raw column value onto an account. Null values are skipped so a
+     * projected or partially populated row never trips the setters' validation.
+     */
+    public void set(Account account, String value) {
+        if (value == null) {
+            return;
+        }
+        switch (this) {
+            case ACCOUNT_NUMBER -> account.setAccountNumber(value);
+            case CARD_NUMBER -> account.setCardNumber(value);
+            case PIN -> account.setPin(value);
+            case NAME -> account.setName(value);
+            case PHONE_NUMBER -> account.setPhoneNumber(value);
+            case EMAIL -> account.setEmail(value);
+            case GENDER -> account.setGender(value);
+            case PROFESSION -> account.setProfession(value);
+            case NATIONALITY -> account.setNationality(value);
+            case NID -> account.setNid(value);
+            case ADDRESS -> account.setAddress(value);
+            case BALANCE -> account.setBalance(Money.parse(value));
+            case BLOCKED -> account.setBlocked("1".equals(value) || Boolean.parseBoolean(value));
+        }
+    }
+
+    /**
+     * Comma-separated column list for a SELECT, or every column when
+     * {@code fields} is null or empty.
+     */
+    public static String columnList(Set<AccountField> fields) {
+        Set<AccountField> selected = fields == null || fields.isEmpty() ? EnumSet.allOf(AccountField.class) : fields;
+        return selected.stream().map(AccountField::getColumn).collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.atmmanagementsystem.model;
+
+/**
+ * What PIN checks need: the stored PIN hash and whether the card is blocked.
+ */
+public class AuthView {
+    private final String cardNumber;
+    private final String pinHash;
+    private final boolean blocked;
+
+    public AuthView(String cardNumber, String pinHash, boolean blocked) {
+        this.cardNumber = cardNumber;
+        this.pinHash = pinHash;
+        this.blocked = blocked;
+    }
+
+    public String getCardNumber() { return cardNumber; }
+    public String getPinHash() { return pinHash; }
+    public boolean isBlocked() { return blocked; }
+}
@@ -0,0 +1,20 @@
+package com.example.atmmanagementsystem.model;
+
+/**
+ * Balance and status of one card, without the rest of the account profile.
+ */
+public class BalanceView {
+    private final String cardNumber;
+    private final Money balance;
+    private final boolean blocked;
+
+    public BalanceView(String cardNumber, Money balance, boolean blocked) {
+        this.cardNumber = cardNumber;
+        this.balance = balance;
+        this.blocked = blocked;
+    }
+
+    public String getCardNumber() { return cardNumber; }
+    public Money getBalance() { return balance; }
+    public boolean isBlocked() { return blocked; }
+}
@@ -0,0 +1,42 @@
+package com.example.atmmanagementsystem.model;
+
+/**
+ * Outcome of one row in a bulk account creation. On success {@code account}
+ * carries the new account and card numbers and the plain PIN; on failure
+ * {@code error} says why the row was rejected.
+ */
+public class BulkCreateResult {
+    private final int row;
+    private final Account account;
+    private final String error;
+
+    private BulkCreateResult(int row, Account account, String error) {
+        this.row = row;
+        this.account = account;
+        this.error = error;
+    }
+
+    public static BulkCreateResult created(int row, Account account) {
+        return new BulkCreateResult(row, account, null);
+    }
+
+    public static BulkCreateResult failed(int row, String error) {
+        return new BulkCreateResult(row, null, error);
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return account != null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.atmmanagementsystem.model;
+
+/**
+ * The identity proofs a customer can present for a card: NID and phone number.
+ */
+public class IdentityView {
+    private final String cardNumber;
+    private final String nid;
+    private final String phoneNumber;
+
+    public IdentityView(String cardNumber, String nid, String phoneNumber) {
+        this.cardNumber = cardNumber;
+        this.nid = nid;
+        this.phoneNumber = phoneNumber;
+    }
+
+    public String getCardNumber() { return cardNumber; }
+    public String getNid() { return nid; }
+    public String getPhoneNumber() { return phoneNumber; }
+}
@@ -0,0 +1,206 @@
+package com.example.atmmanagementsystem.model;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount of taka held as a whole number of paisa (1 TK = 100 paisa).
+ * <p>
+ * Arithmetic, comparisons, parsing and formatting work on the long directly,
+ * so amounts never pass through {@code double} and never drift. The static
+ * {@code long} helpers do the same work without creating objects for code
+ * that keeps raw paisa values. {@link #toBigDecimal()} and
+ * {@link #of(BigDecimal)} exist only for binding {@code DECIMAL(15, 2)}
+ * columns over JDBC.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private static final int SCALE = 2;
+    private static final long PAISA_PER_TAKA = 100;
+    // Largest whole-taka part that still fits in a long with any fraction
+    private static final long MAX_TAKA = (Long.MAX_VALUE - (PAISA_PER_TAKA - 1)) / PAISA_PER_TAKA;
+
+    private final long paisa;
+
+    private Money(long paisa) {
+        this.paisa = paisa;
+    }
+
+    public static Money ofPaisa(long paisa) {
+        return paisa == 0 ? ZERO : new Money(paisa);
+    }
+
+    public static Money ofTaka(long taka) {
+        return ofPaisa(Math.multiplyExact(taka, PAISA_PER_TAKA));
+    }
+
+    /**
+     * Parse a plain decimal amount such as {@code "500"}, {@code "1,250.5"} or
+     * {@code "-20.75"}. Grouping commas are ignored; more than two decimal
+     * places is an error rather than a silent rounding.
+     *
+     * @throws NumberFormatException if {@code text} is not such an amount
+     */
+    public static Money parse(CharSequence text) {
+        return ofPaisa(parsePaisa(text));
+    }
+
+    /**
+     * Exact conversion from a JDBC {@code DECIMAL} value.
+     *
+     * @throws ArithmeticException if the value has more than two decimal places
+     */
+    public static Money of(BigDecimal value) {
+        return ofPaisa(value.setScale(SCALE).unscaledValue().longValueExact());
+    }
+
+    public long toPaisa() {
+        return paisa;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(paisa, SCALE);
+    }
+
+    public Money plus(Money other) {
+        return ofPaisa(Math.addExact(paisa, other.paisa));
+    }
+
+    public Money minus(Money other) {
+        return ofPaisa(Math.subtractExact(paisa, other.paisa));
+    }
+
+    public Money times(long factor) {
+        return ofPaisa(Math.multiplyExact(paisa, factor));
+    }
+
+    public boolean isMultipleOf(Money step) {
+        return paisa % step.paisa == 0;
+    }
+
+    public boolean isPositive() {
+        return paisa > 0;
+    }
+
+    public boolean isNegative() {
+        return paisa < 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return paisa < other.paisa;
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return paisa > other.paisa;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(paisa, other.paisa);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).paisa == paisa;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(paisa);
+    }
+
+    /**
+     * Plain two-decimal form, e.g. {@code 1250.50}; suitable for display,
+     * CSV and JSON.
+     */
+    @Override
+    public String toString() {
+        return format(paisa, new StringBuilder(24)).toString();
+    }
+
+    // --- Allocation-free helpers on raw paisa values ---
+
+    /**
+     * Parse a decimal amount into paisa without creating intermediate objects.
+     *
+     * @throws NumberFormatException if {@code text} is not a plain decimal
+     *                               amount with at most two decimal places
+     */
+    public static long parsePaisa(CharSequence text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount is missing");
+        }
+        int i = 0;
+        int end = text.length();
+        while (i < end && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        while (end > i && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        long taka = 0;
+        long fraction = 0;
+        int fractionDigits = -1; // -1 until the decimal point is seen
+        int digits = 0;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ',' && fractionDigits < 0) {
+                continue;
+            }
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+            digits++;
+            if (fractionDigits >= 0) {
+                if (++fractionDigits > SCALE) {
+                    // Allow trailing zeros such as "500.000" from decimal columns
+                    if (c != '0') {
+                        throw new NumberFormatException("Amount has more than two decimal places: " + text);
+                    }
+                    continue;
+                }
+                fraction = fraction * 10 + (c - '0');
+            } else {
+                if (taka > (MAX_TAKA - (c - '0')) / 10) {
+                    throw new NumberFormatException("Amount is too large: " + text);
+                }
+                taka = taka * 10 + (c - '0');
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long paisa = taka * PAISA_PER_TAKA + fraction;
+        return negative ? -paisa : paisa;
+    }
+
+    /**
+     * Append {@code paisa} in plain two-decimal form to {@code out}.
+     */
+    public static StringBuilder format(long paisa, StringBuilder out) {
+        if (paisa < 0) {
+            out.append('-');
+        }
+        long taka = Math.abs(paisa / PAISA_PER_TAKA);
+        int fraction = (int) Math.abs(paisa % PAISA_PER_TAKA);
+        out.append(taka).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+}
@@ -5,7 +5,7 @@ import java.sql.Timestamp;
 public class Transaction {
     private int id;
     private String cardNumber;
-    private double amount;
+    private Money amount;
     private String type; // DEPOSIT, WITHDRAW
     private Timestamp timestamp;
 
@@ -13,7 +13,7 @@ public class Transaction {
     public Transaction() {
     }
 
-    public Transaction(int id, String cardNumber, double amount, String type, Timestamp timestamp) {
+    public Transaction(int id, String cardNumber, Money amount, String type, Timestamp timestamp) {
         this.id = id;
         this.cardNumber = cardNumber;
         this.amount = amount;
@@ -29,7 +29,7 @@ public class Transaction {
         return cardNumber;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
@@ -0,0 +1,32 @@
+package com.example.atmmanagementsystem.model;
+
+import java.util.List;
+
+/**
+ * One page of transaction history, newest first.
+ * <p>
+ * {@code nextCursor} is an opaque token for the following (older) page and is
+ * {@code null} on the last page. Its format depends on the AccountService that
+ * produced it, so it must only be passed back to the same service.
+ */
+public class TransactionPage {
+    private final List<Transaction> transactions;
+    private final String nextCursor;
+
+    public TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
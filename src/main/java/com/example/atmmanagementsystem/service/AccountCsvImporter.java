@@ -0,0 +1,178 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.BulkCreateResult;
+import com.example.atmmanagementsystem.model.Money;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Branch onboarding import: reads accounts from a CSV file and creates them
+ * through {@link DatabaseAccountService#createAccounts(List)}.
+ * <p>
+ * Input columns (with a header row):
+ * {@code name,phone,initial_deposit,email,gender,profession,nationality,nid,address}.
+ * The report has one line per input row:
+ * {@code row,status,account_number,card_number,pin,error}. It contains plain
+ * PINs, so treat it like a PIN mailer.
+ * <p>
+ * Usage: {@code AccountCsvImporter <input.csv> <report.csv>}
+ */
+public class AccountCsvImporter {
+
+    private static final int CHUNK_ROWS = 5000;
+
+    private final DatabaseAccountService service;
+
+    public AccountCsvImporter(DatabaseAccountService service) {
+        this.service = service;
+    }
+
+    /**
+     * Import {@code input} in chunks so memory stays flat regardless of file
+     * size, writing per-row results to {@code report}.
+     *
+     * @return number of accounts created
+     */
+    public int importFile(Path input, Path report) throws IOException {
+        int created = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+
+            writer.write("row,status,account_number,card_number,pin,error");
+            writer.newLine();
+
+            reader.readLine(); // Header
+            int rowNumber = 0;
+            List<Account> drafts = new ArrayList<>(CHUNK_ROWS);
+            List<Integer> draftRows = new ArrayList<>(CHUNK_ROWS);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                rowNumber++;
+                try {
+                    drafts.add(parseRow(line));
+                    draftRows.add(rowNumber);
+                } catch (IllegalArgumentException e) {
+                    writeFailure(writer, rowNumber, e.getMessage());
+                }
+
+                if (drafts.size() == CHUNK_ROWS) {
+                    created += flush(drafts, draftRows, writer);
+                }
+            }
+            created += flush(drafts, draftRows, writer);
+        }
+        return created;
+    }
+
+    private int flush(List<Account> drafts, List<Integer> draftRows, BufferedWriter writer) throws IOException {
+        if (drafts.isEmpty()) {
+            return 0;
+        }
+        int created = 0;
+        List<BulkCreateResult> results = service.createAccounts(drafts);
+        for (int i = 0; i < results.size(); i++) {
+            BulkCreateResult result = results.get(i);
+            if (result.isSuccess()) {
+                Account acc = result.getAccount();
+                writer.write(draftRows.get(i) + ",CREATED," + acc.getAccountNumber() + ","
+                        + acc.getCardNumber() + "," + acc.getPin() + ",");
+                writer.newLine();
+                created++;
+            } else {
+                writeFailure(writer, draftRows.get(i), result.getError());
+            }
+        }
+        drafts.clear();
+        draftRows.clear();
+        return created;
+    }
+
+    private void writeFailure(BufferedWriter writer, int row, String error) throws IOException {
+        writer.write(row + ",FAILED,,,," + quote(error));
+        writer.newLine();
+    }
+
+    private Account parseRow(String line) {
+        List<String> cols = splitCsv(line);
+        if (cols.size() < 9) {
+            throw new IllegalArgumentException("Expected 9 columns but found " + cols.size());
+        }
+        Money deposit;
+        try {
+            deposit = Money.parse(cols.get(2));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid initial deposit: " + cols.get(2));
+        }
+        String email = cols.get(3).isEmpty() ? null : cols.get(3);
+        // The constructor validates every field
+        return new Account(cols.get(0), cols.get(1), deposit, email, cols.get(4), cols.get(5), cols.get(6),
+                cols.get(7), cols.get(8));
+    }
+
+    /**
+     * Minimal RFC 4180 splitting: commas separate fields, double quotes
+     * enclose fields that contain commas, and "" is an escaped quote.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: AccountCsvImporter <input.csv> <report.csv>");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int created = new AccountCsvImporter(new DatabaseAccountService())
+                    .importFile(Path.of(args[0]), Path.of(args[1]));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Created " + created + " accounts in " + millis + " ms. Report: " + args[1]);
+        } catch (IOException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
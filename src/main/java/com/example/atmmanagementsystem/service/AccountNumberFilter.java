@@ -0,0 +1,508 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory Bloom filter of the card and account numbers in {@code accounts},
+ * so a lookup of a number that doesn't exist (a mistyped card at login, a
+ * candidate number during signup) can be answered without a query.
+ * <p>
+ * The filter is built by streaming the table and is updated on every
+ * account this process creates. Accounts created by other processes are
+ * picked up by a catch-up scan every {@code atm.bloom.refreshSeconds} (30 by
+ * default). Each scan starts where the previous one could still have missed
+ * an insert: at the start of the oldest open transaction, read from
+ * {@code information_schema.INNODB_TRX}. The filter is sized for
+ * {@code atm.bloom.expectedAccounts} or twice the table, whichever is more,
+ * and rebuilt at twice the size once it fills up.
+ * <p>
+ * {@code mightContain...} answers false only for numbers missing as of the
+ * last scan, with false positives at roughly {@code atm.bloom.fpp} (1% by
+ * default). That's enough to skip number candidates, where a wrong answer
+ * only costs a constraint retry. Lookups use {@code isDefinitelyMissing...}
+ * instead, which believes a miss only after a catch-up that started after the
+ * lookup. Concurrent misses share one catch-up, and at most one runs per
+ * {@code atm.bloom.missCatchUpMillis} (100 by default); a miss that can't get
+ * one answers false, and the caller queries as usual. So do all misses if
+ * the database won't show open transactions (it needs the PROCESS
+ * privilege), since a late commit could then be missed. Until the first
+ * build finishes, and when the filter is off, every check answers "maybe".
+ * <p>
+ * Enable with {@code -Datm.bloom.enabled=true}. Covers the default database
+ * only; shard services skip it.
+ */
+public final class AccountNumberFilter implements AutoCloseable {
+
+    public static final boolean ENABLED = Boolean.getBoolean("atm.bloom.enabled");
+    public static final double DEFAULT_FPP = Double.parseDouble(System.getProperty("atm.bloom.fpp", "0.01"));
+    public static final long DEFAULT_EXPECTED_ACCOUNTS = Long.getLong("atm.bloom.expectedAccounts", 100_000);
+    public static final long DEFAULT_REFRESH_SECONDS = Long.getLong("atm.bloom.refreshSeconds", 30);
+
+    public static final long MISS_CATCH_UP_MILLIS = Long.getLong("atm.bloom.missCatchUpMillis", 100);
+
+    // created_at is the insert statement's start, which can be a little before
+    // its transaction's trx_started
+    private static final int HORIZON_MARGIN_SECONDS = 5;
+    // Without INNODB_TRX, scans reach back this far for inserts still uncommitted
+    // when the last one ran; longer ones can be missed, so misses aren't trusted
+    private static final int CATCH_UP_OVERLAP_SECONDS = 60;
+
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM accounts";
+    private static final String HORIZON_SQL =
+            "SELECT NOW(), (SELECT MIN(trx_started) FROM information_schema.INNODB_TRX)";
+    private static final String NOW_SQL = "SELECT NOW()";
+    private static final String SCAN_SQL = "SELECT card_number, account_number FROM accounts";
+    private static final String CATCH_UP_SQL =
+            "SELECT card_number, account_number FROM accounts WHERE created_at >= ?";
+
+    private static final long CARD_SEED = 0x9E3779B97F4A7C15L;
+    private static final long ACCOUNT_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    private final double fpp;
+    private final long expectedAccounts;
+    private final ScheduledExecutorService refresher;
+
+    private volatile Bits bits; // null until the first build
+    private Timestamp watermark; // guarded by this: where the next scan starts, in database time
+    private volatile boolean horizonKnown = true; // false once INNODB_TRX turns out to be unreadable
+    private volatile long lastScanStarted = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder maybes = new LongAdder();
+
+    private AccountNumberFilter(double fpp, long expectedAccounts) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1");
+        }
+        if (expectedAccounts < 1) {
+            throw new IllegalArgumentException("Expected accounts must be positive");
+        }
+        this.fpp = fpp;
+        this.expectedAccounts = expectedAccounts;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "account-number-filter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static final class Holder {
+        private static final AccountNumberFilter SHARED = create();
+
+        private static AccountNumberFilter create() {
+            AccountNumberFilter filter = new AccountNumberFilter(DEFAULT_FPP, DEFAULT_EXPECTED_ACCOUNTS);
+            if (ENABLED) {
+                filter.start(DEFAULT_REFRESH_SECONDS);
+            }
+            return filter;
+        }
+    }
+
+    /**
+     * The process-wide filter over the default database. When the filter is
+     * enabled, the first call starts building it in the background.
+     */
+    public static AccountNumberFilter shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * Build in the background now, then catch up every {@code refreshSeconds}.
+     */
+    public void start(long refreshSeconds) {
+        refresher.execute(this::rebuildQuietly);
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                catchUp();
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Account number filter catch-up failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return bits != null;
+    }
+
+    /**
+     * False only if no account had this card number as of the last scan.
+     */
+    public boolean mightContainCard(String cardNumber) {
+        return mightContain(cardNumber, CARD_SEED);
+    }
+
+    /**
+     * False only if no account had this account number as of the last scan.
+     */
+    public boolean mightContainAccount(String accountNumber) {
+        return mightContain(accountNumber, ACCOUNT_SEED);
+    }
+
+    /**
+     * True only if no account has this card number, including accounts
+     * created by other processes up to this call.
+     */
+    public boolean isDefinitelyMissingCard(String cardNumber) {
+        return isDefinitelyMissing(cardNumber, CARD_SEED);
+    }
+
+    /**
+     * True only if no account has this account number, including accounts
+     * created by other processes up to this call.
+     */
+    public boolean isDefinitelyMissingAccount(String accountNumber) {
+        return isDefinitelyMissing(accountNumber, ACCOUNT_SEED);
+    }
+
+    private boolean isDefinitelyMissing(String number, long seed) {
+        if (mightContain(number, seed) || !horizonKnown) {
+            return false;
+        }
+        long asked = System.nanoTime();
+        try {
+            if (!scannedSince(asked)) {
+                return false;
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Account number filter catch-up failed: " + e.getMessage());
+            return false;
+        }
+        Bits current = bits;
+        return horizonKnown && current != null && !current.mightContain(number, seed);
+    }
+
+    /**
+     * Make sure a scan has started since {@code asked}, running a catch-up if
+     * none has and one is allowed yet. Callers queued on the lock reuse the
+     * catch-up of whoever got it first.
+     *
+     * @return false if no scan has started since and it's too soon for another
+     */
+    private synchronized boolean scannedSince(long asked) throws SQLException {
+        if (lastScanStarted - asked >= 0) {
+            return true;
+        }
+        if (System.nanoTime() - lastScanStarted < TimeUnit.MILLISECONDS.toNanos(MISS_CATCH_UP_MILLIS)) {
+            return false;
+        }
+        catchUp();
+        return true;
+    }
+
+    /**
+     * Record a newly created account. Safe to call before the first build:
+     * the build reads the committed row anyway.
+     */
+    public void add(String cardNumber, String accountNumber) {
+        Bits current = bits;
+        if (current != null) {
+            current.add(cardNumber, accountNumber);
+        }
+    }
+
+    private boolean mightContain(String number, long seed) {
+        Bits current = bits;
+        if (current == null || number == null) {
+            return true;
+        }
+        if (current.mightContain(number, seed)) {
+            maybes.increment();
+            return true;
+        }
+        definiteMisses.increment();
+        return false;
+    }
+
+    /**
+     * Stream the whole table into a new filter and swap it in.
+     */
+    public synchronized void rebuild() throws SQLException {
+        lastScanStarted = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            long count;
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery(COUNT_SQL)) {
+                rs.next();
+                count = rs.getLong(1);
+            }
+            Bits fresh = new Bits(Math.max(expectedAccounts, count * 2), fpp);
+            Timestamp scannedFrom = horizon(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(Integer.MIN_VALUE); // stream rows instead of buffering the table
+                try (ResultSet rs = stmt.executeQuery(SCAN_SQL)) {
+                    while (rs.next()) {
+                        fresh.add(rs.getString(1), rs.getString(2));
+                    }
+                }
+            }
+            // Accounts created during the scan were added to the old filter. Once the
+            // new one is in place, anything committed by then is in the table
+            bits = fresh;
+            Timestamp caughtUpFrom = horizon(conn);
+            addCreatedSince(conn, fresh, scannedFrom);
+            watermark = caughtUpFrom;
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Account number filter build failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Add accounts created since the last scan, by this or any other process.
+     */
+    public synchronized void catchUp() throws SQLException {
+        Bits current = bits;
+        if (current == null) {
+            rebuild();
+            return;
+        }
+        if (current.entries() > current.capacity) {
+            rebuild();
+            return;
+        }
+        lastScanStarted = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Timestamp scannedFrom = horizon(conn);
+            addCreatedSince(conn, current, watermark);
+            watermark = scannedFrom;
+        }
+    }
+
+    /**
+     * Earliest {@code created_at} an account not yet visible to a scan
+     * starting now could have: the start of the oldest open transaction.
+     * Falls back to a fixed overlap, and stops trusting misses, if the
+     * database won't show open transactions.
+     */
+    private Timestamp horizon(Connection conn) throws SQLException {
+        if (horizonKnown) {
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery(HORIZON_SQL)) {
+                rs.next();
+                Timestamp now = rs.getTimestamp(1);
+                Timestamp oldest = rs.getTimestamp(2);
+                Timestamp from = oldest != null && oldest.before(now) ? oldest : now;
+                return new Timestamp(from.getTime() - TimeUnit.SECONDS.toMillis(HORIZON_MARGIN_SECONDS));
+            } catch (SQLException e) {
+                horizonKnown = false;
+                System.err.println("Account number filter can't read open transactions (" + e.getMessage()
+                        + "); lookups won't trust its misses");
+            }
+        }
+        Timestamp now = now(conn);
+        return new Timestamp(now.getTime() - TimeUnit.SECONDS.toMillis(CATCH_UP_OVERLAP_SECONDS));
+    }
+
+    private static void addCreatedSince(Connection conn, Bits target, Timestamp since) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(CATCH_UP_SQL)) {
+            pstmt.setTimestamp(1, since);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    target.add(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+    }
+
+    private static Timestamp now(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(NOW_SQL)) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    public FilterStats getStats() {
+        Bits current = bits;
+        return current == null
+                ? new FilterStats(false, 0, 0, 0, 0, definiteMisses.sum(), maybes.sum())
+                : new FilterStats(true, current.size, current.hashes, current.entries(),
+                        current.estimatedFpp(), definiteMisses.sum(), maybes.sum());
+    }
+
+    /**
+     * Bit array plus its sizing. Bits are only ever set, so concurrent adds
+     * and lookups need no lock: a lookup racing an add may miss a number
+     * that is still being inserted, which the insert's caller hasn't
+     * returned yet either.
+     */
+    private static final class Bits {
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashes;
+        private final long capacity;
+        private final LongAdder added = new LongAdder();
+
+        Bits(long expectedAccounts, double fpp) {
+            long keys = expectedAccounts * 2; // a card number and an account number each
+            long bitCount = (long) Math.ceil(-keys * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            long wordCount = Math.max(1, (bitCount + 63) / 64);
+            if (wordCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Account number filter would be too large");
+            }
+            this.words = new AtomicLongArray((int) wordCount);
+            this.size = wordCount * 64;
+            this.hashes = Math.max(1, (int) Math.round((double) size / keys * Math.log(2)));
+            this.capacity = expectedAccounts;
+        }
+
+        void add(String cardNumber, String accountNumber) {
+            if (cardNumber != null) {
+                set(cardNumber, CARD_SEED);
+            }
+            if (accountNumber != null) {
+                set(accountNumber, ACCOUNT_SEED);
+            }
+            added.increment();
+        }
+
+        long entries() {
+            return added.sum();
+        }
+
+        // Double hashing: bit i is h1 + i * h2, which behaves like k independent hashes
+        private void set(String number, long seed) {
+            long h1 = hash(number, seed);
+            long h2 = mix(h1 ^ seed) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                if ((words.get(word) & mask) == 0) {
+                    words.getAndUpdate(word, w -> w | mask);
+                }
+            }
+        }
+
+        boolean mightContain(String number, long seed) {
+            long h1 = hash(number, seed);
+            long h2 = mix(h1 ^ seed) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double estimatedFpp() {
+            // Accounts we added twice (scan overlap) are counted twice, so this errs high
+            return Math.pow(1 - Math.exp(-(double) hashes * entries() * 2 / size), hashes);
+        }
+
+        private static long hash(String number, long seed) {
+            long h = seed;
+            for (int i = 0; i < number.length(); i++) {
+                h = (h ^ number.charAt(i)) * 0x100000001B3L;
+            }
+            return mix(h);
+        }
+
+        // MurmurHash3's 64-bit finalizer
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+    /**
+     * Snapshot of filter sizing and counters.
+     */
+    public static final class FilterStats {
+        private final boolean ready;
+        private final long bits;
+        private final int hashes;
+        private final long entries;
+        private final double estimatedFpp;
+        private final long definiteMisses;
+        private final long maybes;
+
+        FilterStats(boolean ready, long bits, int hashes, long entries, double estimatedFpp,
+                long definiteMisses, long maybes) {
+            this.ready = ready;
+            this.bits = bits;
+            this.hashes = hashes;
+            this.entries = entries;
+            this.estimatedFpp = estimatedFpp;
+            this.definiteMisses = definiteMisses;
+            this.maybes = maybes;
+        }
+
+        /** Whether the first build has finished. */
+        public boolean isReady() {
+            return ready;
+        }
+
+        /** Size of the bit array. */
+        public long getBits() {
+            return bits;
+        }
+
+        /** Bits set per number. */
+        public int getHashes() {
+            return hashes;
+        }
+
+        /** Accounts added since the last build, catch-up repeats included. */
+        public long getEntries() {
+            return entries;
+        }
+
+        /** False-positive rate expected at the current fill. */
+        public double getEstimatedFpp() {
+            return estimatedFpp;
+        }
+
+        /** Lookups answered "no such number" without a query. */
+        public long getDefiniteMisses() {
+            return definiteMisses;
+        }
+
+        /** Lookups that had to go to the database. */
+        public long getMaybes() {
+            return maybes;
+        }
+
+        @Override
+        public String toString() {
+            return "FilterStats{" +
+                    "ready=" + ready +
+                    ", bits=" + bits +
+                    ", hashes=" + hashes +
+                    ", entries=" + entries +
+                    ", estimatedFpp=" + String.format("%.4f", estimatedFpp) +
+                    ", definiteMisses=" + definiteMisses +
+                    ", maybes=" + maybes +
+                    '}';
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.example.atmmanagementsystem.service;
 
 import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AccountField;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface AccountService {
 
-    Account createAccount(String name, String phone, double initialDeposit,
+    Account createAccount(String name, String phone, Money initialDeposit,
             String email, String gender, String profession, String nationality, String nid, String address);
 
     Optional<Account> findByAccountNumber(String accountNumber);
@@ -21,11 +28,77 @@ public interface AccountService {
 
     List<Account> listAccounts();
 
+    /**
+     * Lazily scan every account without loading them all into memory. Close
+     * the stream when done (try-with-resources); it may hold a connection.
+     *
+     * @param fields columns to load; null or empty loads every column
+     */
+    Stream<Account> streamAccounts(Set<AccountField> fields);
+
+    /**
+     * Run {@code action} for every account in constant memory.
+     */
+    default void forEachAccount(Set<AccountField> fields, Consumer<Account> action) {
+        try (Stream<Account> accounts = streamAccounts(fields)) {
+            accounts.forEach(action);
+        }
+    }
+
     void blockAccount(String cardNumber, String nidProof);
 
-    void deposit(String cardNumber, double amount);
+    void deposit(String cardNumber, Money amount);
+
+    void withdraw(String cardNumber, Money amount);
+
+    /**
+     * Deposit at most once per idempotency key: repeating a call with the same
+     * key (after a timeout, say) succeeds without depositing again. Backends
+     * that can't record keys reject calls that carry one.
+     */
+    default void deposit(String cardNumber, Money amount, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support idempotency keys");
+        }
+        deposit(cardNumber, amount);
+    }
+
+    /**
+     * Withdraw at most once per idempotency key; see
+     * {@link #deposit(String, Money, String)}.
+     */
+    default void withdraw(String cardNumber, Money amount, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support idempotency keys");
+        }
+        withdraw(cardNumber, amount);
+    }
+
+    default void transferToCard(String cardNumber, String recipientCardNumber, Money amount) {
+        transferToCard(cardNumber, recipientCardNumber, amount, null);
+    }
+
+    /**
+     * Move money from one card to another in a single step, at most once per
+     * idempotency key. Backends without transfers reject the call.
+     */
+    default void transferToCard(String cardNumber, String recipientCardNumber, Money amount,
+            String idempotencyKey) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support transfers");
+    }
+
+    default void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount) {
+        transferToAccount(cardNumber, recipientAccountNumber, amount, null);
+    }
 
-    void withdraw(String cardNumber, double amount);
+    /**
+     * Like {@link #transferToCard(String, String, Money, String)}, to the card
+     * of the given account number.
+     */
+    default void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount,
+            String idempotencyKey) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support transfers");
+    }
 
     String resetPin(String cardNumber, String nidProof);
 
@@ -35,8 +108,36 @@ public interface AccountService {
 
     List<com.example.atmmanagementsystem.model.Transaction> getTransactions(String cardNumber);
 
-    // Factory method - switching to API-based implementation
+    int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Fetch one page of history, newest first. Pass {@code null} as the cursor
+     * for the first page and {@link TransactionPage#getNextCursor()} after that.
+     */
+    TransactionPage getTransactionPage(String cardNumber, String cursor, int pageSize);
+
+    /**
+     * Lazily walk a card's whole history, newest first, holding at most one
+     * page in memory. Implementations may keep a connection open while the
+     * stream is in use, so always close it (try-with-resources).
+     */
+    default Stream<Transaction> streamTransactions(String cardNumber) {
+        return Stream.iterate(
+                getTransactionPage(cardNumber, null, DEFAULT_PAGE_SIZE),
+                page -> page != null,
+                page -> page.hasMore() ? getTransactionPage(cardNumber, page.getNextCursor(), DEFAULT_PAGE_SIZE) : null)
+                .flatMap(page -> page.getTransactions().stream());
+    }
+
+    // Factory method. The backend is picked with -Datm.accounts=api|database|sharded|ledger
+    // and defaults to the API; the UI screens need the API backend for login
+    // and transfers, so they construct ApiAccountService directly
     static AccountService getInstance() {
-        return new ApiAccountService();
+        return switch (System.getProperty("atm.accounts", "api")) {
+            case "database" -> new DatabaseAccountService();
+            case "sharded" -> ShardedAccountService.shared();
+            case "ledger" -> LedgerAccountService.shared();
+            default -> new ApiAccountService();
+        };
     }
 }
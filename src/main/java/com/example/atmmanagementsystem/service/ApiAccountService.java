@@ -1,19 +1,27 @@
 package com.example.atmmanagementsystem.service;
 
 import com.example.atmmanagementsystem.api.ApiService;
+import com.example.atmmanagementsystem.api.dto.AccountResponse;
 import com.example.atmmanagementsystem.api.dto.LoginResponse;
 import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AccountField;
+import com.example.atmmanagementsystem.model.Money;
 import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
 
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ApiAccountService implements AccountService {
 
     private final ApiService apiService = ApiService.getInstance();
 
     @Override
-    public Account createAccount(String name, String phone, double initialDeposit,
+    public Account createAccount(String name, String phone, Money initialDeposit,
             String email, String gender, String profession, String nationality, String nid, String address) {
         try {
             return apiService.createAccount(name, phone, initialDeposit, email, gender, 
@@ -64,7 +72,57 @@ public class ApiAccountService implements AccountService {
 
     @Override
     public List<Account> listAccounts() {
-        throw new UnsupportedOperationException("List accounts not supported in API");
+        try (Stream<Account> accounts = streamAccounts(null)) {
+            return accounts.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Pages through the admin account listing, fetching the next page only
+     * when the previous one has been consumed. Requires an admin token.
+     */
+    @Override
+    public Stream<Account> streamAccounts(Set<AccountField> fields) {
+        Set<AccountField> selected = fields == null || fields.isEmpty()
+                ? EnumSet.allOf(AccountField.class)
+                : EnumSet.copyOf(fields);
+        int pageSize = DEFAULT_PAGE_SIZE;
+
+        return Stream.iterate(0, offset -> offset >= 0, offset -> offset + pageSize)
+                .map(offset -> fetchAccountPage(pageSize, offset))
+                .takeWhile(page -> !page.isEmpty())
+                .flatMap(page -> page.stream().map(data -> toAccount(data, selected)));
+    }
+
+    private List<AccountResponse.AccountData> fetchAccountPage(int limit, int offset) {
+        try {
+            return apiService.listAccounts(limit, offset);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private Account toAccount(AccountResponse.AccountData data, Set<AccountField> fields) {
+        Account account = new Account();
+        for (AccountField field : fields) {
+            switch (field) {
+                case ACCOUNT_NUMBER -> field.set(account, data.getAccountNumber());
+                case CARD_NUMBER -> field.set(account, data.getCardNumber());
+                case NAME -> field.set(account, data.getName());
+                case PHONE_NUMBER -> field.set(account, data.getPhoneNumber());
+                case EMAIL -> field.set(account, data.getEmail());
+                case GENDER -> field.set(account, data.getGender());
+                case PROFESSION -> field.set(account, data.getProfession());
+                case NATIONALITY -> field.set(account, data.getNationality());
+                case NID -> field.set(account, data.getNid());
+                case ADDRESS -> field.set(account, data.getAddress());
+                case BALANCE -> field.set(account, String.valueOf(data.getBalance()));
+                default -> {
+                    // PIN and blocked flag are not exposed by the listing endpoint
+                }
+            }
+        }
+        return account;
     }
 
     @Override
@@ -77,7 +135,7 @@ public class ApiAccountService implements AccountService {
     }
 
     @Override
-    public void deposit(String cardNumber, double amount) {
+    public void deposit(String cardNumber, Money amount) {
         try {
             apiService.deposit(cardNumber, amount);
         } catch (Exception e) {
@@ -86,7 +144,7 @@ public class ApiAccountService implements AccountService {
     }
 
     @Override
-    public void withdraw(String cardNumber, double amount) {
+    public void withdraw(String cardNumber, Money amount) {
         try {
             apiService.withdraw(cardNumber, amount);
         } catch (Exception e) {
@@ -94,6 +152,24 @@ public class ApiAccountService implements AccountService {
         }
     }
 
+    @Override
+    public void deposit(String cardNumber, Money amount, String idempotencyKey) {
+        try {
+            apiService.deposit(cardNumber, amount, idempotencyKey);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void withdraw(String cardNumber, Money amount, String idempotencyKey) {
+        try {
+            apiService.withdraw(cardNumber, amount, idempotencyKey);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public String resetPin(String cardNumber, String nidProof) {
         try {
@@ -149,7 +225,57 @@ public class ApiAccountService implements AccountService {
         }
     }
 
-    public void cardlessDeposit(String accountNumber, String nidProof, double amount) {
+    @Override
+    public TransactionPage getTransactionPage(String cardNumber, String cursor, int pageSize) {
+        return getTransactionPage(cardNumber, null, null, null, cursor, pageSize);
+    }
+
+    /**
+     * Get one page of transaction history with optional filters. The backend
+     * pages with limit/offset, so the cursor is the offset of the next page.
+     *
+     * @param cursor null for the first page, otherwise a previous page's next cursor
+     * @param pageSize Maximum number of transactions in the page
+     */
+    public TransactionPage getTransactionPage(String cardNumber, String type,
+                                              String dateFrom, String dateTo,
+                                              String cursor, int pageSize) {
+        int offset = pageOffset(cursor, pageSize);
+
+        List<Transaction> list;
+        try {
+            // One extra row tells us whether another page exists
+            list = apiService.getTransactions(cardNumber, type, dateFrom, dateTo, pageSize + 1, offset);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        return toPage(list, offset, pageSize);
+    }
+
+    static int pageOffset(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        try {
+            return cursor == null ? 0 : Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Turn a window fetched with one extra row into a page.
+     */
+    static TransactionPage toPage(List<Transaction> list, int offset, int pageSize) {
+        String nextCursor = null;
+        if (list.size() > pageSize) {
+            list = list.subList(0, pageSize);
+            nextCursor = String.valueOf(offset + pageSize);
+        }
+        return new TransactionPage(list, nextCursor);
+    }
+
+    public void cardlessDeposit(String accountNumber, String nidProof, Money amount) {
         try {
             apiService.cardlessDeposit(accountNumber, nidProof, amount);
         } catch (Exception e) {
@@ -165,7 +291,8 @@ public class ApiAccountService implements AccountService {
         }
     }
 
-    public void transferToCard(String cardNumber, String recipientCardNumber, double amount) {
+    @Override
+    public void transferToCard(String cardNumber, String recipientCardNumber, Money amount) {
         try {
             apiService.transferToCard(cardNumber, recipientCardNumber, amount);
         } catch (Exception e) {
@@ -173,7 +300,19 @@ public class ApiAccountService implements AccountService {
         }
     }
 
-    public void transferToAccount(String cardNumber, String recipientAccountNumber, double amount) {
+    @Override
+    public void transferToCard(String cardNumber, String recipientCardNumber, Money amount,
+            String idempotencyKey) {
+        try {
+            apiService.transferToCard(cardNumber, recipientCardNumber, amount,
+                    idempotencyKey != null ? idempotencyKey : ApiService.newIdempotencyKey());
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount) {
         try {
             apiService.transferToAccount(cardNumber, recipientAccountNumber, amount);
         } catch (Exception e) {
@@ -181,6 +320,17 @@ public class ApiAccountService implements AccountService {
         }
     }
 
+    @Override
+    public void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount,
+            String idempotencyKey) {
+        try {
+            apiService.transferToAccount(cardNumber, recipientAccountNumber, amount,
+                    idempotencyKey != null ? idempotencyKey : ApiService.newIdempotencyKey());
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
     // Helper method for login (not in AccountService interface but needed for authentication)
     public LoginResponse login(String cardNumber, String pin) {
         try {
@@ -0,0 +1,57 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link AccountService}: the same operations,
+ * each returning a future that completes with the result or fails with the
+ * exception the blocking call would have thrown.
+ * <p>
+ * Every future can be cancelled, and completing it early from outside
+ * ({@code cancel}, {@code orTimeout}) abandons the work: a blocking call is
+ * interrupted and an HTTP exchange is aborted. Implementations also apply a
+ * default timeout of their own. A deposit or withdrawal abandoned this way
+ * may or may not have been applied; retry it with the same idempotency key.
+ * <p>
+ * Streams are left out; use {@link #getTransactionPage} to page instead.
+ */
+public interface AsyncAccountService {
+
+    CompletableFuture<Account> createAccount(String name, String phone, Money initialDeposit,
+            String email, String gender, String profession, String nationality, String nid, String address);
+
+    CompletableFuture<Optional<Account>> findByAccountNumber(String accountNumber);
+
+    CompletableFuture<Optional<Account>> findByCardNumber(String cardNumber);
+
+    CompletableFuture<Optional<Account>> findByPhone(String phone);
+
+    CompletableFuture<Optional<Account>> findByEmail(String email);
+
+    CompletableFuture<Optional<Account>> findByNid(String nid);
+
+    CompletableFuture<List<Account>> listAccounts();
+
+    CompletableFuture<Void> blockAccount(String cardNumber, String nidProof);
+
+    CompletableFuture<Void> deposit(String cardNumber, Money amount, String idempotencyKey);
+
+    CompletableFuture<Void> withdraw(String cardNumber, Money amount, String idempotencyKey);
+
+    CompletableFuture<String> resetPin(String cardNumber, String nidProof);
+
+    CompletableFuture<Void> updatePin(String cardNumber, String newPin);
+
+    CompletableFuture<Void> unblockAccount(String cardNumber);
+
+    CompletableFuture<List<Transaction>> getTransactions(String cardNumber);
+
+    CompletableFuture<TransactionPage> getTransactionPage(String cardNumber, String cursor, int pageSize);
+}
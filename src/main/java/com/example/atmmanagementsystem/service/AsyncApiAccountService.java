@@ -0,0 +1,104 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.api.ApiService;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link AsyncAccountService} over the REST API. Deposits, withdrawals and
+ * history pages go through {@code HttpClient.sendAsync}, so waiting on them
+ * takes no thread at all; the remaining operations run the blocking
+ * {@link ApiAccountService} calls on virtual threads.
+ * <p>
+ * Completing a future early aborts its HTTP exchange (and any retries).
+ * Failures carry the same messages as {@link ApiAccountService}.
+ */
+public class AsyncApiAccountService extends VirtualThreadAccountService {
+
+    private final ApiService apiService = ApiService.getInstance();
+
+    public AsyncApiAccountService() {
+        this(DEFAULT_TIMEOUT);
+    }
+
+    public AsyncApiAccountService(Duration timeout) {
+        super(new ApiAccountService(), timeout);
+    }
+
+    @Override
+    public CompletableFuture<Void> deposit(String cardNumber, Money amount, String idempotencyKey) {
+        return statusUnknownOnTimeout(adapt(apiService.depositAsync(cardNumber, amount,
+                idempotencyKey != null ? idempotencyKey : ApiService.newIdempotencyKey())));
+    }
+
+    @Override
+    public CompletableFuture<Void> withdraw(String cardNumber, Money amount, String idempotencyKey) {
+        return statusUnknownOnTimeout(adapt(apiService.withdrawAsync(cardNumber, amount,
+                idempotencyKey != null ? idempotencyKey : ApiService.newIdempotencyKey())));
+    }
+
+    @Override
+    public CompletableFuture<TransactionPage> getTransactionPage(String cardNumber, String cursor, int pageSize) {
+        int offset;
+        try {
+            offset = ApiAccountService.pageOffset(cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // One extra row tells us whether another page exists
+        CompletableFuture<List<Transaction>> window =
+                apiService.getTransactionsAsync(cardNumber, null, null, null, pageSize + 1, offset);
+        CompletableFuture<TransactionPage> page =
+                adapt(window.thenApply(list -> ApiAccountService.toPage(list, offset, pageSize)));
+        page.whenComplete((value, error) -> window.cancel(true));
+        return page;
+    }
+
+    /**
+     * Wrap an API future the way {@link ApiAccountService} wraps its calls:
+     * failures become RuntimeExceptions with the API's message. The result
+     * gets the timeout, and completing it early cancels {@code call}.
+     */
+    private <T> CompletableFuture<T> adapt(CompletableFuture<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        call.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            result.completeExceptionally(cause instanceof RuntimeException
+                    ? cause : new RuntimeException(cause.getMessage(), cause));
+        });
+        result.whenComplete((value, error) -> call.cancel(true));
+        return withTimeout(result);
+    }
+
+    /**
+     * A money movement that times out here may still have been applied, so
+     * it fails with {@link ApiService#STATUS_UNKNOWN} rather than a bare
+     * timeout. Completing the result early still cancels {@code call}.
+     */
+    private static <T> CompletableFuture<T> statusUnknownOnTimeout(CompletableFuture<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        call.whenComplete((value, error) -> {
+            if (error instanceof TimeoutException) {
+                result.completeExceptionally(new RuntimeException(ApiService.STATUS_UNKNOWN, error));
+            } else if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+        result.whenComplete((value, error) -> call.cancel(true));
+        return result;
+    }
+}
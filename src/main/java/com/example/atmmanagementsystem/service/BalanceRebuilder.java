@@ -0,0 +1,231 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rebuilds every balance from the ledger: opening balance plus all of the
+ * card's events, hot and archived, ignoring existing snapshots. The result
+ * replaces each card's snapshot and is compared with {@code accounts.balance},
+ * so a run doubles as a drift report for the mutable-balance mode.
+ * <p>
+ * Cards are streamed in order and rebuilt in chunks on a thread per core;
+ * at most two chunks per thread are held in memory at a time. Each chunk locks
+ * its account rows like a posting, so the rebuild can run against a live
+ * database.
+ * <p>
+ * With {@code --write-accounts} the rebuilt balances are also written to
+ * {@code accounts.balance}, which is what has to happen before turning the
+ * event-sourced mode off.
+ * <p>
+ * Usage: {@code BalanceRebuilder rebuild [threads] [--write-accounts]}
+ */
+public class BalanceRebuilder {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String CARDS_SQL = "SELECT card_number FROM accounts ORDER BY card_number";
+
+    private static final String REBUILT_SQL =
+            "SELECT card_number, balance, opening_balance"
+                    + " + (SELECT COALESCE(SUM(" + EventSourcedBalances.SIGNED_AMOUNT + "), 0) FROM transactions t "
+                    + "WHERE t.card_number = accounts.card_number)"
+                    + " + (SELECT COALESCE(SUM(" + EventSourcedBalances.SIGNED_AMOUNT + "), 0) "
+                    + "FROM transactions_archive t WHERE t.card_number = accounts.card_number),"
+                    + " GREATEST(COALESCE((SELECT MAX(t.id) FROM transactions t "
+                    + "WHERE t.card_number = accounts.card_number), 0),"
+                    + " COALESCE((SELECT MAX(t.id) FROM transactions_archive t "
+                    + "WHERE t.card_number = accounts.card_number), 0)) "
+                    + "FROM accounts WHERE card_number IN (%s)";
+
+    // Unconditional: a full rebuild is authoritative, unlike compaction
+    private static final String UPSERT_SNAPSHOT_SQL =
+            "INSERT INTO balance_snapshots (card_number, balance, last_event_id) VALUES (?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE balance = VALUES(balance), last_event_id = VALUES(last_event_id)";
+
+    private static final String WRITE_BALANCE_SQL = "UPDATE accounts SET balance = ? WHERE card_number = ?";
+
+    private final int threads;
+    private final boolean writeAccounts;
+    private final AtomicInteger rebuilt = new AtomicInteger();
+    private final AtomicInteger drifted = new AtomicInteger();
+    private final AtomicInteger missingOpening = new AtomicInteger();
+
+    public BalanceRebuilder(int threads, boolean writeAccounts) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        this.threads = threads;
+        this.writeAccounts = writeAccounts;
+    }
+
+    /**
+     * Rebuild every card's balance.
+     *
+     * @return number of cards rebuilt
+     */
+    public int rebuild() throws SQLException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "balance-rebuilder");
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore inFlight = new Semaphore(threads * 2);
+        List<Future<?>> chunks = new ArrayList<>();
+        try {
+            try (Connection conn = DatabaseConnection.getConnection();
+                    PreparedStatement pstmt = conn.prepareStatement(CARDS_SQL)) {
+                pstmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+                    while (rs.next()) {
+                        chunk.add(rs.getString(1));
+                        if (chunk.size() == CHUNK_SIZE) {
+                            chunks.add(submit(pool, inFlight, chunk));
+                            chunk = new ArrayList<>(CHUNK_SIZE);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        chunks.add(submit(pool, inFlight, chunk));
+                    }
+                }
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new RuntimeException("Balance rebuild failed: " + cause.getMessage(), cause);
+        } finally {
+            pool.shutdownNow();
+        }
+        return rebuilt.get();
+    }
+
+    private Future<?> submit(ExecutorService pool, Semaphore inFlight, List<String> cards)
+            throws InterruptedException {
+        // Keeps the reader from running ahead of the workers with the whole table
+        inFlight.acquire();
+        return pool.submit(() -> {
+            try {
+                rebuildChunk(cards);
+            } finally {
+                inFlight.release();
+            }
+            return null;
+        });
+    }
+
+    private void rebuildChunk(List<String> cards) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(cards.size(), "?"));
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // IN lists sized to the chunk: kept out of the statement cache
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM accounts WHERE card_number IN ("
+                        + placeholders + ") ORDER BY card_number FOR UPDATE",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    BalanceSnapshotter.bindAll(pstmt, cards);
+                    pstmt.executeQuery().close();
+                }
+
+                try (PreparedStatement read = conn.prepareStatement(String.format(REBUILT_SQL, placeholders),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                        PreparedStatement snapshot = conn.prepareStatement(UPSERT_SNAPSHOT_SQL);
+                        PreparedStatement write = conn.prepareStatement(WRITE_BALANCE_SQL)) {
+                    BalanceSnapshotter.bindAll(read, cards);
+                    try (ResultSet rs = read.executeQuery()) {
+                        while (rs.next()) {
+                            String card = rs.getString(1);
+                            BigDecimal ledger = rs.getBigDecimal(3);
+                            if (ledger == null) {
+                                missingOpening.incrementAndGet();
+                                System.err.println("No opening balance for card " + card + "; skipped");
+                                continue;
+                            }
+                            Money balance = Money.of(ledger);
+                            BigDecimal stored = rs.getBigDecimal(2);
+                            if (stored == null || !Money.of(stored).equals(balance)) {
+                                drifted.incrementAndGet();
+                            }
+
+                            snapshot.setString(1, card);
+                            snapshot.setBigDecimal(2, balance.toBigDecimal());
+                            snapshot.setLong(3, rs.getLong(4));
+                            snapshot.addBatch();
+                            if (writeAccounts) {
+                                write.setBigDecimal(1, balance.toBigDecimal());
+                                write.setString(2, card);
+                                write.addBatch();
+                            }
+                            rebuilt.incrementAndGet();
+                        }
+                    }
+                    snapshot.executeBatch();
+                    if (writeAccounts) {
+                        write.executeBatch();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean writeAccounts = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("--write-accounts".equals(args[i])) {
+                writeAccounts = true;
+            } else {
+                threads = Integer.parseInt(args[i]);
+            }
+        }
+        if (args.length > 0 && !"rebuild".equals(args[0])) {
+            System.err.println("Usage: BalanceRebuilder rebuild [threads] [--write-accounts]");
+            return;
+        }
+
+        BalanceRebuilder rebuilder = new BalanceRebuilder(threads, writeAccounts);
+        long start = System.nanoTime();
+        try {
+            int cards = rebuilder.rebuild();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Rebuilt %d balance(s) on %d thread(s) in %.1f s (%.0f cards/s)%n",
+                    cards, threads, seconds, cards / Math.max(seconds, 1e-9));
+            System.out.println(rebuilder.drifted.get() + " card(s) differed from accounts.balance"
+                    + (writeAccounts ? " (now corrected)" : ""));
+            if (rebuilder.missingOpening.get() > 0) {
+                System.out.println(rebuilder.missingOpening.get() + " card(s) skipped without an opening balance");
+            }
+        } catch (SQLException e) {
+            System.err.println("Balance rebuild failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
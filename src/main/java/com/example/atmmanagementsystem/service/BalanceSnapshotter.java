@@ -0,0 +1,170 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts event-sourced balances: folds the events each card received since
+ * its last snapshot into a new snapshot, so deriving a balance only ever has
+ * to add up a few recent events.
+ * <p>
+ * Each run snapshots the cards that had events since the previous run, in
+ * chunks that lock their account rows like a posting does. Events stay in the
+ * ledger; only the snapshot moves forward.
+ * <p>
+ * Usage: {@code BalanceSnapshotter compact} for a single run or
+ * {@code BalanceSnapshotter schedule [intervalMinutes]} to keep running.
+ */
+public class BalanceSnapshotter implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 200;
+    // Ids are handed out before commit, so a run may not yet see every event
+    // below the highest id; the next run looks back this far to catch them
+    private static final long RESCAN_OVERLAP = 10_000;
+
+    private static final String TOUCHED_CARDS_SQL =
+            "SELECT DISTINCT card_number FROM transactions WHERE id > ? AND id <= ?";
+
+    private long compactedThrough;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Snapshot every card with events since the previous run.
+     *
+     * @return number of cards snapshotted
+     */
+    public synchronized int compact() throws SQLException {
+        long upTo;
+        List<String> cards = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM transactions")) {
+                rs.next();
+                upTo = rs.getLong(1);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(TOUCHED_CARDS_SQL)) {
+                pstmt.setLong(1, Math.max(0, compactedThrough - RESCAN_OVERLAP));
+                pstmt.setLong(2, upTo);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        cards.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+
+        // Same lock order as postings (card number) to avoid deadlocks between chunks
+        Collections.sort(cards);
+        for (int from = 0; from < cards.size(); from += CHUNK_SIZE) {
+            snapshot(cards.subList(from, Math.min(from + CHUNK_SIZE, cards.size())));
+        }
+        compactedThrough = upTo;
+        return cards.size();
+    }
+
+    /**
+     * Snapshot the given cards at their latest event.
+     */
+    static void snapshot(List<String> cards) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(cards.size(), "?"));
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Lock first, in its own statement, so the snapshot reads every committed event
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM accounts WHERE card_number IN ("
+                        + placeholders + ") ORDER BY card_number FOR UPDATE")) {
+                    bindAll(pstmt, cards);
+                    pstmt.executeQuery().close();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        String.format(EventSourcedBalances.SNAPSHOT_SQL, placeholders))) {
+                    bindAll(pstmt, cards);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    static void bindAll(PreparedStatement pstmt, List<String> values) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            pstmt.setString(i + 1, values.get(i));
+        }
+    }
+
+    /**
+     * Run {@link #compact()} now and then every {@code intervalMinutes} on a
+     * background thread until {@link #close()}.
+     */
+    public synchronized void start(long intervalMinutes) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "balance-snapshotter");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long start = System.nanoTime();
+                int cards = compact();
+                if (cards > 0) {
+                    System.out.println("Snapshotted " + cards + " balance(s) in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Keep the schedule alive; balances stay correct, only derivation gets slower
+                System.err.println("Balance compaction failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, 0, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "compact";
+        BalanceSnapshotter snapshotter = new BalanceSnapshotter();
+        try {
+            switch (command) {
+                case "compact":
+                    System.out.println("Snapshotted " + snapshotter.compact() + " balance(s)");
+                    break;
+                case "schedule":
+                    snapshotter.start(args.length > 1 ? Long.parseLong(args[1]) : 5);
+                    Thread.currentThread().join();
+                    break;
+                default:
+                    System.err.println("Usage: BalanceSnapshotter compact | schedule [intervalMinutes]");
+            }
+        } catch (SQLException e) {
+            System.err.println("Balance compaction failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            snapshotter.close();
+        }
+    }
+}
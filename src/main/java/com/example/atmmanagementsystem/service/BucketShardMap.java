@@ -0,0 +1,135 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.zip.CRC32;
+
+/**
+ * Shard map backed by the {@code shard_buckets} table on the default database.
+ * <p>
+ * Card numbers hash into {@value #BUCKETS} fixed buckets and each bucket is
+ * assigned to a shard. Resharding moves whole buckets (see
+ * {@link ShardRebalancer}), so the hash never changes and only the moved
+ * bucket's cards are touched. The table is cached in memory and re-read at
+ * most every {@value #REFRESH_MILLIS} ms, so a move becomes visible to every
+ * process within that interval. A process that can't reload for
+ * {@value #MAX_STALE_MILLIS} ms treats every bucket as frozen until it can,
+ * since it may have missed a freeze. The shards' own bucket fences (see
+ * {@link ShardRebalancer}) are what keep a late write off a bucket's old
+ * shard; the freeze just turns it away earlier.
+ */
+public class BucketShardMap implements ShardMap {
+
+    public static final int BUCKETS = 1024;
+    public static final long REFRESH_MILLIS = 1_000;
+    public static final long MAX_STALE_MILLIS = 5 * REFRESH_MILLIS;
+
+    private final int shardCount;
+    private volatile int[] owners;
+    private volatile boolean[] frozen;
+    private volatile long loadedAt;
+
+    /**
+     * Load the map, first spreading buckets round-robin over
+     * {@code shardCount} shards if the table is still empty.
+     */
+    public BucketShardMap(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardCount = shardCount;
+        try {
+            seedIfEmpty();
+            reload();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error while loading shard map: " + e.getMessage());
+        }
+    }
+
+    public static int bucketOf(String cardNumber) {
+        CRC32 crc = new CRC32();
+        crc.update(cardNumber.getBytes(StandardCharsets.US_ASCII));
+        return (int) (crc.getValue() % BUCKETS);
+    }
+
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public int shardFor(String cardNumber) {
+        return current()[bucketOf(cardNumber)];
+    }
+
+    @Override
+    public boolean isFrozen(String cardNumber) {
+        current();
+        // Fail closed: a map this old may be missing a freeze
+        return System.currentTimeMillis() - loadedAt > MAX_STALE_MILLIS || frozen[bucketOf(cardNumber)];
+    }
+
+    private int[] current() {
+        if (System.currentTimeMillis() - loadedAt >= REFRESH_MILLIS) {
+            synchronized (this) {
+                if (System.currentTimeMillis() - loadedAt >= REFRESH_MILLIS) {
+                    try {
+                        reload();
+                    } catch (SQLException e) {
+                        // Keep routing reads with the last known map; retry on the next call
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        return owners;
+    }
+
+    private void seedIfEmpty() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM shard_buckets")) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                return;
+            }
+        }
+        String sql = "INSERT IGNORE INTO shard_buckets (bucket, shard_id) VALUES (?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                pstmt.setInt(1, bucket);
+                pstmt.setInt(2, bucket % shardCount);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private void reload() throws SQLException {
+        int[] newOwners = new int[BUCKETS];
+        boolean[] newFrozen = new boolean[BUCKETS];
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT bucket, shard_id, frozen FROM shard_buckets")) {
+            while (rs.next()) {
+                int shard = rs.getInt(2);
+                if (shard < 0 || shard >= shardCount) {
+                    throw new SQLException("Bucket " + rs.getInt(1) + " is assigned to shard " + shard
+                            + " but only " + shardCount + " shard(s) are configured");
+                }
+                newOwners[rs.getInt(1)] = shard;
+                newFrozen[rs.getInt(1)] = rs.getBoolean(3);
+            }
+        }
+        frozen = newFrozen;
+        owners = newOwners;
+        loadedAt = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,465 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AccountField;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * {@link AccountService} decorator that keeps recently looked-up accounts in a
+ * bounded LRU cache keyed by card number, so repeated {@code findByCardNumber}
+ * and {@code findByAccountNumber} calls (and, over the API, repeated HTTP
+ * round trips) are answered from memory.
+ * <p>
+ * Entries live for {@code atm.cache.ttlSeconds} (30 by default) and cards the
+ * backend doesn't know are remembered as misses for
+ * {@code atm.cache.negativeTtlSeconds} (5 by default). At most
+ * {@code atm.cache.maxEntries} cards are kept (10000 by default); 0 turns
+ * caching off and leaves only the metrics.
+ * <p>
+ * Every mutation that goes through the decorator evicts the card once the
+ * backend call returns or fails, and a lookup that raced with any eviction
+ * returns its result without caching it. So after a local write no caller
+ * sees the balance from before it. Writes made elsewhere (another terminal,
+ * another process) are only picked up when the entry expires; call
+ * {@link #invalidate} when the caller knows better.
+ */
+public class CachingAccountService implements AccountService {
+
+    public static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("atm.cache.maxEntries", 10_000);
+    public static final Duration DEFAULT_TTL =
+            Duration.ofSeconds(Long.getLong("atm.cache.ttlSeconds", 30));
+    public static final Duration DEFAULT_NEGATIVE_TTL =
+            Duration.ofSeconds(Long.getLong("atm.cache.negativeTtlSeconds", 5));
+
+    private final AccountService delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    // Guarded by this. Access order makes the eldest entry the least recently used one
+    private final Map<String, Entry> entries;
+    private final Map<String, String> cardsByAccountNumber = new HashMap<>();
+    // Bumped by every invalidation; a load only caches its result if it didn't move
+    private long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CachingAccountService(AccountService delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * @param maxEntries  most cards kept before the least recently used is evicted; 0 disables caching
+     * @param ttl         how long a found account is served from memory
+     * @param negativeTtl how long an unknown card is remembered as unknown; zero disables negative caching
+     */
+    public CachingAccountService(AccountService delegate, int maxEntries, Duration ttl, Duration negativeTtl) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative");
+        }
+        if (ttl.isNegative() || ttl.isZero() || negativeTtl.isNegative()) {
+            throw new IllegalArgumentException("Cache TTL must be positive");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= CachingAccountService.this.maxEntries) {
+                    return false;
+                }
+                forgetAlias(eldest.getValue());
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public Account createAccount(String name, String phone, Money initialDeposit,
+            String email, String gender, String profession, String nationality, String nid, String address) {
+        Account account = delegate.createAccount(name, phone, initialDeposit, email, gender, profession,
+                nationality, nid, address);
+        // The new card may be cached as unknown
+        if (account != null && account.getCardNumber() != null) {
+            invalidate(account.getCardNumber());
+        }
+        return account;
+    }
+
+    @Override
+    public Optional<Account> findByCardNumber(String cardNumber) {
+        long seen;
+        synchronized (this) {
+            Entry entry = entries.get(cardNumber);
+            if (entry != null && !entry.isExpired()) {
+                return hit(entry);
+            }
+            if (entry != null) {
+                remove(cardNumber);
+            }
+            seen = epoch;
+        }
+        misses.increment();
+        Optional<Account> account = delegate.findByCardNumber(cardNumber);
+        store(cardNumber, account.orElse(null), seen);
+        return account;
+    }
+
+    @Override
+    public Optional<Account> findByAccountNumber(String accountNumber) {
+        long seen;
+        synchronized (this) {
+            String cardNumber = cardsByAccountNumber.get(accountNumber);
+            Entry entry = cardNumber != null ? entries.get(cardNumber) : null;
+            if (entry != null && !entry.isExpired()) {
+                return hit(entry);
+            }
+            if (entry != null) {
+                remove(cardNumber);
+            }
+            seen = epoch;
+        }
+        misses.increment();
+        Optional<Account> account = delegate.findByAccountNumber(accountNumber);
+        // Only found accounts are cached here: an unknown account number has no card to key on
+        account.filter(a -> a.getCardNumber() != null)
+                .ifPresent(a -> store(a.getCardNumber(), a, seen));
+        return account;
+    }
+
+    @Override
+    public Optional<Account> findByPhone(String phone) {
+        return delegate.findByPhone(phone);
+    }
+
+    @Override
+    public Optional<Account> findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public Optional<Account> findByNid(String nid) {
+        return delegate.findByNid(nid);
+    }
+
+    @Override
+    public List<Account> listAccounts() {
+        return delegate.listAccounts();
+    }
+
+    @Override
+    public Stream<Account> streamAccounts(Set<AccountField> fields) {
+        return delegate.streamAccounts(fields);
+    }
+
+    @Override
+    public void blockAccount(String cardNumber, String nidProof) {
+        try {
+            delegate.blockAccount(cardNumber, nidProof);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public void deposit(String cardNumber, Money amount) {
+        try {
+            delegate.deposit(cardNumber, amount);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public void withdraw(String cardNumber, Money amount) {
+        try {
+            delegate.withdraw(cardNumber, amount);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public void deposit(String cardNumber, Money amount, String idempotencyKey) {
+        try {
+            delegate.deposit(cardNumber, amount, idempotencyKey);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public void withdraw(String cardNumber, Money amount, String idempotencyKey) {
+        try {
+            delegate.withdraw(cardNumber, amount, idempotencyKey);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public void transferToCard(String cardNumber, String recipientCardNumber, Money amount) {
+        try {
+            delegate.transferToCard(cardNumber, recipientCardNumber, amount);
+        } finally {
+            invalidate(cardNumber);
+            invalidate(recipientCardNumber);
+        }
+    }
+
+    @Override
+    public void transferToCard(String cardNumber, String recipientCardNumber, Money amount,
+            String idempotencyKey) {
+        try {
+            delegate.transferToCard(cardNumber, recipientCardNumber, amount, idempotencyKey);
+        } finally {
+            invalidate(cardNumber);
+            invalidate(recipientCardNumber);
+        }
+    }
+
+    @Override
+    public void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount) {
+        try {
+            delegate.transferToAccount(cardNumber, recipientAccountNumber, amount);
+        } finally {
+            invalidate(cardNumber);
+            invalidateAccountNumber(recipientAccountNumber);
+        }
+    }
+
+    @Override
+    public void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount,
+            String idempotencyKey) {
+        try {
+            delegate.transferToAccount(cardNumber, recipientAccountNumber, amount, idempotencyKey);
+        } finally {
+            invalidate(cardNumber);
+            invalidateAccountNumber(recipientAccountNumber);
+        }
+    }
+
+    @Override
+    public String resetPin(String cardNumber, String nidProof) {
+        try {
+            return delegate.resetPin(cardNumber, nidProof);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public void updatePin(String cardNumber, String newPin) {
+        try {
+            delegate.updatePin(cardNumber, newPin);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public void unblockAccount(String cardNumber) {
+        try {
+            delegate.unblockAccount(cardNumber);
+        } finally {
+            invalidate(cardNumber);
+        }
+    }
+
+    @Override
+    public List<Transaction> getTransactions(String cardNumber) {
+        return delegate.getTransactions(cardNumber);
+    }
+
+    @Override
+    public TransactionPage getTransactionPage(String cardNumber, String cursor, int pageSize) {
+        return delegate.getTransactionPage(cardNumber, cursor, pageSize);
+    }
+
+    @Override
+    public Stream<Transaction> streamTransactions(String cardNumber) {
+        return delegate.streamTransactions(cardNumber);
+    }
+
+    /**
+     * Drop a card, for writes made around the decorator (cardless deposits
+     * and anything else the interface doesn't cover).
+     */
+    public synchronized void invalidate(String cardNumber) {
+        epoch++;
+        invalidations.increment();
+        remove(cardNumber);
+    }
+
+    /**
+     * Drop whichever cached card belongs to an account number.
+     */
+    public synchronized void invalidateAccountNumber(String accountNumber) {
+        epoch++;
+        invalidations.increment();
+        String cardNumber = cardsByAccountNumber.get(accountNumber);
+        if (cardNumber != null) {
+            remove(cardNumber);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        epoch++;
+        invalidations.increment();
+        entries.clear();
+        cardsByAccountNumber.clear();
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.sum(), negativeHits.sum(), misses.sum(), evictions.sum(),
+                invalidations.sum(), size);
+    }
+
+    // Callers get their own copy; the cached one must not change under the next caller
+    private Optional<Account> hit(Entry entry) {
+        if (entry.account == null) {
+            negativeHits.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(new Account(entry.account));
+    }
+
+    private void store(String cardNumber, Account account, long seen) {
+        if (maxEntries == 0 || (account == null && negativeTtlNanos == 0)) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + (account != null ? ttlNanos : negativeTtlNanos);
+        Entry entry = new Entry(account != null ? new Account(account) : null, expiresAt);
+        synchronized (this) {
+            if (epoch != seen) {
+                return; // invalidated while loading; the result may predate the write
+            }
+            remove(cardNumber);
+            entries.put(cardNumber, entry);
+            if (account != null && account.getAccountNumber() != null) {
+                cardsByAccountNumber.put(account.getAccountNumber(), cardNumber);
+            }
+        }
+    }
+
+    private void remove(String cardNumber) {
+        Entry removed = entries.remove(cardNumber);
+        if (removed != null) {
+            forgetAlias(removed);
+        }
+    }
+
+    private void forgetAlias(Entry entry) {
+        if (entry.account != null && entry.account.getAccountNumber() != null) {
+            cardsByAccountNumber.remove(entry.account.getAccountNumber());
+        }
+    }
+
+    private static final class Entry {
+        private final Account account; // null: the backend doesn't know the card
+        private final long expiresAt;
+
+        Entry(Account account, long expiresAt) {
+            this.account = account;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Snapshot of cache counters.
+     */
+    public static final class CacheStats {
+        private final long hits;
+        private final long negativeHits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+        private final int size;
+
+        CacheStats(long hits, long negativeHits, long misses, long evictions, long invalidations, int size) {
+            this.hits = hits;
+            this.negativeHits = negativeHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.size = size;
+        }
+
+        /** Lookups answered with a cached account. */
+        public long getHits() {
+            return hits;
+        }
+
+        /** Lookups answered from a cached "no such card". */
+        public long getNegativeHits() {
+            return negativeHits;
+        }
+
+        /** Lookups that went to the backend. */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** Entries dropped to make room for newer ones. */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /** Explicit invalidations, one per mutation. */
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        /** Cards cached right now, unknown ones included. */
+        public int getSize() {
+            return size;
+        }
+
+        /** Share of lookups answered without the backend, 0 before the first lookup. */
+        public double getHitRatio() {
+            long lookups = hits + negativeHits + misses;
+            return lookups == 0 ? 0 : (double) (hits + negativeHits) / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{" +
+                    "hits=" + hits +
+                    ", negativeHits=" + negativeHits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", invalidations=" + invalidations +
+                    ", size=" + size +
+                    ", hitRatio=" + String.format("%.3f", getHitRatio()) +
+                    '}';
+        }
+    }
+}
@@ -1,20 +1,226 @@
 package com.example.atmmanagementsystem.service;
 
 import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AccountField;
+import com.example.atmmanagementsystem.model.AuthView;
+import com.example.atmmanagementsystem.model.BalanceView;
+import com.example.atmmanagementsystem.model.BulkCreateResult;
+import com.example.atmmanagementsystem.model.IdentityView;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
 import com.example.atmmanagementsystem.util.DatabaseConnection;
+import com.example.atmmanagementsystem.util.Luhn;
+import com.example.atmmanagementsystem.util.ReplicaRouter;
+import com.example.atmmanagementsystem.util.SequenceAllocator;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.security.SecureRandom;
 
 public class DatabaseAccountService implements AccountService {
 
     private final SecureRandom random = new SecureRandom();
 
+    // Null unless group commit was requested in the constructor
+    private final GroupCommitJournal journal;
+
+    // Null for the default database; set when this instance is one shard
+    private final ReplicaRouter shard;
+
+    // See EventSourcedBalances; when set, accounts.balance is neither written nor read
+    private final boolean eventSourced = EventSourcedBalances.ENABLED;
+
+    // Shared by every instance so blocks aren't wasted per service object
+    private static final SequenceAllocator ACCOUNT_NUMBERS = new SequenceAllocator("account_number", 100);
+    private static final SequenceAllocator CARD_NUMBERS = new SequenceAllocator("card_number", 100);
+    private static final String CARD_BIN = "4450";
+    private static final int MAX_NUMBER_COLLISIONS = 5;
+
+    private static final Money MIN_BALANCE = Money.ofTaka(500);
+    private static final Money DAILY_AMOUNT_LIMIT = Money.ofTaka(50000);
+    private static final Money AMOUNT_STEP = Money.ofTaka(500);
+    private static final Money MAX_TRANSACTION_AMOUNT = Money.ofTaka(25000);
+    private static final int DAILY_COUNT_LIMIT = 5;
+
+    // Daily limits are enforced from the per-card, per-day, per-type counters in
+    // daily_usage (a primary-key lookup) instead of aggregating the ledger
+    private static final String DAILY_LIMIT_GUARD =
+            " AND NOT EXISTS (SELECT 1 FROM daily_usage WHERE card_number = ? AND usage_date = CURDATE()"
+                    + " AND transaction_type = ? AND (txn_count >= ? OR total_amount + ? > ?))";
+
+    private static final String GUARDED_DEPOSIT_SQL =
+            "UPDATE accounts SET balance = balance + ? WHERE card_number = ?" + DAILY_LIMIT_GUARD;
+
+    private static final String GUARDED_WITHDRAW_SQL =
+            "UPDATE accounts SET balance = balance - ? WHERE card_number = ? AND balance - ? >= ?" + DAILY_LIMIT_GUARD;
+
+    private static final String REJECTION_DETAILS_SQL =
+            "SELECT a.balance, COALESCE(u.total_amount, 0), COALESCE(u.txn_count, 0) FROM accounts a "
+                    + "LEFT JOIN daily_usage u ON u.card_number = a.card_number AND u.usage_date = CURDATE() "
+                    + "AND u.transaction_type = ? WHERE a.card_number = ?";
+
+    private static final String RECORD_DAILY_USAGE_SQL =
+            "INSERT INTO daily_usage (card_number, usage_date, transaction_type, total_amount, txn_count) "
+                    + "VALUES (?, CURDATE(), ?, ?, 1) ON DUPLICATE KEY UPDATE "
+                    + "total_amount = total_amount + VALUES(total_amount), txn_count = txn_count + 1";
+
+    private static final String INSERT_ACCOUNT_SQL =
+            "INSERT INTO accounts (account_number, card_number, pin, name, phone_number, email, gender, "
+                    + "profession, nationality, nid, address, balance, opening_balance) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BULK_CHUNK_SIZE = 1000;
+
+    // History and listing reads go to a replica, except for cards this process
+    // wrote to recently enough that a replica might not have the write yet
+    private static final long READ_YOUR_WRITES_NANOS = TimeUnit.SECONDS.toNanos(DatabaseConnection.REPLICA_MAX_LAG_SECONDS)
+            + TimeUnit.MILLISECONDS.toNanos(ReplicaRouter.HEALTH_CHECK_INTERVAL_MILLIS);
+    private static final int MAX_TRACKED_WRITES = 10_000;
+    private static final Map<String, Long> RECENT_WRITES = new ConcurrentHashMap<>();
+
+    // Hot paths read only the columns they need; SELECT * is kept for the
+    // full-profile findBy* lookups
+    private static final String BALANCE_VIEW_SQL =
+            "SELECT card_number, balance, blocked FROM accounts WHERE card_number = ?";
+
+    private static final String DERIVED_BALANCE_VIEW_SQL =
+            "SELECT card_number, " + EventSourcedBalances.DERIVED_BALANCE + ", blocked FROM accounts "
+                    + "WHERE card_number = ?";
+
+    private static final String DAILY_USAGE_FOR_UPDATE_SQL =
+            "SELECT total_amount, txn_count FROM daily_usage WHERE card_number = ? AND usage_date = CURDATE() "
+                    + "AND transaction_type = ? FOR UPDATE";
+
+    private static final String AUTH_VIEW_SQL =
+            "SELECT card_number, pin, blocked FROM accounts WHERE card_number = ?";
+
+    private static final String IDENTITY_VIEW_SQL =
+            "SELECT card_number, nid, phone_number FROM accounts WHERE card_number = ?";
+
+    // PIN and block-state changes are compare-and-set on accounts.version: the
+    // row is read without locks and the UPDATE only applies if nobody changed
+    // it since. Ledger postings don't touch these columns and don't bump it.
+    private static final String VERSIONED_ROW_SQL =
+            "SELECT pin, nid, phone_number, version FROM accounts WHERE card_number = ?";
+
+    private static final int MAX_CAS_ATTEMPTS = Integer.getInteger("atm.db.casAttempts", 5);
+
+    // Shared lock on the bucket's fence row; ShardRebalancer's fence update waits for it
+    private static final String BUCKET_FENCE_SQL = "SELECT fenced FROM bucket_fences WHERE bucket = ? FOR SHARE";
+    private static final LongAdder CAS_UPDATES = new LongAdder();
+    private static final LongAdder CAS_CONFLICTS = new LongAdder();
+    private static final LongAdder CAS_EXHAUSTED = new LongAdder();
+
+    private static final String TRANSACTION_COLUMNS =
+            "SELECT id, card_number, amount, transaction_type, timestamp FROM ";
+
+    // Recent months live in transactions; TransactionArchiver moves older ones
+    // to the compressed, month-partitioned transactions_archive
+    private static final String HOT_TRANSACTIONS = "transactions";
+    private static final String ARCHIVED_TRANSACTIONS = "transactions_archive";
+
+    // One statement, so rows being archived concurrently are seen exactly once
+    private static final String FULL_HISTORY_SQL =
+            TRANSACTION_COLUMNS + HOT_TRANSACTIONS + " WHERE card_number = ? UNION ALL "
+                    + TRANSACTION_COLUMNS + ARCHIVED_TRANSACTIONS + " WHERE card_number = ? "
+                    + "ORDER BY timestamp DESC, id DESC";
+
+    // One fixed statement per table, so every history page shares a statement
+    // cache entry: missing bounds and the first page's cursor are bound as
+    // HISTORY_START / HISTORY_END instead of leaving the condition out
+    private static final String HISTORY_PAGE_FILTER = " WHERE card_number = ? AND timestamp >= ? AND timestamp < ?"
+            + " AND (timestamp < ? OR (timestamp = ? AND id < ?)) ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String HOT_HISTORY_PAGE_SQL = TRANSACTION_COLUMNS + HOT_TRANSACTIONS + HISTORY_PAGE_FILTER;
+    private static final String ARCHIVED_HISTORY_PAGE_SQL =
+            TRANSACTION_COLUMNS + ARCHIVED_TRANSACTIONS + HISTORY_PAGE_FILTER;
+    private static final Timestamp HISTORY_START = Timestamp.valueOf("1900-01-01 00:00:00");
+    private static final Timestamp HISTORY_END = Timestamp.valueOf("2100-01-01 00:00:00");
+
+    private static final String ARCHIVE_WATERMARK_SQL =
+            "SELECT archived_before FROM transaction_archive_state WHERE id = 1";
+
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (card_number, amount, transaction_type) VALUES (?, ?, ?)";
+
+    // A transfer is two ledger legs; daily limits count the sender's TRANSFER_OUT
+    // and the recipient's TRANSFER_IN legs, so DailyUsageMaintenance's rebuild
+    // from the ledger keeps working
+    static final String TRANSFER_OUT = "TRANSFER_OUT";
+    static final String TRANSFER_IN = "TRANSFER_IN";
+
+    private static final String LOCK_BALANCE_SQL = "SELECT balance FROM accounts WHERE card_number = ? FOR UPDATE";
+
+    private static final String ADJUST_BALANCE_SQL = "UPDATE accounts SET balance = balance + ? WHERE card_number = ?";
+
+    private static final String CARD_FOR_ACCOUNT_SQL = "SELECT card_number FROM accounts WHERE account_number = ?";
+
+    // Canonical lock order rules out deadlocks between transfers, but a transfer
+    // can still deadlock with a group-commit batch or on daily_usage gap locks
+    private static final int MAX_DEADLOCK_RETRIES = 3;
+
+    /**
+     * Commits every deposit and withdrawal in its own transaction.
+     */
+    public DatabaseAccountService() {
+        this.journal = null;
+        this.shard = null;
+        numberFilter(); // starts building the number filter, if it's enabled
+    }
+
+    /**
+     * Service over one shard's database. Number sequences stay on the default
+     * database so numbers are unique across shards.
+     */
+    public DatabaseAccountService(ReplicaRouter shard) {
+        this.journal = null;
+        this.shard = shard;
+    }
+
+    /**
+     * Group-commit mode: concurrent deposits and withdrawals are collected for
+     * up to {@code maxDelayMillis} (or until {@code maxBatchSize} are queued)
+     * and committed together. Each call still returns only after its own
+     * posting is durably committed, and rejections are reported per call.
+     * Call {@link #close()} to flush and stop the journal.
+     */
+    public DatabaseAccountService(long maxDelayMillis, int maxBatchSize) {
+        this.journal = new GroupCommitJournal(maxDelayMillis, maxBatchSize, this::writeBatch);
+        this.shard = null;
+        numberFilter();
+    }
+
+    /**
+     * Flush and stop the group-commit journal, if there is one.
+     */
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
     @Override
-    public Account createAccount(String name, String phone, double initialDeposit,
+    public Account createAccount(String name, String phone, Money initialDeposit,
             String email, String gender, String profession, String nationality, String nid, String address) {
 
         // Validation check for existing phone
@@ -28,21 +234,12 @@ public class DatabaseAccountService implements AccountService {
             throw new IllegalArgumentException("An account with this NID already exists");
         }
 
-        String acctNum = generateUniqueAccountNumber();
-        String cardNum = generateUniqueCardNumber();
         String pin = generatePin();
+        String hashedPin = com.example.atmmanagementsystem.util.SecurityUtil.hashPin(pin);
 
-        String sql = "INSERT INTO accounts (account_number, card_number, pin, name, phone_number, email, gender, profession, nationality, nid, address, balance) "
-                +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, acctNum);
-            pstmt.setString(2, cardNum);
+        try (Connection conn = primary();
+                PreparedStatement pstmt = conn.prepareStatement(INSERT_ACCOUNT_SQL)) {
 
-            String hashedPin = com.example.atmmanagementsystem.util.SecurityUtil.hashPin(pin);
             pstmt.setString(3, hashedPin);
             pstmt.setString(4, name);
             pstmt.setString(5, phone);
@@ -52,37 +249,244 @@ public class DatabaseAccountService implements AccountService {
             pstmt.setString(9, nationality);
             pstmt.setString(10, nid);
             pstmt.setString(11, address);
-            pstmt.setDouble(12, initialDeposit);
+            pstmt.setBigDecimal(12, initialDeposit.toBigDecimal());
+            pstmt.setBigDecimal(13, initialDeposit.toBigDecimal());
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Creating account failed, no rows affected.");
-            }
+            for (int attempt = 1;; attempt++) {
+                String acctNum = generateUniqueAccountNumber();
+                String cardNum = generateUniqueCardNumber();
+                pstmt.setString(1, acctNum);
+                pstmt.setString(2, cardNum);
 
-            Account account = new Account(name, phone, initialDeposit, email, gender, profession, nationality, nid,
-                    address);
-            account.setAccountNumber(acctNum);
-            account.setCardNumber(cardNum);
-            // Return plain PIN to the user so they see what it is
-            account.setPin(pin);
+                try {
+                    int affectedRows = pstmt.executeUpdate();
+                    if (affectedRows == 0) {
+                        throw new SQLException("Creating account failed, no rows affected.");
+                    }
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    // An older, randomly generated number already holds this value; take the next one
+                    if (attempt >= MAX_NUMBER_COLLISIONS || !isNumberCollision(e)) {
+                        throw e;
+                    }
+                    continue;
+                }
+
+                Account account = new Account(name, phone, initialDeposit, email, gender, profession, nationality, nid,
+                        address);
+                account.setAccountNumber(acctNum);
+                account.setCardNumber(cardNum);
+                // Return plain PIN to the user so they see what it is
+                account.setPin(pin);
+                recordCreated(account);
 
-            return account;
+                return account;
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error: " + e.getMessage());
+        }
+    }
 
+    /**
+     * Insert an account whose numbers were assigned (and whose phone, email
+     * and NID were checked for uniqueness) by the caller, as the sharded
+     * service does. A PIN is generated and returned in plain text on the
+     * result.
+     */
+    Account createPrepared(Account draft) {
+        String pin = generatePin();
+        try (Connection conn = primary()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_ACCOUNT_SQL)) {
+                checkOwned(conn, draft.getCardNumber());
+                bindAccount(pstmt, draft, com.example.atmmanagementsystem.util.SecurityUtil.hashPin(pin));
+                pstmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+            recordCreated(draft);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException("Database error: " + e.getMessage());
         }
+        // Return plain PIN to the user so they see what it is
+        draft.setPin(pin);
+        return draft;
+    }
+
+    /**
+     * Create many accounts at once. {@code drafts} are accounts built with the
+     * public constructor (which validates the fields); numbers and PINs are
+     * assigned here. Uniqueness is checked in memory across the batch and then
+     * with one IN (...) query per key, PINs are hashed in parallel, and rows
+     * are inserted with JDBC batching in chunks of {@value #BULK_CHUNK_SIZE}.
+     *
+     * @return one result per draft, in the same order
+     */
+    public List<BulkCreateResult> createAccounts(List<Account> drafts) {
+        BulkCreateResult[] results = new BulkCreateResult[drafts.size()];
+
+        // 1. Reject duplicates inside the batch; the first occurrence wins
+        Map<String, Integer> phones = new HashMap<>();
+        Map<String, Integer> emails = new HashMap<>();
+        Map<String, Integer> nids = new HashMap<>();
+        for (int i = 0; i < drafts.size(); i++) {
+            Account draft = drafts.get(i);
+            if (phones.putIfAbsent(draft.getPhoneNumber(), i) != null) {
+                results[i] = BulkCreateResult.failed(i, "Duplicate phone number in batch");
+            } else if (draft.getEmail() != null && emails.putIfAbsent(draft.getEmail(), i) != null) {
+                results[i] = BulkCreateResult.failed(i, "Duplicate email in batch");
+            } else if (draft.getNid() != null && nids.putIfAbsent(draft.getNid(), i) != null) {
+                results[i] = BulkCreateResult.failed(i, "Duplicate NID in batch");
+            }
+        }
+
+        try (Connection conn = primary()) {
+            // 2. One set-based lookup per unique key
+            rejectExisting(conn, "phone_number", phones, results,
+                    "An account with this phone number already exists");
+            rejectExisting(conn, "email", emails, results, "An account with this email already exists");
+            rejectExisting(conn, "nid", nids, results, "An account with this NID already exists");
+
+            // 3. Assign numbers and PINs, hashing in parallel
+            List<Integer> accepted = new ArrayList<>();
+            for (int i = 0; i < drafts.size(); i++) {
+                if (results[i] == null) {
+                    Account draft = drafts.get(i);
+                    draft.setAccountNumber(generateUniqueAccountNumber());
+                    draft.setCardNumber(generateUniqueCardNumber());
+                    accepted.add(i);
+                }
+            }
+            String[] plainPins = new String[drafts.size()];
+            String[] hashedPins = new String[drafts.size()];
+            accepted.parallelStream().forEach(i -> {
+                plainPins[i] = generatePin();
+                hashedPins[i] = com.example.atmmanagementsystem.util.SecurityUtil.hashPin(plainPins[i]);
+            });
+
+            // 4. Batched inserts, one transaction per chunk
+            for (int from = 0; from < accepted.size(); from += BULK_CHUNK_SIZE) {
+                List<Integer> chunk = accepted.subList(from, Math.min(from + BULK_CHUNK_SIZE, accepted.size()));
+                insertChunk(conn, drafts, chunk, hashedPins, results);
+            }
+
+            for (int i : accepted) {
+                if (results[i] == null) {
+                    Account account = drafts.get(i);
+                    // Return plain PIN to the user so they see what it is
+                    account.setPin(plainPins[i]);
+                    recordCreated(account);
+                    results[i] = BulkCreateResult.created(i, account);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error during bulk account creation: " + e.getMessage());
+        }
+        return Arrays.asList(results);
+    }
+
+    private void rejectExisting(Connection conn, String column, Map<String, Integer> values,
+            BulkCreateResult[] results, String message) throws SQLException {
+        List<String> keys = new ArrayList<>(values.keySet());
+        for (int from = 0; from < keys.size(); from += BULK_CHUNK_SIZE) {
+            List<String> chunk = keys.subList(from, Math.min(from + BULK_CHUNK_SIZE, keys.size()));
+            String sql = "SELECT " + column + " FROM accounts WHERE " + column + " IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            // One-off SQL for every chunk size: keep it out of the statement cache
+            try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        // Case-insensitive collations can return a differently cased value; the
+                        // insert's UNIQUE constraint still catches those rows
+                        Integer row = values.get(rs.getString(1));
+                        if (row != null && results[row] == null) {
+                            results[row] = BulkCreateResult.failed(row, message);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert one chunk as a JDBC batch. If the batch trips a constraint (for
+     * example a concurrent signup took a phone number), the chunk is rolled
+     * back and retried row by row so only the offending rows fail.
+     */
+    private void insertChunk(Connection conn, List<Account> drafts, List<Integer> chunk, String[] hashedPins,
+            BulkCreateResult[] results) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_ACCOUNT_SQL)) {
+            for (int i : chunk) {
+                bindAccount(pstmt, drafts.get(i), hashedPins[i]);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } catch (BatchUpdateException e) {
+            conn.rollback();
+            conn.setAutoCommit(true);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_ACCOUNT_SQL)) {
+                for (int i : chunk) {
+                    bindAccount(pstmt, drafts.get(i), hashedPins[i]);
+                    try {
+                        pstmt.executeUpdate();
+                    } catch (SQLIntegrityConstraintViolationException rowError) {
+                        results[i] = BulkCreateResult.failed(i, rowError.getMessage());
+                    }
+                }
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void bindAccount(PreparedStatement pstmt, Account account, String hashedPin) throws SQLException {
+        pstmt.setString(1, account.getAccountNumber());
+        pstmt.setString(2, account.getCardNumber());
+        pstmt.setString(3, hashedPin);
+        pstmt.setString(4, account.getName());
+        pstmt.setString(5, account.getPhoneNumber());
+        pstmt.setString(6, account.getEmail());
+        pstmt.setString(7, account.getGender());
+        pstmt.setString(8, account.getProfession());
+        pstmt.setString(9, account.getNationality());
+        pstmt.setString(10, account.getNid());
+        pstmt.setString(11, account.getAddress());
+        pstmt.setBigDecimal(12, account.getBalance().toBigDecimal());
+        pstmt.setBigDecimal(13, account.getBalance().toBigDecimal());
+    }
+
+    private static boolean isNumberCollision(SQLException e) {
+        String message = e.getMessage();
+        return message != null && (message.contains("PRIMARY") || message.contains("card_number"));
     }
 
     @Override
     public Optional<Account> findByAccountNumber(String accountNumber) {
-        String sql = "SELECT * FROM accounts WHERE account_number = ?";
+        AccountNumberFilter filter = numberFilter();
+        if (filter != null && filter.isDefinitelyMissingAccount(accountNumber)) {
+            return Optional.empty();
+        }
+        String sql = selectAccounts() + " WHERE account_number = ?";
         return getAccountResult(sql, accountNumber);
     }
 
     @Override
     public Optional<Account> findByCardNumber(String cardNumber) {
-        String sql = "SELECT * FROM accounts WHERE card_number = ?";
+        if (definitelyNoCard(cardNumber)) {
+            return Optional.empty();
+        }
+        String sql = selectAccounts() + " WHERE card_number = ?";
         return getAccountResult(sql, cardNumber);
     }
 
@@ -91,7 +495,7 @@ public class DatabaseAccountService implements AccountService {
         if (phone == null)
             return Optional.empty();
         String digits = phone.replaceAll("\\D", "");
-        String sql = "SELECT * FROM accounts WHERE phone_number = ?";
+        String sql = selectAccounts() + " WHERE phone_number = ?";
         return getAccountResult(sql, digits);
     }
 
@@ -99,7 +503,7 @@ public class DatabaseAccountService implements AccountService {
     public Optional<Account> findByEmail(String email) {
         if (email == null)
             return Optional.empty();
-        String sql = "SELECT * FROM accounts WHERE email = ?";
+        String sql = selectAccounts() + " WHERE email = ?";
         return getAccountResult(sql, email);
     }
 
@@ -107,15 +511,25 @@ public class DatabaseAccountService implements AccountService {
     public Optional<Account> findByNid(String nid) {
         if (nid == null)
             return Optional.empty();
-        String sql = "SELECT * FROM accounts WHERE nid = ?";
+        String sql = selectAccounts() + " WHERE nid = ?";
         return getAccountResult(sql, nid);
     }
 
+    /**
+     * Full-profile select; in event-sourced mode the derived balance comes
+     * back as {@code derived_balance}.
+     */
+    private String selectAccounts() {
+        return eventSourced
+                ? "SELECT accounts.*, " + EventSourcedBalances.DERIVED_BALANCE + " AS derived_balance FROM accounts"
+                : "SELECT * FROM accounts";
+    }
+
     @Override
     public List<Account> listAccounts() {
         List<Account> accounts = new ArrayList<>();
-        String sql = "SELECT * FROM accounts";
-        try (Connection conn = DatabaseConnection.getConnection();
+        String sql = selectAccounts();
+        try (Connection conn = replica();
                 Statement stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -128,14 +542,107 @@ public class DatabaseAccountService implements AccountService {
         return accounts;
     }
 
+    /**
+     * Server-side streamed scan in primary-key order; see
+     * {@link #streamTransactions(String)} for how MySQL streaming is enabled.
+     */
+    @Override
+    public Stream<Account> streamAccounts(Set<AccountField> fields) {
+        Set<AccountField> selected = fields == null || fields.isEmpty()
+                ? EnumSet.allOf(AccountField.class)
+                : EnumSet.copyOf(fields);
+        boolean derived = eventSourced && selected.contains(AccountField.BALANCE);
+        String sql = "SELECT " + AccountField.columnList(selected)
+                + (derived ? ", " + EventSourcedBalances.DERIVED_BALANCE + " AS derived_balance" : "")
+                + " FROM accounts ORDER BY account_number";
+
+        Connection conn = null;
+        try {
+            conn = replica();
+            PreparedStatement pstmt = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            ResultSet rs = pstmt.executeQuery();
+            return streamRows(conn, rs, row -> {
+                Account acc = new Account();
+                for (AccountField field : selected) {
+                    String column = derived && field == AccountField.BALANCE ? "derived_balance" : field.getColumn();
+                    field.set(acc, row.getString(column));
+                }
+                return acc;
+            });
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            e.printStackTrace();
+            throw new RuntimeException("Database error while streaming accounts: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Balance and blocked flag only, for balance checks that don't need the profile.
+     */
+    public Optional<BalanceView> findBalance(String cardNumber) {
+        if (definitelyNoCard(cardNumber)) {
+            return Optional.empty();
+        }
+        return queryOne(eventSourced ? DERIVED_BALANCE_VIEW_SQL : BALANCE_VIEW_SQL, cardNumber,
+                rs -> new BalanceView(rs.getString(1), money(rs, 2), rs.getBoolean(3)));
+    }
+
+    /**
+     * Stored PIN hash and blocked flag only, for PIN checks and changes.
+     */
+    public Optional<AuthView> findAuth(String cardNumber) {
+        if (definitelyNoCard(cardNumber)) {
+            return Optional.empty();
+        }
+        return queryOne(AUTH_VIEW_SQL, cardNumber,
+                rs -> new AuthView(rs.getString(1), rs.getString(2), rs.getBoolean(3)));
+    }
+
+    /**
+     * NID and phone number only, for identity checks before blocking or resetting a card.
+     */
+    public Optional<IdentityView> findIdentity(String cardNumber) {
+        if (definitelyNoCard(cardNumber)) {
+            return Optional.empty();
+        }
+        return queryOne(IDENTITY_VIEW_SQL, cardNumber,
+                rs -> new IdentityView(rs.getString(1), rs.getString(2), rs.getString(3)));
+    }
+
+    /**
+     * The number filter, for the default database when it's enabled; shard
+     * services get null since the filter doesn't cover their databases.
+     */
+    private AccountNumberFilter numberFilter() {
+        return shard == null && AccountNumberFilter.ENABLED ? AccountNumberFilter.shared() : null;
+    }
+
+    private boolean definitelyNoCard(String cardNumber) {
+        AccountNumberFilter filter = numberFilter();
+        return filter != null && filter.isDefinitelyMissingCard(cardNumber);
+    }
+
+    private void recordCreated(Account account) {
+        AccountNumberFilter filter = numberFilter();
+        if (filter != null) {
+            filter.add(account.getCardNumber(), account.getAccountNumber());
+        }
+    }
+
     private Optional<Account> getAccountResult(String sql, String param) {
-        try (Connection conn = DatabaseConnection.getConnection();
+        return queryOne(sql, param, this::mapRowToAccount);
+    }
+
+    private <T> Optional<T> queryOne(String sql, String param, RowMapper<T> mapper) {
+        try (Connection conn = primary();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, param);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapRowToAccount(rs));
+                    return Optional.of(mapper.map(rs));
                 }
             }
         } catch (SQLException e) {
@@ -148,7 +655,7 @@ public class DatabaseAccountService implements AccountService {
         Account acc = new Account(
                 rs.getString("name"),
                 rs.getString("phone_number"),
-                rs.getDouble("balance"),
+                Money.of(rs.getBigDecimal(eventSourced ? "derived_balance" : "balance")),
                 rs.getString("email"),
                 rs.getString("gender"),
                 rs.getString("profession"),
@@ -162,28 +669,38 @@ public class DatabaseAccountService implements AccountService {
         return acc;
     }
 
-    // Helper methods for generation
-    private String generateUniqueAccountNumber() {
-        for (int i = 0; i < 100; i++) {
-            String candidate = String.format("%012d", Math.abs(random.nextLong()) % 1_000_000_000_000L);
-            // Check DB for existence
-            if (findByAccountNumber(candidate).isEmpty())
-                return candidate;
+    // Helper methods for generation. Numbers come from blocks reserved in
+    // number_sequences, so no lookup query is needed per candidate; the UNIQUE
+    // constraints only matter for numbers that predate the sequences. When
+    // the number filter is up, numbers it says an older account may hold are
+    // skipped before the insert; a skip only spends a sequence value.
+    static String generateUniqueAccountNumber() throws SQLException {
+        String accountNumber = String.format("%012d", ACCOUNT_NUMBERS.next());
+        for (int skipped = 0; skipped < MAX_NUMBER_COLLISIONS && mayBeTaken(accountNumber, false); skipped++) {
+            accountNumber = String.format("%012d", ACCOUNT_NUMBERS.next());
+        }
+        return accountNumber;
+    }
+
+    static String generateUniqueCardNumber() throws SQLException {
+        String cardNumber = nextCardNumber();
+        for (int skipped = 0; skipped < MAX_NUMBER_COLLISIONS && mayBeTaken(cardNumber, true); skipped++) {
+            cardNumber = nextCardNumber();
         }
-        throw new IllegalStateException("Unable to generate unique account number");
+        return cardNumber;
+    }
+
+    private static String nextCardNumber() throws SQLException {
+        String payload = CARD_BIN + String.format("%011d", CARD_NUMBERS.next());
+        return payload + Luhn.checkDigit(payload);
     }
 
-    private String generateUniqueCardNumber() {
-        for (int i = 0; i < 100; i++) {
-            StringBuilder sb = new StringBuilder(16);
-            for (int j = 0; j < 16; j++)
-                sb.append(random.nextInt(10));
-            String candidate = sb.toString();
-            // Check DB for existence
-            if (findByCardNumber(candidate).isEmpty())
-                return candidate;
+    private static boolean mayBeTaken(String number, boolean card) {
+        if (!AccountNumberFilter.ENABLED || !AccountNumberFilter.shared().isReady()) {
+            return false; // no filter to ask; the insert's UNIQUE constraint still decides
         }
-        throw new IllegalStateException("Unable to generate unique card number");
+        AccountNumberFilter filter = AccountNumberFilter.shared();
+        return card ? filter.mightContainCard(number) : filter.mightContainAccount(number);
     }
 
     private String generatePin() {
@@ -193,27 +710,27 @@ public class DatabaseAccountService implements AccountService {
 
     @Override
     public void blockAccount(String cardNumber, String nidProof) {
-        // Verify NID proof matches
-        Account acc = findByCardNumber(cardNumber).orElseThrow(() -> new IllegalArgumentException("Card not found"));
-        
-        boolean valid = false;
-        if (nidProof.equals(acc.getNid())) {
-            valid = true;
-        } else if (acc.getPhoneNumber() != null && acc.getPhoneNumber().endsWith(nidProof)) {
-            valid = true;
-        }
-
-        if (!valid) {
-            throw new IllegalArgumentException("NID verification failed");
-        }
-
-        String sql = "UPDATE accounts SET blocked = TRUE WHERE card_number = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try {
+            updateVersioned(cardNumber, "Block account", (conn, row) -> {
+                // Verify NID proof matches
+                boolean valid = false;
+                if (nidProof.equals(row.nid)) {
+                    valid = true;
+                } else if (row.phoneNumber != null && row.phoneNumber.endsWith(nidProof)) {
+                    valid = true;
+                }
 
-            pstmt.setString(1, cardNumber);
-            pstmt.executeUpdate();
+                if (!valid) {
+                    throw new IllegalArgumentException("NID verification failed");
+                }
 
+                try (PreparedStatement pstmt = conn.prepareStatement("UPDATE accounts SET blocked = TRUE, "
+                        + "version = version + 1 WHERE card_number = ? AND version = ?")) {
+                    pstmt.setString(1, cardNumber);
+                    pstmt.setLong(2, row.version);
+                    return pstmt.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException("Error blocking account: " + e.getMessage());
@@ -221,223 +738,577 @@ public class DatabaseAccountService implements AccountService {
     }
 
     @Override
-    public void deposit(String cardNumber, double amount) {
-        if (amount <= 0) {
+    public void deposit(String cardNumber, Money amount) {
+        deposit(cardNumber, amount, null);
+    }
+
+    @Override
+    public void deposit(String cardNumber, Money amount, String idempotencyKey) {
+        IdempotencyKeys.validate(idempotencyKey);
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Amount must be positive");
         }
-        if (amount % 500 != 0) {
+        if (!amount.isMultipleOf(AMOUNT_STEP)) {
             throw new IllegalArgumentException("Amount must be a multiple of 500");
         }
-        if (amount < 500) {
+        if (amount.isLessThan(AMOUNT_STEP)) {
             throw new IllegalArgumentException("Minimum deposit amount is 500 TK");
         }
-        if (amount > 25000) {
+        if (amount.isGreaterThan(MAX_TRANSACTION_AMOUNT)) {
             throw new IllegalArgumentException("Maximum deposit amount per transaction is 25,000 TK");
         }
 
-        // Check Daily Limit (Amount)
-        double dailyTotal = getDailyTotal(cardNumber, "DEPOSIT");
-        if (dailyTotal + amount > 50000) {
-            throw new IllegalArgumentException(
-                    "Daily deposit limit is 50,000 TK. You can deposit " + (50000 - dailyTotal) + " TK more today.");
-        }
+        postTransaction(cardNumber, amount, "DEPOSIT", idempotencyKey);
+    }
 
-        // Check Daily Limit (Count)
-        int dailyCount = getDailyCount(cardNumber, "DEPOSIT");
-        if (dailyCount >= 5) {
-            throw new IllegalArgumentException("Daily deposit transaction limit (5 times) reached.");
-        }
+    @Override
+    public void withdraw(String cardNumber, Money amount) {
+        withdraw(cardNumber, amount, null);
+    }
 
-        Connection conn = null;
-        try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false); // Transaction start
+    @Override
+    public void withdraw(String cardNumber, Money amount, String idempotencyKey) {
+        IdempotencyKeys.validate(idempotencyKey);
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (!amount.isMultipleOf(AMOUNT_STEP)) {
+            throw new IllegalArgumentException("Amount must be a multiple of 500");
+        }
+        if (amount.isLessThan(AMOUNT_STEP)) {
+            throw new IllegalArgumentException("Minimum withdraw amount is 500 TK");
+        }
+        if (amount.isGreaterThan(MAX_TRANSACTION_AMOUNT)) {
+            throw new IllegalArgumentException("Maximum withdraw amount per transaction is 25,000 TK");
+        }
 
-            // 1. Update Balance
-            try (PreparedStatement updateStmt = conn
-                    .prepareStatement("UPDATE accounts SET balance = balance + ? WHERE card_number = ?")) {
-                updateStmt.setDouble(1, amount);
-                updateStmt.setString(2, cardNumber);
-                int rows = updateStmt.executeUpdate();
-                if (rows == 0)
-                    throw new SQLException("Deposit failed: Card not found");
-            }
+        postTransaction(cardNumber, amount, "WITHDRAW", idempotencyKey);
+    }
 
-            // 2. Insert Transaction Record
-            try (PreparedStatement insertStmt = conn.prepareStatement(
-                    "INSERT INTO transactions (card_number, amount, transaction_type) VALUES (?, ?, ?)")) {
-                insertStmt.setString(1, cardNumber);
-                insertStmt.setDouble(2, amount);
-                insertStmt.setString(3, "DEPOSIT");
-                insertStmt.executeUpdate();
-            }
+    @Override
+    public void transferToCard(String cardNumber, String recipientCardNumber, Money amount, String idempotencyKey) {
+        checkTransfer(amount, idempotencyKey);
+        transfer(cardNumber, recipientCardNumber, amount, idempotencyKey);
+    }
 
-            conn.commit();
-        } catch (SQLException e) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
+    @Override
+    public void transferToAccount(String cardNumber, String recipientAccountNumber, Money amount,
+            String idempotencyKey) {
+        checkTransfer(amount, idempotencyKey);
+        String recipientCardNumber;
+        try (Connection conn = primary();
+                PreparedStatement pstmt = conn.prepareStatement(CARD_FOR_ACCOUNT_SQL)) {
+            pstmt.setString(1, recipientAccountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalArgumentException("Recipient account not found");
                 }
+                recipientCardNumber = rs.getString(1);
             }
+        } catch (SQLException e) {
             e.printStackTrace();
-            throw new RuntimeException("Database error during deposit: " + e.getMessage());
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
-            }
+            throw new RuntimeException("Database error during transfer: " + e.getMessage());
         }
+        transfer(cardNumber, recipientCardNumber, amount, idempotencyKey);
     }
 
-    @Override
-    public void withdraw(String cardNumber, double amount) {
-        if (amount <= 0) {
+    private static void checkTransfer(Money amount, String idempotencyKey) {
+        IdempotencyKeys.validate(idempotencyKey);
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Amount must be positive");
         }
-        if (amount % 500 != 0) {
+        if (!amount.isMultipleOf(AMOUNT_STEP)) {
             throw new IllegalArgumentException("Amount must be a multiple of 500");
         }
-        if (amount < 500) {
-            throw new IllegalArgumentException("Minimum withdraw amount is 500 TK");
+        if (amount.isLessThan(AMOUNT_STEP)) {
+            throw new IllegalArgumentException("Minimum transfer amount is 500 TK");
         }
-        if (amount > 25000) {
-            throw new IllegalArgumentException("Maximum withdraw amount per transaction is 25,000 TK");
+        if (amount.isGreaterThan(MAX_TRANSACTION_AMOUNT)) {
+            throw new IllegalArgumentException("Maximum transfer amount per transaction is 25,000 TK");
         }
+    }
 
-        // Check balance first
-        Account acc = findByCardNumber(cardNumber).orElseThrow(() -> new IllegalArgumentException("Card not found"));
-        if (acc.getBalance() - amount < 500) {
-            throw new IllegalArgumentException("Insufficient funds. Minimum balance of 500 TK required.");
+    /**
+     * Moves money between two cards in one transaction: both account rows
+     * are locked in card-number order, so opposing transfers queue behind
+     * each other instead of deadlocking. The sender is held to the
+     * withdrawal rules (minimum balance, daily amount and count) and the
+     * recipient to the deposit rules (daily amount and count), each counted
+     * separately for transfers, under the same locks. Both ledger legs and
+     * both usage counters are written before the commit.
+     * <p>
+     * Transfers don't go through the group-commit journal. A deadlock with
+     * some other writer is rolled back and retried. With an idempotency key,
+     * a repeat for the same sender and amount returns without moving money;
+     * the recipient isn't part of the check.
+     */
+    private void transfer(String cardNumber, String recipientCardNumber, Money amount, String idempotencyKey) {
+        if (cardNumber.equals(recipientCardNumber)) {
+            throw new IllegalArgumentException("Cannot transfer to the same card");
         }
+        recordWrite(cardNumber);
+        recordWrite(recipientCardNumber);
 
-        // Check Daily Limit (Amount)
-        double dailyTotal = getDailyTotal(cardNumber, "WITHDRAW");
-        if (dailyTotal + amount > 50000) {
-            throw new IllegalArgumentException("Daily withdrawal limit is 50,000 TK. You can withdraw "
-                    + (50000 - dailyTotal) + " TK more today.");
+        for (int attempt = 1;; attempt++) {
+            try (Connection conn = primary()) {
+                conn.setAutoCommit(false);
+                try {
+                    if (idempotencyKey == null
+                            || IdempotencyKeys.claim(conn, idempotencyKey, TRANSFER_OUT, cardNumber,
+                                    recipientCardNumber, amount)) {
+                        applyTransfer(conn, cardNumber, recipientCardNumber, amount);
+                    }
+                    conn.commit();
+                    return;
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLTransactionRollbackException e) {
+                if (attempt > MAX_DEADLOCK_RETRIES) {
+                    e.printStackTrace();
+                    throw new RuntimeException("Database error during transfer: " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(1, 1L << Math.min(attempt + 1, 6)));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Transfer interrupted while retrying");
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                throw new RuntimeException("Database error during transfer: " + e.getMessage());
+            }
         }
+    }
 
-        // Check Daily Limit (Count)
-        int dailyCount = getDailyCount(cardNumber, "WITHDRAW");
-        if (dailyCount >= 5) {
-            throw new IllegalArgumentException("Daily withdrawal transaction limit (5 times) reached.");
+    private void applyTransfer(Connection conn, String cardNumber, String recipientCardNumber, Money amount)
+            throws SQLException {
+        checkOwned(conn, cardNumber);
+        checkOwned(conn, recipientCardNumber);
+
+        // 1. Lock both rows, lower card number first
+        boolean senderFirst = cardNumber.compareTo(recipientCardNumber) < 0;
+        Money first = lockBalance(conn, senderFirst ? cardNumber : recipientCardNumber);
+        Money second = lockBalance(conn, senderFirst ? recipientCardNumber : cardNumber);
+        Money balance = senderFirst ? first : second;
+        if (balance == null) {
+            throw new IllegalArgumentException("Card not found");
+        }
+        if ((senderFirst ? second : first) == null) {
+            throw new IllegalArgumentException("Recipient card not found");
         }
 
-        Connection conn = null;
-        try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false); // Transaction start
-
-            // 1. Update Balance
-            try (PreparedStatement updateStmt = conn
-                    .prepareStatement("UPDATE accounts SET balance = balance - ? WHERE card_number = ?")) {
-                updateStmt.setDouble(1, amount);
-                updateStmt.setString(2, cardNumber);
-                int rows = updateStmt.executeUpdate();
-                if (rows == 0)
-                    throw new SQLException("Withdraw failed: Card not found");
+        // 2. Same rules as a withdrawal for the sender and a deposit for the
+        // recipient, against today's outgoing and incoming transfer counters
+        checkDailyRules(conn, cardNumber, balance, amount, TRANSFER_OUT);
+        checkDailyRules(conn, recipientCardNumber, null, amount, TRANSFER_IN);
+
+        // 3. Balances (the ledger alone in event-sourced mode), counter and both legs
+        if (!eventSourced) {
+            try (PreparedStatement pstmt = conn.prepareStatement(ADJUST_BALANCE_SQL)) {
+                pstmt.setBigDecimal(1, amount.toBigDecimal().negate());
+                pstmt.setString(2, cardNumber);
+                pstmt.addBatch();
+                pstmt.setBigDecimal(1, amount.toBigDecimal());
+                pstmt.setString(2, recipientCardNumber);
+                pstmt.addBatch();
+                pstmt.executeBatch();
             }
+        }
+        recordDailyUsage(conn, cardNumber, amount, TRANSFER_OUT);
+        recordDailyUsage(conn, recipientCardNumber, amount, TRANSFER_IN);
+        try (PreparedStatement insertStmt = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+            bindLedgerRow(insertStmt, cardNumber, amount, TRANSFER_OUT);
+            insertStmt.addBatch();
+            bindLedgerRow(insertStmt, recipientCardNumber, amount, TRANSFER_IN);
+            insertStmt.addBatch();
+            insertStmt.executeBatch();
+        }
+    }
 
-            // 2. Insert Transaction Record
-            try (PreparedStatement insertStmt = conn.prepareStatement(
-                    "INSERT INTO transactions (card_number, amount, transaction_type) VALUES (?, ?, ?)")) {
-                insertStmt.setString(1, cardNumber);
-                insertStmt.setDouble(2, amount);
-                insertStmt.setString(3, "WITHDRAW");
-                insertStmt.executeUpdate();
+    /**
+     * Lock the card's account row and return its balance, or null if there's no such card.
+     */
+    private Money lockBalance(Connection conn, String cardNumber) throws SQLException {
+        if (eventSourced) {
+            return EventSourcedBalances.lockAndLoad(conn, cardNumber);
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(LOCK_BALANCE_SQL)) {
+            pstmt.setString(1, cardNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? money(rs, 1) : null;
             }
+        }
+    }
 
-            conn.commit();
-        } catch (SQLException e) {
-            if (conn != null) {
-                try {
+    /**
+     * Applies a deposit or withdrawal in a single transaction, or hands it to
+     * the group-commit journal when that mode is enabled.
+     * <p>
+     * The balance update carries the minimum-balance guard and the daily
+     * amount/count limits in its WHERE clause, then the day's usage counter and
+     * the ledger row are written. The UPDATE takes the account row lock first,
+     * which serializes concurrent operations on the same card (and therefore
+     * their counter updates) until commit. Only when the UPDATE matches nothing
+     * do we run one more query to work out which rule rejected it.
+     * <p>
+     * With an idempotency key the key is claimed first, in the same
+     * transaction; a repeat of a committed posting returns without posting.
+     */
+    private void postTransaction(String cardNumber, Money amount, String type, String idempotencyKey) {
+        recordWrite(cardNumber);
+        if (journal != null) {
+            awaitPosting(journal.submit(cardNumber, amount, type, idempotencyKey));
+            return;
+        }
+
+        try (Connection conn = primary()) {
+            conn.setAutoCommit(false); // Transaction start
+            try {
+                if (idempotencyKey != null
+                        && !IdempotencyKeys.claim(conn, idempotencyKey, type, cardNumber, amount)) {
                     conn.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
+                    return;
+                }
+                applyPosting(conn, cardNumber, amount, type);
+
+                // 3. Insert Transaction Record
+                try (PreparedStatement insertStmt = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                    bindLedgerRow(insertStmt, cardNumber, amount, type);
+                    insertStmt.executeUpdate();
                 }
+
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
             }
+        } catch (SQLException e) {
             e.printStackTrace();
-            throw new RuntimeException("Database error during withdraw: " + e.getMessage());
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
+            throw new RuntimeException("Database error during " + label(type) + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Steps 1 and 2 of a posting: the guarded balance update (or, in
+     * event-sourced mode, the rule check against the derived balance) and the
+     * daily usage counter. Throws without writing anything if a rule rejects it.
+     */
+    private void applyPosting(Connection conn, String cardNumber, Money amount, String type) throws SQLException {
+        checkOwned(conn, cardNumber);
+        boolean withdraw = "WITHDRAW".equals(type);
+        if (eventSourced) {
+            checkEvent(conn, cardNumber, amount, type);
+            recordDailyUsage(conn, cardNumber, amount, type);
+            return;
+        }
+
+        // 1. Guarded balance update
+        try (PreparedStatement updateStmt = conn
+                .prepareStatement(withdraw ? GUARDED_WITHDRAW_SQL : GUARDED_DEPOSIT_SQL)) {
+            int i = 1;
+            updateStmt.setBigDecimal(i++, amount.toBigDecimal());
+            updateStmt.setString(i++, cardNumber);
+            if (withdraw) {
+                updateStmt.setBigDecimal(i++, amount.toBigDecimal());
+                updateStmt.setBigDecimal(i++, MIN_BALANCE.toBigDecimal());
+            }
+            updateStmt.setString(i++, cardNumber);
+            updateStmt.setString(i++, type);
+            updateStmt.setInt(i++, DAILY_COUNT_LIMIT);
+            updateStmt.setBigDecimal(i++, amount.toBigDecimal());
+            updateStmt.setBigDecimal(i, DAILY_AMOUNT_LIMIT.toBigDecimal());
+            if (updateStmt.executeUpdate() == 0) {
+                throwRejection(conn, cardNumber, amount, type);
             }
         }
+
+        // 2. Count it against today's limits
+        recordDailyUsage(conn, cardNumber, amount, type);
     }
 
-    private double getDailyTotal(String cardNumber, String type) {
-        String sql = "SELECT SUM(amount) FROM transactions WHERE card_number = ? AND transaction_type = ? AND DATE(timestamp) = CURDATE()";
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    private static void recordDailyUsage(Connection conn, String cardNumber, Money amount, String type)
+            throws SQLException {
+        try (PreparedStatement usageStmt = conn.prepareStatement(RECORD_DAILY_USAGE_SQL)) {
+            usageStmt.setString(1, cardNumber);
+            usageStmt.setString(2, type);
+            usageStmt.setBigDecimal(3, amount.toBigDecimal());
+            usageStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Event-sourced counterpart of the guarded update: locks the card, derives
+     * its balance from the latest snapshot and the events after it, and checks
+     * the same rules. Nothing is written here; the ledger row is the posting.
+     */
+    private void checkEvent(Connection conn, String cardNumber, Money amount, String type) throws SQLException {
+        Money balance = EventSourcedBalances.lockAndLoad(conn, cardNumber);
+        if (balance == null) {
+            if ("WITHDRAW".equals(type)) {
+                throw new IllegalArgumentException("Card not found");
+            }
+            throw new SQLException("Deposit failed: Card not found");
+        }
+        checkDailyRules(conn, cardNumber, balance, amount, type);
+    }
+
+    /**
+     * Lock the card's usage counter for {@code type} today and check the
+     * rules against it. The caller already holds the card's account row.
+     */
+    private static void checkDailyRules(Connection conn, String cardNumber, Money balance, Money amount,
+            String type) throws SQLException {
+        Money dailyTotal = Money.ZERO;
+        int dailyCount = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(DAILY_USAGE_FOR_UPDATE_SQL)) {
             pstmt.setString(1, cardNumber);
             pstmt.setString(2, type);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getDouble(1);
+                    dailyTotal = money(rs, 1);
+                    dailyCount = rs.getInt(2);
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return 0.0;
+        checkRules(balance, dailyTotal, dailyCount, amount, type);
     }
 
-    private int getDailyCount(String cardNumber, String type) {
-        String sql = "SELECT COUNT(*) FROM transactions WHERE card_number = ? AND transaction_type = ? AND DATE(timestamp) = CURDATE()";
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, cardNumber);
-            pstmt.setString(2, type);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+    private static void bindLedgerRow(PreparedStatement pstmt, String cardNumber, Money amount, String type)
+            throws SQLException {
+        pstmt.setString(1, cardNumber);
+        pstmt.setBigDecimal(2, amount.toBigDecimal());
+        pstmt.setString(3, type);
+    }
+
+    private static String label(String type) {
+        return "WITHDRAW".equals(type) ? "withdraw" : "deposit";
+    }
+
+    /**
+     * Group-commit writer: applies a whole batch in one transaction and
+     * completes each posting's future once the commit has returned. Postings
+     * rejected by a limit rule have written nothing, so they fail on their own
+     * without affecting the rest of the batch; ledger rows for the accepted
+     * ones go in as one JDBC batch (one at a time in event-sourced mode,
+     * where each check derives the balance from the rows already written). If
+     * anything else goes wrong before the commit, the batch is rolled back and
+     * replayed one posting at a time so a single bad posting (or a deadlock
+     * with another writer) cannot fail its neighbours.
+     */
+    private void writeBatch(List<GroupCommitJournal.Posting> batch) {
+        Map<GroupCommitJournal.Posting, RuntimeException> rejected = new HashMap<>();
+        try (Connection conn = primary()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement insertStmt = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                    for (GroupCommitJournal.Posting posting : batch) {
+                        boolean claimed = false;
+                        try {
+                            if (posting.idempotencyKey != null) {
+                                if (!IdempotencyKeys.claim(conn, posting.idempotencyKey, posting.type,
+                                        posting.cardNumber, posting.amount)) {
+                                    continue; // Repeat of a committed posting; succeeds with the batch
+                                }
+                                claimed = true;
+                            }
+                            applyPosting(conn, posting.cardNumber, posting.amount, posting.type);
+                        } catch (IllegalArgumentException e) {
+                            if (claimed) {
+                                IdempotencyKeys.release(conn, posting.idempotencyKey);
+                            }
+                            rejected.put(posting, e);
+                            continue;
+                        }
+                        bindLedgerRow(insertStmt, posting.cardNumber, posting.amount, posting.type);
+                        if (eventSourced) {
+                            // The derived balance is the ledger, so the next posting
+                            // on this card must see this row before it is checked
+                            insertStmt.executeUpdate();
+                        } else {
+                            insertStmt.addBatch();
+                        }
+                    }
+                    if (!eventSourced) {
+                        insertStmt.executeBatch();
+                    }
                 }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                replayIndividually(batch);
+                return;
+            }
+
+            try {
+                conn.commit();
+            } catch (SQLException e) {
+                // Outcome unknown: the commit may or may not have reached the log, so don't replay
+                e.printStackTrace();
+                RuntimeException failure = new RuntimeException("Database error during group commit: "
+                        + e.getMessage());
+                batch.forEach(posting -> posting.future.completeExceptionally(failure));
+                return;
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            RuntimeException failure = new RuntimeException("Database error during group commit: " + e.getMessage());
+            batch.forEach(posting -> posting.future.completeExceptionally(failure));
+            return;
+        }
+
+        for (GroupCommitJournal.Posting posting : batch) {
+            RuntimeException rejection = rejected.get(posting);
+            if (rejection != null) {
+                posting.future.completeExceptionally(rejection);
+            } else {
+                posting.future.complete(null);
+            }
         }
-        return 0;
     }
 
-    @Override
-    public String resetPin(String cardNumber, String nidProof) {
-        Account acc = findByCardNumber(cardNumber).orElseThrow(() -> new IllegalArgumentException("Card not found"));
+    private void replayIndividually(List<GroupCommitJournal.Posting> batch) {
+        for (GroupCommitJournal.Posting posting : batch) {
+            try (Connection conn = primary()) {
+                conn.setAutoCommit(false);
+                try {
+                    if (posting.idempotencyKey != null && !IdempotencyKeys.claim(conn, posting.idempotencyKey,
+                            posting.type, posting.cardNumber, posting.amount)) {
+                        conn.rollback();
+                        posting.future.complete(null);
+                        continue;
+                    }
+                    applyPosting(conn, posting.cardNumber, posting.amount, posting.type);
+                    try (PreparedStatement insertStmt = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                        bindLedgerRow(insertStmt, posting.cardNumber, posting.amount, posting.type);
+                        insertStmt.executeUpdate();
+                    }
+                    conn.commit();
+                    posting.future.complete(null);
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                posting.future.completeExceptionally(new RuntimeException(
+                        "Database error during " + label(posting.type) + ": " + e.getMessage()));
+            } catch (RuntimeException e) {
+                posting.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static void awaitPosting(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Works out why a guarded update matched no row and throws the matching
+     * error. Checks are reported in the same order the service has always used:
+     * card, balance, amount limit, count limit.
+     */
+    private void throwRejection(Connection conn, String cardNumber, Money amount, String type)
+            throws SQLException {
+        boolean withdraw = "WITHDRAW".equals(type);
+        try (PreparedStatement pstmt = conn.prepareStatement(REJECTION_DETAILS_SQL)) {
+            pstmt.setString(1, type);
+            pstmt.setString(2, cardNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    if (withdraw) {
+                        throw new IllegalArgumentException("Card not found");
+                    }
+                    throw new SQLException("Deposit failed: Card not found");
+                }
+                checkRules(money(rs, 1), money(rs, 2), rs.getInt(3), amount, type);
 
-        // Check identity (Phone or NID)
-        boolean valid = false;
-        if (nidProof.equals(acc.getNid())) {
-            valid = true;
-        } else if (acc.getPhoneNumber() != null && acc.getPhoneNumber().equals(nidProof)) {
-            valid = true;
+                // Row changed between the update and this read; surface it as a retryable error
+                throw new SQLException((withdraw ? "Withdraw" : "Deposit")
+                        + " failed: account changed concurrently, please retry");
+            }
         }
+    }
 
-        if (!valid) {
-            throw new IllegalArgumentException("Identity verification failed. Phone Number or NID does not match.");
+    /**
+     * Throws the error for the first rule the posting breaks, in the order
+     * the service has always reported them: balance, amount limit, count limit.
+     * Incoming postings (deposits, the recipient's side of a transfer) have no
+     * balance rule, and their {@code balance} may be null.
+     */
+    private static void checkRules(Money balance, Money dailyTotal, int dailyCount, Money amount, String type) {
+        boolean withdraw = "WITHDRAW".equals(type);
+        boolean transfer = TRANSFER_OUT.equals(type);
+        boolean incoming = TRANSFER_IN.equals(type);
+        if ((withdraw || transfer) && balance.minus(amount).isLessThan(MIN_BALANCE)) {
+            throw new IllegalArgumentException("Insufficient funds. Minimum balance of 500 TK required.");
+        }
+        if (dailyTotal.plus(amount).isGreaterThan(DAILY_AMOUNT_LIMIT)) {
+            if (incoming) {
+                throw new IllegalArgumentException("Recipient's daily limit for incoming transfers is 50,000 TK."
+                        + " They can receive " + DAILY_AMOUNT_LIMIT.minus(dailyTotal) + " TK more today.");
+            }
+            if (transfer) {
+                throw new IllegalArgumentException("Daily transfer limit is 50,000 TK. You can transfer "
+                        + DAILY_AMOUNT_LIMIT.minus(dailyTotal) + " TK more today.");
+            }
+            if (withdraw) {
+                throw new IllegalArgumentException("Daily withdrawal limit is 50,000 TK. You can withdraw "
+                        + DAILY_AMOUNT_LIMIT.minus(dailyTotal) + " TK more today.");
+            }
+            throw new IllegalArgumentException("Daily deposit limit is 50,000 TK. You can deposit "
+                    + DAILY_AMOUNT_LIMIT.minus(dailyTotal) + " TK more today.");
+        }
+        if (dailyCount >= DAILY_COUNT_LIMIT) {
+            if (incoming) {
+                throw new IllegalArgumentException("Recipient's daily incoming transfer limit (5 times) reached.");
+            }
+            if (transfer) {
+                throw new IllegalArgumentException("Daily transfer transaction limit (5 times) reached.");
+            }
+            if (withdraw) {
+                throw new IllegalArgumentException("Daily withdrawal transaction limit (5 times) reached.");
+            }
+            throw new IllegalArgumentException("Daily deposit transaction limit (5 times) reached.");
         }
+    }
 
+    @Override
+    public String resetPin(String cardNumber, String nidProof) {
         // Generate New PIN
         String newPin = generatePin();
         String hashedPin = com.example.atmmanagementsystem.util.SecurityUtil.hashPin(newPin);
 
-        String sql = "UPDATE accounts SET pin = ?, blocked = FALSE WHERE card_number = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try {
+            updateVersioned(cardNumber, "Reset PIN", (conn, row) -> {
+                // Check identity (Phone or NID)
+                boolean valid = false;
+                if (nidProof.equals(row.nid)) {
+                    valid = true;
+                } else if (row.phoneNumber != null && row.phoneNumber.equals(nidProof)) {
+                    valid = true;
+                }
 
-            pstmt.setString(1, hashedPin);
-            pstmt.setString(2, cardNumber);
-            int rows = pstmt.executeUpdate();
-            if (rows == 0)
-                throw new SQLException("Reset PIN failed: Card not found during update");
+                if (!valid) {
+                    throw new IllegalArgumentException(
+                            "Identity verification failed. Phone Number or NID does not match.");
+                }
 
+                try (PreparedStatement pstmt = conn.prepareStatement("UPDATE accounts SET pin = ?, blocked = FALSE, "
+                        + "version = version + 1 WHERE card_number = ? AND version = ?")) {
+                    pstmt.setString(1, hashedPin);
+                    pstmt.setString(2, cardNumber);
+                    pstmt.setLong(3, row.version);
+                    return pstmt.executeUpdate();
+                }
+            });
             return newPin;
 
         } catch (SQLException e) {
@@ -448,29 +1319,23 @@ public class DatabaseAccountService implements AccountService {
 
     @Override
     public void updatePin(String cardNumber, String newPin) {
-        // Check if new PIN is same as old PIN - do this BEFORE opening connection for
-        // update
-        // because findByCardNumber closes the shared connection
-        Account acc = findByCardNumber(cardNumber).orElseThrow(() -> new IllegalArgumentException("Card not found"));
-
         String hashedPin = com.example.atmmanagementsystem.util.SecurityUtil.hashPin(newPin);
 
-        if (acc.getPin().equals(hashedPin)) {
-            throw new IllegalArgumentException("New PIN cannot be the same as the old PIN.");
-        }
-
-        String sql = "UPDATE accounts SET pin = ? WHERE card_number = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, hashedPin);
-            pstmt.setString(2, cardNumber);
+        try {
+            updateVersioned(cardNumber, "Update PIN", (conn, row) -> {
+                // Check if new PIN is same as old PIN
+                if (row.pinHash.equals(hashedPin)) {
+                    throw new IllegalArgumentException("New PIN cannot be the same as the old PIN.");
+                }
 
-            int rows = pstmt.executeUpdate();
-            if (rows == 0) {
-                throw new SQLException("Update PIN failed: Card not found");
-            }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE accounts SET pin = ?, version = version + 1 WHERE card_number = ? AND version = ?")) {
+                    pstmt.setString(1, hashedPin);
+                    pstmt.setString(2, cardNumber);
+                    pstmt.setLong(3, row.version);
+                    return pstmt.executeUpdate();
+                }
+            });
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -480,36 +1345,151 @@ public class DatabaseAccountService implements AccountService {
 
     @Override
     public void unblockAccount(String cardNumber) {
-        String sql = "UPDATE accounts SET blocked = FALSE WHERE card_number = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, cardNumber);
-            pstmt.executeUpdate();
-
+        // A single write with nothing read first; the version bump makes any
+        // compare-and-set that read the card before this retry
+        String sql = "UPDATE accounts SET blocked = FALSE, version = version + 1 WHERE card_number = ?";
+        try (Connection conn = primary()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                checkOwned(conn, cardNumber);
+                pstmt.setString(1, cardNumber);
+                pstmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException("Error unblocking account: " + e.getMessage());
         }
     }
 
+    /**
+     * Read the card's row and apply {@code update} as a compare-and-set on its
+     * version, re-reading and retrying with jittered backoff while another
+     * writer gets in between, up to {@code atm.db.casAttempts} times.
+     * Validation failures thrown by {@code update} are not retried.
+     */
+    private void updateVersioned(String cardNumber, String operation, VersionedUpdate update) throws SQLException {
+        for (int attempt = 1;; attempt++) {
+            try (Connection conn = primary()) {
+                // A transaction only so the fence check holds its lock until the update commits
+                conn.setAutoCommit(false);
+                try {
+                    checkOwned(conn, cardNumber);
+                    VersionedRow row;
+                    try (PreparedStatement pstmt = conn.prepareStatement(VERSIONED_ROW_SQL)) {
+                        pstmt.setString(1, cardNumber);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            if (!rs.next()) {
+                                throw new IllegalArgumentException("Card not found");
+                            }
+                            row = new VersionedRow(rs.getString(1), rs.getString(2), rs.getString(3),
+                                    rs.getLong(4));
+                        }
+                    }
+                    if (update.apply(conn, row) > 0) {
+                        conn.commit();
+                        CAS_UPDATES.increment();
+                        return;
+                    }
+                    conn.rollback();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+
+            CAS_CONFLICTS.increment();
+            if (attempt >= MAX_CAS_ATTEMPTS) {
+                CAS_EXHAUSTED.increment();
+                throw new SQLException(operation + " failed: account changed concurrently, please retry");
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(1, 1L << Math.min(attempt + 1, 6)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(operation + " interrupted while retrying", e);
+            }
+        }
+    }
+
+    /**
+     * Counters for the compare-and-set account updates, across all instances.
+     */
+    public static ConflictStats getConflictStats() {
+        return new ConflictStats(CAS_UPDATES.sum(), CAS_CONFLICTS.sum(), CAS_EXHAUSTED.sum());
+    }
+
+    private static void recordWrite(String cardNumber) {
+        if (RECENT_WRITES.size() >= MAX_TRACKED_WRITES) {
+            long now = System.nanoTime();
+            RECENT_WRITES.values().removeIf(at -> now - at >= READ_YOUR_WRITES_NANOS);
+        }
+        RECENT_WRITES.put(cardNumber, System.nanoTime());
+    }
+
+    /**
+     * Shard-side half of a resharding freeze: refuses the write if
+     * {@link ShardRebalancer} has fenced the card's bucket on this shard. Call
+     * it inside the write's transaction. The shared lock it takes makes the
+     * fence wait for the write to commit, so nothing lands on this shard once
+     * the bucket's copy has started, whatever map the caller routed with.
+     */
+    private void checkOwned(Connection conn, String cardNumber) throws SQLException {
+        if (shard == null) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(BUCKET_FENCE_SQL)) {
+            pstmt.setInt(1, BucketShardMap.bucketOf(cardNumber));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    throw new IllegalStateException(
+                            "This account is being migrated. Please try again in a few seconds.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Connection for reading a card's history: a replica, unless this process
+     * wrote to the card within the replica lag window.
+     */
+    private Connection historyConnection(String cardNumber) throws SQLException {
+        Long at = RECENT_WRITES.get(cardNumber);
+        if (at != null) {
+            if (System.nanoTime() - at < READ_YOUR_WRITES_NANOS) {
+                return primary();
+            }
+            RECENT_WRITES.remove(cardNumber, at);
+        }
+        return replica();
+    }
+
+    private Connection primary() throws SQLException {
+        return shard == null ? DatabaseConnection.getConnection() : shard.primary();
+    }
+
+    private Connection replica() throws SQLException {
+        return shard == null ? DatabaseConnection.getReadConnection() : shard.replica();
+    }
+
+    /**
+     * Whole history from both the hot table and the archive.
+     */
     @Override
     public List<com.example.atmmanagementsystem.model.Transaction> getTransactions(String cardNumber) {
         List<com.example.atmmanagementsystem.model.Transaction> list = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE card_number = ? ORDER BY timestamp DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = historyConnection(cardNumber);
+                PreparedStatement pstmt = conn.prepareStatement(FULL_HISTORY_SQL)) {
 
             pstmt.setString(1, cardNumber);
+            pstmt.setString(2, cardNumber);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    list.add(new com.example.atmmanagementsystem.model.Transaction(
-                            rs.getInt("id"),
-                            rs.getString("card_number"),
-                            rs.getDouble("amount"),
-                            rs.getString("transaction_type"),
-                            rs.getTimestamp("timestamp")));
+                    list.add(mapRowToTransaction(rs));
                 }
             }
         } catch (SQLException e) {
@@ -517,4 +1497,302 @@ public class DatabaseAccountService implements AccountService {
         }
         return list;
     }
+
+    @Override
+    public TransactionPage getTransactionPage(String cardNumber, String cursor, int pageSize) {
+        return getTransactionPage(cardNumber, null, null, cursor, pageSize);
+    }
+
+    /**
+     * One page of history between {@code from} (inclusive) and {@code to}
+     * (exclusive); either bound may be null.
+     * <p>
+     * Keyset pagination over (timestamp, id), which the card/time indexes
+     * serve directly, so deep pages cost the same as the first one. The cursor
+     * is "epochMillis:id" of the last row. Every archived row is older than
+     * every hot row, so the hot table is read first and the archive is only
+     * queried when the page isn't full yet and the range reaches back past
+     * the archive watermark; recent-history pages never touch it.
+     */
+    public TransactionPage getTransactionPage(String cardNumber, Timestamp from, Timestamp to, String cursor,
+            int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        Timestamp afterTime = null;
+        int afterId = 0;
+        if (cursor != null) {
+            String[] parts = cursor.split(":");
+            try {
+                afterTime = new Timestamp(Long.parseLong(parts[0]));
+                afterId = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+        }
+
+        // One extra row tells us whether another page exists
+        List<Transaction> list = new ArrayList<>(pageSize + 1);
+        try (Connection conn = historyConnection(cardNumber)) {
+            readHistory(conn, HOT_HISTORY_PAGE_SQL, cardNumber, from, to, afterTime, afterId, pageSize + 1, list);
+
+            // Read after the hot query: rows it missed because they were just
+            // archived are then covered by the new watermark
+            if (list.size() <= pageSize && reachesArchive(conn, from)) {
+                if (!list.isEmpty()) {
+                    Transaction last = list.get(list.size() - 1);
+                    afterTime = last.getTimestamp();
+                    afterId = last.getId();
+                }
+                readHistory(conn, ARCHIVED_HISTORY_PAGE_SQL, cardNumber, from, to, afterTime, afterId,
+                        pageSize + 1 - list.size(), list);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error while loading transactions: " + e.getMessage());
+        }
+
+        String nextCursor = null;
+        if (list.size() > pageSize) {
+            list.remove(pageSize);
+            Transaction last = list.get(pageSize - 1);
+            nextCursor = last.getTimestamp().getTime() + ":" + last.getId();
+        }
+        return new TransactionPage(list, nextCursor);
+    }
+
+    private void readHistory(Connection conn, String sql, String cardNumber, Timestamp from, Timestamp to,
+            Timestamp afterTime, int afterId, int limit, List<Transaction> into) throws SQLException {
+        if (afterTime == null) {
+            afterTime = HISTORY_END;
+            afterId = Integer.MAX_VALUE;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, cardNumber);
+            pstmt.setTimestamp(2, from != null ? from : HISTORY_START);
+            pstmt.setTimestamp(3, to != null ? to : HISTORY_END);
+            pstmt.setTimestamp(4, afterTime);
+            pstmt.setTimestamp(5, afterTime);
+            pstmt.setInt(6, afterId);
+            pstmt.setInt(7, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    into.add(mapRowToTransaction(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether history from {@code from} onwards may include archived rows.
+     */
+    private static boolean reachesArchive(Connection conn, Timestamp from) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(ARCHIVE_WATERMARK_SQL);
+                ResultSet rs = pstmt.executeQuery()) {
+            Timestamp archivedBefore = rs.next() ? rs.getTimestamp(1) : null;
+            return archivedBefore != null && (from == null || from.before(archivedBefore));
+        }
+    }
+
+    /**
+     * Streams the whole history, hot and archived, through one query. The
+     * MySQL driver only streams rows (instead of buffering the full result)
+     * for forward-only, read-only statements with a fetch size of
+     * Integer.MIN_VALUE. The pooled connection is held until the stream is
+     * closed.
+     */
+    @Override
+    public Stream<Transaction> streamTransactions(String cardNumber) {
+        Connection conn = null;
+        try {
+            conn = historyConnection(cardNumber);
+            PreparedStatement pstmt = conn.prepareStatement(FULL_HISTORY_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setString(1, cardNumber);
+            pstmt.setString(2, cardNumber);
+            ResultSet rs = pstmt.executeQuery();
+            return streamRows(conn, rs, this::mapRowToTransaction);
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            e.printStackTrace();
+            throw new RuntimeException("Database error while streaming transactions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams history from {@code from} (inclusive) to {@code to}
+     * (exclusive), hot and archived, for statements and exports; either bound
+     * may be null. A card's rows come oldest first. With a null card number
+     * every card's rows in the range are streamed, unordered, since sorting
+     * the whole ledger would defeat streaming. Close the stream when done.
+     */
+    public Stream<Transaction> streamTransactions(String cardNumber, Timestamp from, Timestamp to) {
+        List<String> conditions = new ArrayList<>(3);
+        if (cardNumber != null) {
+            conditions.add("card_number = ?");
+        }
+        if (from != null) {
+            conditions.add("timestamp >= ?");
+        }
+        if (to != null) {
+            conditions.add("timestamp < ?");
+        }
+        String filter = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        String sql = TRANSACTION_COLUMNS + ARCHIVED_TRANSACTIONS + filter + " UNION ALL "
+                + TRANSACTION_COLUMNS + HOT_TRANSACTIONS + filter
+                + (cardNumber != null ? " ORDER BY timestamp, id" : "");
+
+        Connection conn = null;
+        try {
+            conn = cardNumber != null ? historyConnection(cardNumber) : replica();
+            PreparedStatement pstmt = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            int i = 1;
+            for (int table = 0; table < 2; table++) {
+                if (cardNumber != null) {
+                    pstmt.setString(i++, cardNumber);
+                }
+                if (from != null) {
+                    pstmt.setTimestamp(i++, from);
+                }
+                if (to != null) {
+                    pstmt.setTimestamp(i++, to);
+                }
+            }
+            ResultSet rs = pstmt.executeQuery();
+            return streamRows(conn, rs, this::mapRowToTransaction);
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            e.printStackTrace();
+            throw new RuntimeException("Database error while streaming transactions: " + e.getMessage());
+        }
+    }
+
+    private Transaction mapRowToTransaction(ResultSet rs) throws SQLException {
+        return new Transaction(
+                rs.getInt("id"),
+                rs.getString("card_number"),
+                Money.of(rs.getBigDecimal("amount")),
+                rs.getString("transaction_type"),
+                rs.getTimestamp("timestamp"));
+    }
+
+    /**
+     * Exact read of a {@code DECIMAL(15, 2)} column; SQL NULL reads as zero.
+     */
+    private static Money money(ResultSet rs, int column) throws SQLException {
+        BigDecimal value = rs.getBigDecimal(column);
+        return value == null ? Money.ZERO : Money.of(value);
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface VersionedUpdate {
+        /**
+         * Run the UPDATE guarded by {@code version = row.version}.
+         *
+         * @return rows updated; 0 means another writer got there first
+         */
+        int apply(Connection conn, VersionedRow row) throws SQLException;
+    }
+
+    private static final class VersionedRow {
+        private final String pinHash;
+        private final String nid;
+        private final String phoneNumber;
+        private final long version;
+
+        VersionedRow(String pinHash, String nid, String phoneNumber, long version) {
+            this.pinHash = pinHash;
+            this.nid = nid;
+            this.phoneNumber = phoneNumber;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Snapshot of compare-and-set counters.
+     */
+    public static final class ConflictStats {
+        private final long updates;
+        private final long conflicts;
+        private final long exhausted;
+
+        ConflictStats(long updates, long conflicts, long exhausted) {
+            this.updates = updates;
+            this.conflicts = conflicts;
+            this.exhausted = exhausted;
+        }
+
+        /** Updates that applied, whichever attempt it took. */
+        public long getUpdates() {
+            return updates;
+        }
+
+        /** Attempts that lost to a concurrent writer and had to re-read. */
+        public long getConflicts() {
+            return conflicts;
+        }
+
+        /** Updates that gave up after the last attempt. */
+        public long getExhausted() {
+            return exhausted;
+        }
+
+        @Override
+        public String toString() {
+            return "ConflictStats{" +
+                    "updates=" + updates +
+                    ", conflicts=" + conflicts +
+                    ", exhausted=" + exhausted +
+                    '}';
+        }
+    }
+
+    /**
+     * Wraps an open result set in a lazy stream. Closing the stream closes the
+     * result set and returns the connection (which also closes its statements).
+     */
+    private static <T> Stream<T> streamRows(Connection conn, ResultSet rs, RowMapper<T> mapper) {
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Database error while streaming rows: " + e.getMessage(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            closeQuietly(conn);
+        });
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 }
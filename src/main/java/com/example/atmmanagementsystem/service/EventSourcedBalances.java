@@ -0,0 +1,108 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Money;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * SQL for the event-sourced balance mode ({@code -Datm.db.eventSourced=true}).
+ * <p>
+ * In that mode the ledger is the source of truth: a card's balance is its
+ * latest row in {@code balance_snapshots} (or {@code accounts.opening_balance}
+ * when it has none) plus every ledger event after the snapshot's
+ * {@code last_event_id}, hot or archived. {@code accounts.balance} is no
+ * longer written; {@link BalanceRebuilder} can write it back before switching
+ * the mode off.
+ * <p>
+ * Event ids only work as a per-card position because postings to one card
+ * are serialized on its {@code accounts} row lock, so a card's committed
+ * events always form a prefix in id order.
+ */
+final class EventSourcedBalances {
+
+    static final boolean ENABLED = Boolean.getBoolean("atm.db.eventSourced");
+
+    // Deposits and incoming transfers credit the account, every other event type debits it
+    static final String SIGNED_AMOUNT =
+            "CASE WHEN transaction_type IN ('DEPOSIT', 'TRANSFER_IN') THEN amount ELSE -amount END";
+
+    /**
+     * Java side of {@link #SIGNED_AMOUNT}, for code that sums the ledger itself.
+     */
+    static boolean isCredit(String transactionType) {
+        return "DEPOSIT".equals(transactionType) || "TRANSFER_IN".equals(transactionType);
+    }
+
+    private static final String SNAPSHOT_EVENT_ID =
+            "COALESCE((SELECT s.last_event_id FROM balance_snapshots s WHERE s.card_number = accounts.card_number"
+                    + "%1$s), 0)";
+
+    /**
+     * Current balance of the {@code accounts} row in scope, for use in a
+     * select list. {@code %1$s} is replaced by an optional locking clause for
+     * the subqueries.
+     */
+    private static final String DERIVED_BALANCE_TEMPLATE =
+            "(COALESCE((SELECT s.balance FROM balance_snapshots s WHERE s.card_number = accounts.card_number%1$s), "
+                    + "accounts.opening_balance)"
+                    + " + (SELECT COALESCE(SUM(" + SIGNED_AMOUNT + "), 0) FROM transactions t "
+                    + "WHERE t.card_number = accounts.card_number AND t.id > " + SNAPSHOT_EVENT_ID + "%1$s)"
+                    + " + (SELECT COALESCE(SUM(" + SIGNED_AMOUNT + "), 0) FROM transactions_archive t "
+                    + "WHERE t.card_number = accounts.card_number AND t.id > " + SNAPSHOT_EVENT_ID + "%1$s))";
+
+    static final String DERIVED_BALANCE = String.format(DERIVED_BALANCE_TEMPLATE, "");
+
+    // Inside a transaction that posts more than one event (group commit), a
+    // plain read could use a read view from before another writer's commit;
+    // locking reads always see the latest committed events
+    private static final String LOCKED_BALANCE_SQL =
+            "SELECT " + String.format(DERIVED_BALANCE_TEMPLATE, " FOR SHARE")
+                    + " FROM accounts WHERE card_number = ?";
+
+    // Taken first, so postings to the card are serialized like the guarded update does
+    private static final String LOCK_ACCOUNT_SQL = "SELECT 1 FROM accounts WHERE card_number = ? FOR UPDATE";
+
+    /**
+     * Snapshot the given cards at their latest event, keeping whichever
+     * snapshot is newer if one is written concurrently. Expects the caller to
+     * hold the accounts row locks. {@code %s} is the IN (...) placeholder list.
+     */
+    static final String SNAPSHOT_SQL =
+            "INSERT INTO balance_snapshots (card_number, balance, last_event_id) "
+                    + "SELECT card_number, " + DERIVED_BALANCE + ", GREATEST(" + String.format(SNAPSHOT_EVENT_ID, "")
+                    + ", COALESCE((SELECT MAX(t.id) FROM transactions t WHERE t.card_number = accounts.card_number), 0)"
+                    + ", COALESCE((SELECT MAX(t.id) FROM transactions_archive t "
+                    + "WHERE t.card_number = accounts.card_number), 0)) "
+                    + "FROM accounts WHERE card_number IN (%s) "
+                    + "ON DUPLICATE KEY UPDATE "
+                    + "balance = IF(VALUES(last_event_id) >= last_event_id, VALUES(balance), balance), "
+                    + "last_event_id = GREATEST(VALUES(last_event_id), last_event_id)";
+
+    private EventSourcedBalances() {
+    }
+
+    /**
+     * Lock the card's account row and return its current balance, or null if
+     * the card doesn't exist.
+     */
+    static Money lockAndLoad(Connection conn, String cardNumber) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(LOCK_ACCOUNT_SQL)) {
+            pstmt.setString(1, cardNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(LOCKED_BALANCE_SQL)) {
+            pstmt.setString(1, cardNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return Money.of(rs.getBigDecimal(1));
+            }
+        }
+    }
+}
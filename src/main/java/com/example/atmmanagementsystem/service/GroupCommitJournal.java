@@ -0,0 +1,128 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Short-window batcher for deposits and withdrawals.
+ * <p>
+ * Callers {@link #submit} a posting and wait on its future. A single flusher
+ * thread takes the first queued posting, keeps collecting until either
+ * {@code maxBatchSize} postings are queued or {@code maxDelayMillis} has
+ * passed, then hands the whole batch to the writer, which applies it in one
+ * database transaction and completes every future after the commit. Under
+ * load this turns one commit per posting into one commit per batch; with a
+ * single caller it only adds up to {@code maxDelayMillis} of latency.
+ */
+class GroupCommitJournal {
+
+    /**
+     * One queued deposit or withdrawal. The writer must complete
+     * {@link #future} for every posting it is given.
+     */
+    static final class Posting {
+        final String cardNumber;
+        final Money amount;
+        final String type;
+        // Null when the caller didn't send one
+        final String idempotencyKey;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Posting(String cardNumber, Money amount, String type, String idempotencyKey) {
+            this.cardNumber = cardNumber;
+            this.amount = amount;
+            this.type = type;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+
+    private final BlockingQueue<Posting> queue = new LinkedBlockingQueue<>();
+    private final Consumer<List<Posting>> writer;
+    private final long maxDelayNanos;
+    private final int maxBatchSize;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    GroupCommitJournal(long maxDelayMillis, int maxBatchSize, Consumer<List<Posting>> writer) {
+        if (maxDelayMillis < 0 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Group commit needs a non-negative delay and a batch size of at least 1");
+        }
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.writer = writer;
+        this.flusher = new Thread(this::run, "group-commit-journal");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    CompletableFuture<Void> submit(String cardNumber, Money amount, String type, String idempotencyKey) {
+        Posting posting = new Posting(cardNumber, amount, type, idempotencyKey);
+        if (closed) {
+            posting.future.completeExceptionally(new IllegalStateException("Group commit journal is closed"));
+            return posting.future;
+        }
+        queue.add(posting);
+        return posting.future;
+    }
+
+    /**
+     * Stop accepting postings, flush what is already queued and wait for the
+     * flusher to finish.
+     */
+    void close() {
+        closed = true;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Posting> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Posting first = closed ? queue.poll() : queue.take();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Posting next = remaining > 0 && !closed
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() wakes us up; drain whatever is left without waiting
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+    }
+
+    private void flush(List<Posting> batch) {
+        try {
+            writer.accept(batch);
+        } catch (RuntimeException e) {
+            for (Posting posting : batch) {
+                posting.future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * Client-supplied idempotency keys for money-moving calls, kept in
+ * {@code idempotency_keys} for {@code atm.idempotency.ttlHours} (24 by default).
+ * <p>
+ * A posting claims its key in the same transaction that moves the money, so
+ * the key is recorded if and only if the posting committed. A second call
+ * with the key blocks on the first one's row lock until it commits or rolls
+ * back, then either finds the key taken (and does nothing) or claims it.
+ */
+public final class IdempotencyKeys {
+
+    public static final long TTL_HOURS = Long.getLong("atm.idempotency.ttlHours", 24);
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private static final int PURGE_CHUNK_SIZE = 5_000;
+
+    private static final String CLAIM_SQL =
+            "INSERT INTO idempotency_keys (idem_key, operation, card_number, counterparty, amount, expires_at) "
+                    + "VALUES (?, ?, ?, ?, ?, NOW() + INTERVAL ? HOUR)";
+
+    // Locking read: a plain one could use a read view from before the other
+    // posting committed and miss the row that just caused the duplicate
+    private static final String FIND_SQL =
+            "SELECT operation, card_number, counterparty, amount, expires_at <= NOW() FROM idempotency_keys "
+                    + "WHERE idem_key = ? FOR SHARE";
+
+    private static final String DELETE_IF_EXPIRED_SQL =
+            "DELETE FROM idempotency_keys WHERE idem_key = ? AND expires_at <= NOW()";
+
+    private static final String RELEASE_SQL = "DELETE FROM idempotency_keys WHERE idem_key = ?";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM idempotency_keys WHERE expires_at <= NOW() LIMIT " + PURGE_CHUNK_SIZE;
+
+    private IdempotencyKeys() {
+    }
+
+    /**
+     * Reject keys the table can't hold before any work is done.
+     */
+    static void validate(String key) {
+        if (key != null && (key.isBlank() || key.length() > MAX_KEY_LENGTH)) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    /**
+     * Claim {@code key} for this posting inside the caller's transaction.
+     *
+     * @return true if the posting should go ahead, false if a posting with
+     *         this key already committed and this call is a repeat of it
+     * @throws IllegalArgumentException if the key was used for a different request
+     */
+    static boolean claim(Connection conn, String key, String operation, String cardNumber, Money amount)
+            throws SQLException {
+        return claim(conn, key, operation, cardNumber, null, amount);
+    }
+
+    /**
+     * Like {@link #claim(Connection, String, String, String, Money)} for an
+     * operation with a second party, such as a transfer's recipient card; a
+     * repeat must name the same one.
+     */
+    static boolean claim(Connection conn, String key, String operation, String cardNumber, String counterparty,
+            Money amount) throws SQLException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try (PreparedStatement pstmt = conn.prepareStatement(CLAIM_SQL)) {
+                pstmt.setString(1, key);
+                pstmt.setString(2, operation);
+                pstmt.setString(3, cardNumber);
+                pstmt.setString(4, counterparty);
+                pstmt.setBigDecimal(5, amount.toBigDecimal());
+                pstmt.setLong(6, TTL_HOURS);
+                pstmt.executeUpdate();
+                return true;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Taken: only the failed statement is rolled back, the transaction carries on
+                try (PreparedStatement find = conn.prepareStatement(FIND_SQL)) {
+                    find.setString(1, key);
+                    try (ResultSet rs = find.executeQuery()) {
+                        if (!rs.next()) {
+                            continue; // purged in between; claim it again
+                        }
+                        if (rs.getBoolean(5)) {
+                            expire(conn, key);
+                            continue;
+                        }
+                        if (!operation.equals(rs.getString(1)) || !cardNumber.equals(rs.getString(2))
+                                || !Objects.equals(counterparty, rs.getString(3))
+                                || !amount.equals(Money.of(rs.getBigDecimal(4)))) {
+                            throw new IllegalArgumentException(
+                                    "Idempotency key was already used for a different request");
+                        }
+                        return false;
+                    }
+                }
+            }
+        }
+        throw new SQLException("Could not claim idempotency key " + key);
+    }
+
+    private static void expire(Connection conn, String key) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(DELETE_IF_EXPIRED_SQL)) {
+            pstmt.setString(1, key);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Give a claimed key back when its posting is dropped from a transaction
+     * that still commits (a rejected posting in a group-commit batch).
+     */
+    static void release(Connection conn, String key) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(RELEASE_SQL)) {
+            pstmt.setString(1, key);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete expired keys in small chunks so the purge never holds many locks.
+     *
+     * @return number of keys deleted
+     */
+    public static int purgeExpired() throws SQLException {
+        int purged = 0;
+        int chunk;
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            do {
+                chunk = stmt.executeUpdate(PURGE_SQL);
+                purged += chunk;
+            } while (chunk == PURGE_CHUNK_SIZE);
+        }
+        return purged;
+    }
+}
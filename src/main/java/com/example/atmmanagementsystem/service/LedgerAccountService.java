@@ -0,0 +1,507 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AccountField;
+import com.example.atmmanagementsystem.model.BalanceView;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
+import com.example.atmmanagementsystem.util.Luhn;
+import com.example.atmmanagementsystem.util.SecurityUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * AccountService for offline kiosks that keeps accounts and the transaction
+ * ledger in local memory-mapped files (see {@link LedgerStore} for the
+ * format). Lookups go through in-memory indexes straight to the mapped
+ * record, so they never leave the process.
+ * <p>
+ * Business rules (amount steps, minimum balance, daily limits, identity
+ * checks) and error messages are the same as {@link DatabaseAccountService}.
+ * Account and card numbers are issued from a local range (account numbers
+ * from {@value #LOCAL_ACCOUNT_BASE}) so they don't overlap numbers handed
+ * out by the database sequences.
+ * <p>
+ * Select it with {@code -Datm.accounts=ledger}; the directory defaults to
+ * {@code ~/.bangla-bank/ledger} and can be changed with
+ * {@code -Datm.ledger.dir}.
+ */
+public class LedgerAccountService implements AccountService {
+
+    private static final long LOCAL_ACCOUNT_BASE = 900_000_000_000L;
+    private static final long LOCAL_CARD_BASE = 90_000_000_000L;
+    private static final String CARD_BIN = "4450";
+
+    private static final Money MIN_BALANCE = Money.ofTaka(500);
+    private static final Money DAILY_AMOUNT_LIMIT = Money.ofTaka(50000);
+    private static final Money AMOUNT_STEP = Money.ofTaka(500);
+    private static final Money MAX_TRANSACTION_AMOUNT = Money.ofTaka(25000);
+    private static final int DAILY_COUNT_LIMIT = 5;
+
+    private static LedgerAccountService shared;
+
+    private final LedgerStore store;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Open (or create) a ledger in {@code directory}.
+     *
+     * @param syncEveryWrite force every change to disk before returning; turn
+     *                       off only where losing the last few changes in a
+     *                       power cut is acceptable
+     */
+    public LedgerAccountService(Path directory, boolean syncEveryWrite) {
+        try {
+            this.store = new LedgerStore(directory, syncEveryWrite);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open ledger: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The process-wide ledger used by {@link AccountService#getInstance()}.
+     * Only one instance may have a ledger directory open, so it is shared and
+     * closed by a shutdown hook.
+     */
+    static synchronized LedgerAccountService shared() {
+        if (shared == null) {
+            Path dir = Paths.get(System.getProperty("atm.ledger.dir",
+                    Paths.get(System.getProperty("user.home"), ".bangla-bank", "ledger").toString()));
+            LedgerAccountService service = new LedgerAccountService(dir, true);
+            Runtime.getRuntime().addShutdownHook(new Thread(service::close, "ledger-shutdown"));
+            shared = service;
+        }
+        return shared;
+    }
+
+    /**
+     * Checkpoint and release the ledger files.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            store.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Account createAccount(String name, String phone, Money initialDeposit,
+            String email, String gender, String profession, String nationality, String nid, String address) {
+        // The constructor validates every field
+        Account account = new Account(name, phone, initialDeposit, email, gender, profession, nationality, nid,
+                address);
+        String pin = generatePin();
+
+        lock.writeLock().lock();
+        try {
+            if (store.slotOfPhone(account.getPhoneNumber()) != LongIntIndex.MISSING) {
+                throw new IllegalArgumentException("An account with this phone number already exists");
+            }
+            if (account.getEmail() != null && store.slotOfEmail(account.getEmail()) != LongIntIndex.MISSING) {
+                throw new IllegalArgumentException("An account with this email already exists");
+            }
+            if (account.getNid() != null && store.slotOfNid(account.getNid()) != LongIntIndex.MISSING) {
+                throw new IllegalArgumentException("An account with this NID already exists");
+            }
+
+            store.create(account, slot -> {
+                String payload = CARD_BIN + String.format("%011d", LOCAL_CARD_BASE + slot);
+                return new String[] { String.format("%012d", LOCAL_ACCOUNT_BASE + slot),
+                        payload + Luhn.checkDigit(payload) };
+            }, SecurityUtil.hashPin(pin), account.getBalance().toPaisa());
+        } catch (IOException e) {
+            throw new RuntimeException("Ledger error: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Return plain PIN to the user so they see what it is
+        account.setPin(pin);
+        return account;
+    }
+
+    @Override
+    public Optional<Account> findByAccountNumber(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            return read(store.slotOfAccount(accountNumber));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Account> findByCardNumber(String cardNumber) {
+        lock.readLock().lock();
+        try {
+            return read(store.slotOfCard(cardNumber));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Account> findByPhone(String phone) {
+        if (phone == null)
+            return Optional.empty();
+        lock.readLock().lock();
+        try {
+            return read(store.slotOfPhone(phone.replaceAll("\\D", "")));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Account> findByEmail(String email) {
+        if (email == null)
+            return Optional.empty();
+        lock.readLock().lock();
+        try {
+            return read(store.slotOfEmail(email));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Account> findByNid(String nid) {
+        if (nid == null)
+            return Optional.empty();
+        lock.readLock().lock();
+        try {
+            return read(store.slotOfNid(nid));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Balance and blocked flag straight from the mapped record.
+     */
+    public Optional<BalanceView> findBalance(String cardNumber) {
+        lock.readLock().lock();
+        try {
+            int slot = store.slotOfCard(cardNumber);
+            if (slot == LongIntIndex.MISSING) {
+                return Optional.empty();
+            }
+            return Optional.of(new BalanceView(cardNumber, Money.ofPaisa(store.balance(slot)), store.isBlocked(slot)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Optional<Account> read(int slot) {
+        if (slot == LongIntIndex.MISSING) {
+            return Optional.empty();
+        }
+        return Optional.of(store.readAccount(slot, EnumSet.allOf(AccountField.class)));
+    }
+
+    @Override
+    public List<Account> listAccounts() {
+        try (Stream<Account> accounts = streamAccounts(null)) {
+            return accounts.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Walks the account records in slot order. Accounts created after the
+     * stream was opened are not included.
+     */
+    @Override
+    public Stream<Account> streamAccounts(Set<AccountField> fields) {
+        Set<AccountField> selected = fields == null || fields.isEmpty()
+                ? EnumSet.allOf(AccountField.class)
+                : EnumSet.copyOf(fields);
+        int size;
+        lock.readLock().lock();
+        try {
+            size = store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return IntStream.range(0, size).mapToObj(slot -> {
+            lock.readLock().lock();
+            try {
+                return store.isCommitted(slot) ? store.readAccount(slot, selected) : null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }).filter(account -> account != null);
+    }
+
+    @Override
+    public void blockAccount(String cardNumber, String nidProof) {
+        lock.writeLock().lock();
+        try {
+            int slot = requireCard(cardNumber);
+
+            // Verify NID proof matches
+            String phone = store.getString(slot, AccountField.PHONE_NUMBER);
+            boolean valid = false;
+            if (nidProof.equals(store.getString(slot, AccountField.NID))) {
+                valid = true;
+            } else if (phone != null && phone.endsWith(nidProof)) {
+                valid = true;
+            }
+
+            if (!valid) {
+                throw new IllegalArgumentException("NID verification failed");
+            }
+
+            store.setBlocked(slot, true);
+        } catch (IOException e) {
+            throw new RuntimeException("Error blocking account: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deposit(String cardNumber, Money amount) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (!amount.isMultipleOf(AMOUNT_STEP)) {
+            throw new IllegalArgumentException("Amount must be a multiple of 500");
+        }
+        if (amount.isLessThan(AMOUNT_STEP)) {
+            throw new IllegalArgumentException("Minimum deposit amount is 500 TK");
+        }
+        if (amount.isGreaterThan(MAX_TRANSACTION_AMOUNT)) {
+            throw new IllegalArgumentException("Maximum deposit amount per transaction is 25,000 TK");
+        }
+
+        post(cardNumber, amount, LedgerStore.KIND_DEPOSIT);
+    }
+
+    @Override
+    public void withdraw(String cardNumber, Money amount) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (!amount.isMultipleOf(AMOUNT_STEP)) {
+            throw new IllegalArgumentException("Amount must be a multiple of 500");
+        }
+        if (amount.isLessThan(AMOUNT_STEP)) {
+            throw new IllegalArgumentException("Minimum withdraw amount is 500 TK");
+        }
+        if (amount.isGreaterThan(MAX_TRANSACTION_AMOUNT)) {
+            throw new IllegalArgumentException("Maximum withdraw amount per transaction is 25,000 TK");
+        }
+
+        post(cardNumber, amount, LedgerStore.KIND_WITHDRAW);
+    }
+
+    /**
+     * Checks the same rules as the database path, in the same order, then
+     * appends the posting. Today's usage is read by walking the card's posting
+     * chain back to midnight, which is at most a handful of records.
+     */
+    private void post(String cardNumber, Money amount, byte kind) {
+        boolean withdraw = kind == LedgerStore.KIND_WITHDRAW;
+        lock.writeLock().lock();
+        try {
+            int slot = store.slotOfCard(cardNumber);
+            if (slot == LongIntIndex.MISSING) {
+                if (withdraw) {
+                    throw new IllegalArgumentException("Card not found");
+                }
+                throw new RuntimeException("Deposit failed: Card not found");
+            }
+
+            long balance = store.balance(slot);
+            long paisa = amount.toPaisa();
+            if (withdraw && balance - paisa < MIN_BALANCE.toPaisa()) {
+                throw new IllegalArgumentException("Insufficient funds. Minimum balance of 500 TK required.");
+            }
+
+            long startOfDay = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long todayTotal = 0;
+            int todayCount = 0;
+            for (long pos = store.lastPosting(slot); pos != LedgerStore.NO_POSTING
+                    && store.postingTime(pos) >= startOfDay; pos = store.previousPosting(pos)) {
+                if (store.postingKind(pos) == kind) {
+                    todayTotal += store.postingAmount(pos);
+                    todayCount++;
+                }
+            }
+            if (todayTotal + paisa > DAILY_AMOUNT_LIMIT.toPaisa()) {
+                Money remaining = Money.ofPaisa(DAILY_AMOUNT_LIMIT.toPaisa() - todayTotal);
+                if (withdraw) {
+                    throw new IllegalArgumentException("Daily withdrawal limit is 50,000 TK. You can withdraw "
+                            + remaining + " TK more today.");
+                }
+                throw new IllegalArgumentException("Daily deposit limit is 50,000 TK. You can deposit "
+                        + remaining + " TK more today.");
+            }
+            if (todayCount >= DAILY_COUNT_LIMIT) {
+                if (withdraw) {
+                    throw new IllegalArgumentException("Daily withdrawal transaction limit (5 times) reached.");
+                }
+                throw new IllegalArgumentException("Daily deposit transaction limit (5 times) reached.");
+            }
+
+            store.post(slot, kind, paisa, withdraw ? balance - paisa : balance + paisa);
+        } catch (IOException e) {
+            throw new RuntimeException("Ledger error during " + (withdraw ? "withdraw" : "deposit") + ": "
+                    + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String resetPin(String cardNumber, String nidProof) {
+        lock.writeLock().lock();
+        try {
+            int slot = requireCard(cardNumber);
+
+            // Check identity (Phone or NID)
+            String phone = store.getString(slot, AccountField.PHONE_NUMBER);
+            boolean valid = false;
+            if (nidProof.equals(store.getString(slot, AccountField.NID))) {
+                valid = true;
+            } else if (phone != null && phone.equals(nidProof)) {
+                valid = true;
+            }
+
+            if (!valid) {
+                throw new IllegalArgumentException("Identity verification failed. Phone Number or NID does not match.");
+            }
+
+            String newPin = generatePin();
+            store.setPin(slot, SecurityUtil.hashPin(newPin), false);
+            return newPin;
+        } catch (IOException e) {
+            throw new RuntimeException("Ledger error during PIN reset: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePin(String cardNumber, String newPin) {
+        String hashedPin = SecurityUtil.hashPin(newPin);
+        lock.writeLock().lock();
+        try {
+            int slot = requireCard(cardNumber);
+            if (store.pinHash(slot).equals(hashedPin)) {
+                throw new IllegalArgumentException("New PIN cannot be the same as the old PIN.");
+            }
+            store.setPin(slot, hashedPin, store.isBlocked(slot));
+        } catch (IOException e) {
+            throw new RuntimeException("Ledger error during PIN update: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void unblockAccount(String cardNumber) {
+        lock.writeLock().lock();
+        try {
+            int slot = store.slotOfCard(cardNumber);
+            if (slot != LongIntIndex.MISSING) {
+                store.setBlocked(slot, false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error unblocking account: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> getTransactions(String cardNumber) {
+        lock.readLock().lock();
+        try {
+            List<Transaction> list = new ArrayList<>();
+            int slot = store.slotOfCard(cardNumber);
+            if (slot != LongIntIndex.MISSING) {
+                for (long pos = store.lastPosting(slot); pos != LedgerStore.NO_POSTING;
+                        pos = store.previousPosting(pos)) {
+                    list.add(store.readPosting(pos, cardNumber));
+                }
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The cursor is the log position of the next (older) posting.
+     */
+    @Override
+    public TransactionPage getTransactionPage(String cardNumber, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        lock.readLock().lock();
+        try {
+            int slot = store.slotOfCard(cardNumber);
+            if (slot == LongIntIndex.MISSING) {
+                return new TransactionPage(new ArrayList<>(), null);
+            }
+
+            long pos;
+            if (cursor == null) {
+                pos = store.lastPosting(slot);
+            } else {
+                try {
+                    pos = Long.parseLong(cursor);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+                }
+                if (!store.isPostingPosition(pos) || store.postingSlot(pos) != slot) {
+                    throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+                }
+            }
+
+            List<Transaction> list = new ArrayList<>(pageSize);
+            for (; pos != LedgerStore.NO_POSTING && list.size() < pageSize; pos = store.previousPosting(pos)) {
+                list.add(store.readPosting(pos, cardNumber));
+            }
+            return new TransactionPage(list, pos == LedgerStore.NO_POSTING ? null : Long.toString(pos));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int requireCard(String cardNumber) {
+        int slot = store.slotOfCard(cardNumber);
+        if (slot == LongIntIndex.MISSING) {
+            throw new IllegalArgumentException("Card not found");
+        }
+        return slot;
+    }
+
+    private String generatePin() {
+        int p = random.nextInt(10_000);
+        return String.format("%04d", p);
+    }
+}
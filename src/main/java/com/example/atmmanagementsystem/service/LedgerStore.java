@@ -0,0 +1,562 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AccountField;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * File format and recovery for {@link LedgerAccountService}.
+ * <p>
+ * Two memory-mapped files live in the ledger directory:
+ * <ul>
+ * <li>{@code accounts.dat}: a 64-byte header followed by one fixed-width
+ * {@value #ACCOUNT_RECORD_SIZE}-byte record per account, addressed by slot.
+ * The header holds the checkpoint: the log position up to which every log
+ * record is known to be reflected in the account records.</li>
+ * <li>{@code ledger.log}: a 64-byte header followed by append-only
+ * {@value #LOG_RECORD_SIZE}-byte records, each protected by a CRC32. Every
+ * change (account creation, posting, PIN change, block flag) is written here
+ * first and carries the resulting state, so replaying a record is idempotent.
+ * Postings also link to the card's previous posting, so history is read by
+ * following the chain backwards from the account record.</li>
+ * </ul>
+ * On open, records after the checkpoint are replayed up to the first one with
+ * a bad checksum (a torn write from a crash), which becomes the new tail.
+ * <p>
+ * Each file is limited to one mapping (2 GB), which is about 2 million
+ * accounts and 22 million log records. Not thread-safe; the service
+ * serializes access.
+ */
+class LedgerStore {
+
+    static final byte KIND_CREATE = 1;
+    static final byte KIND_DEPOSIT = 2;
+    static final byte KIND_WITHDRAW = 3;
+    static final byte KIND_PIN = 4;
+    static final byte KIND_BLOCK = 5;
+
+    static final long NO_POSTING = -1;
+
+    private static final int ACCOUNTS_MAGIC = 0x42424B41; // "BBKA"
+    private static final int LOG_MAGIC = 0x42424B4C; // "BBKL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    // accounts.dat header
+    private static final int HDR_CHECKPOINT = 8;
+    private static final int HDR_RECORD_COUNT = 16;
+
+    // Account record layout
+    static final int ACCOUNT_RECORD_SIZE = 1024;
+    private static final int ACC_COMMITTED = 0;
+    private static final int ACC_BLOCKED = 1;
+    private static final int ACC_BALANCE = 8;
+    private static final int ACC_LAST_POSTING = 16;
+    private static final int ACC_CREATED_AT = 24;
+    private static final int ACC_PIN = 32;
+    private static final int ACC_STRINGS = 64;
+
+    // Log record layout
+    static final int LOG_RECORD_SIZE = 96;
+    private static final int LOG_CRC = 0;
+    private static final int LOG_KIND = 4;
+    private static final int LOG_BLOCKED = 5;
+    private static final int LOG_SLOT = 8;
+    private static final int LOG_SEQ = 16;
+    private static final int LOG_AMOUNT = 24;
+    private static final int LOG_BALANCE_AFTER = 32;
+    private static final int LOG_TIME = 40;
+    private static final int LOG_PREVIOUS = 48;
+    private static final int LOG_PIN = 56;
+
+    private static final int PIN_HASH_BYTES = 32;
+    private static final int NULL_LENGTH = 0xFF;
+
+    private static final int INITIAL_ACCOUNTS = 1024;
+    private static final int INITIAL_LOG_RECORDS = 16 * 1024;
+    private static final int CHECKPOINT_INTERVAL = 4096;
+
+    // Byte capacity of each string column (at most 254, the length prefix is one byte)
+    private static final Map<AccountField, Integer> CAPACITY = new EnumMap<>(AccountField.class);
+    private static final Map<AccountField, Integer> OFFSET = new EnumMap<>(AccountField.class);
+
+    static {
+        CAPACITY.put(AccountField.ACCOUNT_NUMBER, 20);
+        CAPACITY.put(AccountField.CARD_NUMBER, 20);
+        CAPACITY.put(AccountField.NAME, 200);
+        CAPACITY.put(AccountField.PHONE_NUMBER, 15);
+        CAPACITY.put(AccountField.EMAIL, 100);
+        CAPACITY.put(AccountField.GENDER, 20);
+        CAPACITY.put(AccountField.PROFESSION, 50);
+        CAPACITY.put(AccountField.NATIONALITY, 50);
+        CAPACITY.put(AccountField.NID, 20);
+        CAPACITY.put(AccountField.ADDRESS, 254);
+        int offset = ACC_STRINGS;
+        for (Map.Entry<AccountField, Integer> e : CAPACITY.entrySet()) {
+            OFFSET.put(e.getKey(), offset);
+            offset += 1 + e.getValue();
+        }
+        if (offset > ACCOUNT_RECORD_SIZE) {
+            throw new IllegalStateException("Account record layout exceeds " + ACCOUNT_RECORD_SIZE + " bytes");
+        }
+    }
+
+    private final FileChannel accountsChannel;
+    private final FileChannel logChannel;
+    private final FileLock lock;
+    private final boolean syncEveryWrite;
+    private MappedByteBuffer accounts;
+    private MappedByteBuffer log;
+
+    private int recordCount;
+    private long logTail;
+    private long nextSeq;
+    private int sinceCheckpoint;
+
+    private final LongIntIndex cards;
+    private final LongIntIndex accountNumbers;
+    private final Map<String, Integer> phones = new HashMap<>();
+    private final Map<String, Integer> emails = new HashMap<>();
+    private final Map<String, Integer> nids = new HashMap<>();
+
+    /**
+     * @param syncEveryWrite force each log record to disk before the change is
+     *                       acknowledged; without it a crash can lose the last
+     *                       few changes, but never corrupts the files
+     */
+    LedgerStore(Path directory, boolean syncEveryWrite) throws IOException {
+        this.syncEveryWrite = syncEveryWrite;
+        Files.createDirectories(directory);
+        accountsChannel = FileChannel.open(directory.resolve("accounts.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logChannel = FileChannel.open(directory.resolve("ledger.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lock = accountsChannel.tryLock();
+        if (lock == null) {
+            accountsChannel.close();
+            logChannel.close();
+            throw new IOException("Ledger " + directory + " is in use by another process");
+        }
+
+        boolean fresh = accountsChannel.size() == 0;
+        accounts = map(accountsChannel, Math.max(accountsChannel.size(),
+                HEADER_SIZE + (long) INITIAL_ACCOUNTS * ACCOUNT_RECORD_SIZE));
+        log = map(logChannel, Math.max(logChannel.size(), HEADER_SIZE + (long) INITIAL_LOG_RECORDS * LOG_RECORD_SIZE));
+        if (fresh) {
+            accounts.putInt(0, ACCOUNTS_MAGIC);
+            accounts.putInt(4, FORMAT_VERSION);
+            accounts.putLong(HDR_CHECKPOINT, HEADER_SIZE);
+            accounts.putInt(HDR_RECORD_COUNT, 0);
+            log.putInt(0, LOG_MAGIC);
+            log.putInt(4, FORMAT_VERSION);
+            log.force();
+            accounts.force();
+        } else if (accounts.getInt(0) != ACCOUNTS_MAGIC || log.getInt(0) != LOG_MAGIC) {
+            lock.release();
+            accountsChannel.close();
+            logChannel.close();
+            throw new IOException("Ledger " + directory + " is not a ledger directory or is damaged");
+        }
+
+        recover();
+        cards = new LongIntIndex(recordCount);
+        accountNumbers = new LongIntIndex(recordCount);
+        for (int slot = 0; slot < recordCount; slot++) {
+            if (accounts.get(recordOffset(slot) + ACC_COMMITTED) == 1) {
+                index(slot);
+            }
+        }
+    }
+
+    // --- Recovery ---
+
+    private void recover() throws IOException {
+        long checkpoint = accounts.getLong(HDR_CHECKPOINT);
+        recordCount = accounts.getInt(HDR_RECORD_COUNT);
+        nextSeq = checkpoint > HEADER_SIZE ? log.getLong((int) checkpoint - LOG_RECORD_SIZE + LOG_SEQ) + 1 : 1;
+
+        long pos = checkpoint;
+        int replayed = 0;
+        while (pos + LOG_RECORD_SIZE <= log.capacity() && isValid((int) pos)) {
+            apply((int) pos);
+            nextSeq = log.getLong((int) pos + LOG_SEQ) + 1;
+            pos += LOG_RECORD_SIZE;
+            replayed++;
+        }
+        logTail = pos;
+
+        // Clear a torn record and anything after it, so stale records past the
+        // tail can never be replayed after the next crash
+        boolean torn = false;
+        for (int p = (int) pos; p + LOG_RECORD_SIZE <= log.capacity() && log.get(p + LOG_KIND) != 0;
+                p += LOG_RECORD_SIZE) {
+            log.put(p, new byte[LOG_RECORD_SIZE]);
+            torn = true;
+        }
+        if (replayed > 0 || torn) {
+            System.out.println("Ledger recovery replayed " + replayed + " log record(s).");
+            checkpoint();
+        }
+    }
+
+    private boolean isValid(int pos) {
+        return log.get(pos + LOG_KIND) != 0 && log.getInt(pos + LOG_CRC) == crc(pos);
+    }
+
+    private int crc(int pos) {
+        CRC32 crc = new CRC32();
+        crc.update(log.slice(pos + LOG_KIND, LOG_RECORD_SIZE - LOG_KIND));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reflect one log record in its account record. Records carry the
+     * resulting state rather than a delta, so applying one twice is harmless.
+     */
+    private void apply(int pos) throws IOException {
+        int slot = log.getInt(pos + LOG_SLOT);
+        ensureAccountCapacity(slot + 1);
+        int rec = recordOffset(slot);
+        switch (log.get(pos + LOG_KIND)) {
+            case KIND_CREATE -> {
+                accounts.putLong(rec + ACC_BALANCE, log.getLong(pos + LOG_BALANCE_AFTER));
+                accounts.put(rec + ACC_COMMITTED, (byte) 1);
+                recordCount = Math.max(recordCount, slot + 1);
+            }
+            case KIND_DEPOSIT, KIND_WITHDRAW -> {
+                accounts.putLong(rec + ACC_BALANCE, log.getLong(pos + LOG_BALANCE_AFTER));
+                accounts.putLong(rec + ACC_LAST_POSTING, pos);
+            }
+            case KIND_PIN -> {
+                byte[] pin = new byte[PIN_HASH_BYTES];
+                log.get(pos + LOG_PIN, pin);
+                accounts.put(rec + ACC_PIN, pin);
+                accounts.put(rec + ACC_BLOCKED, log.get(pos + LOG_BLOCKED));
+            }
+            case KIND_BLOCK -> accounts.put(rec + ACC_BLOCKED, log.get(pos + LOG_BLOCKED));
+            default -> throw new IOException("Unknown ledger record kind at position " + pos);
+        }
+    }
+
+    /**
+     * Make everything up to the log tail durable and record that position, so
+     * the next open only replays what comes after it.
+     */
+    void checkpoint() {
+        log.force();
+        accounts.force();
+        accounts.putLong(HDR_CHECKPOINT, logTail);
+        accounts.putInt(HDR_RECORD_COUNT, recordCount);
+        accounts.force(0, HEADER_SIZE);
+        sinceCheckpoint = 0;
+    }
+
+    void close() throws IOException {
+        try {
+            if (lock.isValid()) {
+                checkpoint();
+                lock.release();
+            }
+        } finally {
+            accountsChannel.close();
+            logChannel.close();
+        }
+    }
+
+    // --- Writes ---
+
+    /**
+     * Write a new account record and commit it with a CREATE log record.
+     *
+     * @param numbers receives the slot and returns {account number, card number}
+     * @return the new slot
+     */
+    int create(Account account, IntFunction<String[]> numbers, String pinHash, long balance)
+            throws IOException {
+        int slot = recordCount;
+        ensureAccountCapacity(slot + 1);
+        String[] assigned = numbers.apply(slot);
+        account.setAccountNumber(assigned[0]);
+        account.setCardNumber(assigned[1]);
+
+        // A slot left behind by a create that crashed before its log record is simply reused
+        int rec = recordOffset(slot);
+        accounts.put(rec, new byte[ACCOUNT_RECORD_SIZE]);
+        accounts.putLong(rec + ACC_LAST_POSTING, NO_POSTING);
+        accounts.putLong(rec + ACC_CREATED_AT, System.currentTimeMillis());
+        accounts.put(rec + ACC_PIN, fromHex(pinHash));
+        for (AccountField field : CAPACITY.keySet()) {
+            putString(rec, field, stringValue(account, field));
+        }
+        // The record must be on disk before the log says it exists
+        accounts.force(rec, ACCOUNT_RECORD_SIZE);
+
+        append(KIND_CREATE, slot, false, 0, balance, NO_POSTING, null);
+        index(slot);
+        return slot;
+    }
+
+    /**
+     * Append a deposit or withdrawal and update the balance.
+     */
+    void post(int slot, byte kind, long amount, long balanceAfter) throws IOException {
+        append(kind, slot, false, amount, balanceAfter, lastPosting(slot), null);
+    }
+
+    void setPin(int slot, String pinHash, boolean blocked) throws IOException {
+        append(KIND_PIN, slot, blocked, 0, balance(slot), NO_POSTING, fromHex(pinHash));
+    }
+
+    void setBlocked(int slot, boolean blocked) throws IOException {
+        append(KIND_BLOCK, slot, blocked, 0, balance(slot), NO_POSTING, null);
+    }
+
+    private void append(byte kind, int slot, boolean blocked, long amount, long balanceAfter, long previous,
+            byte[] pinHash) throws IOException {
+        ensureLogCapacity(logTail + LOG_RECORD_SIZE);
+        int pos = (int) logTail;
+        log.put(pos, new byte[LOG_RECORD_SIZE]);
+        log.put(pos + LOG_KIND, kind);
+        log.put(pos + LOG_BLOCKED, (byte) (blocked ? 1 : 0));
+        log.putInt(pos + LOG_SLOT, slot);
+        log.putLong(pos + LOG_SEQ, nextSeq);
+        log.putLong(pos + LOG_AMOUNT, amount);
+        log.putLong(pos + LOG_BALANCE_AFTER, balanceAfter);
+        log.putLong(pos + LOG_TIME, System.currentTimeMillis());
+        log.putLong(pos + LOG_PREVIOUS, previous);
+        if (pinHash != null) {
+            log.put(pos + LOG_PIN, pinHash);
+        }
+        // Written last: a record is only valid once its checksum matches
+        log.putInt(pos + LOG_CRC, crc(pos));
+        if (syncEveryWrite) {
+            log.force(pos, LOG_RECORD_SIZE);
+        }
+
+        logTail += LOG_RECORD_SIZE;
+        nextSeq++;
+        apply(pos);
+        if (++sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+    }
+
+    // --- Reads ---
+
+    int size() {
+        return recordCount;
+    }
+
+    boolean isCommitted(int slot) {
+        return slot < recordCount && accounts.get(recordOffset(slot) + ACC_COMMITTED) == 1;
+    }
+
+    int slotOfCard(String cardNumber) {
+        return cards.get(LongIntIndex.key(cardNumber));
+    }
+
+    int slotOfAccount(String accountNumber) {
+        return accountNumbers.get(LongIntIndex.key(accountNumber));
+    }
+
+    int slotOfPhone(String phone) {
+        return phones.getOrDefault(phone, LongIntIndex.MISSING);
+    }
+
+    int slotOfEmail(String email) {
+        return emails.getOrDefault(email, LongIntIndex.MISSING);
+    }
+
+    int slotOfNid(String nid) {
+        return nids.getOrDefault(nid, LongIntIndex.MISSING);
+    }
+
+    long balance(int slot) {
+        return accounts.getLong(recordOffset(slot) + ACC_BALANCE);
+    }
+
+    boolean isBlocked(int slot) {
+        return accounts.get(recordOffset(slot) + ACC_BLOCKED) == 1;
+    }
+
+    String pinHash(int slot) {
+        byte[] pin = new byte[PIN_HASH_BYTES];
+        accounts.get(recordOffset(slot) + ACC_PIN, pin);
+        return toHex(pin);
+    }
+
+    String getString(int slot, AccountField field) {
+        int off = recordOffset(slot) + OFFSET.get(field);
+        int length = accounts.get(off) & 0xFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        accounts.get(off + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Build an account from its record, loading only {@code fields}.
+     */
+    Account readAccount(int slot, Set<AccountField> fields) {
+        Account account = new Account();
+        for (AccountField field : fields) {
+            String value = switch (field) {
+                case PIN -> pinHash(slot);
+                case BALANCE -> Money.ofPaisa(balance(slot)).toString();
+                case BLOCKED -> Boolean.toString(isBlocked(slot));
+                default -> getString(slot, field);
+            };
+            field.set(account, value);
+        }
+        return account;
+    }
+
+    long lastPosting(int slot) {
+        return accounts.getLong(recordOffset(slot) + ACC_LAST_POSTING);
+    }
+
+    long previousPosting(long pos) {
+        return log.getLong((int) pos + LOG_PREVIOUS);
+    }
+
+    byte postingKind(long pos) {
+        return log.get((int) pos + LOG_KIND);
+    }
+
+    int postingSlot(long pos) {
+        return log.getInt((int) pos + LOG_SLOT);
+    }
+
+    long postingAmount(long pos) {
+        return log.getLong((int) pos + LOG_AMOUNT);
+    }
+
+    long postingTime(long pos) {
+        return log.getLong((int) pos + LOG_TIME);
+    }
+
+    Transaction readPosting(long pos, String cardNumber) {
+        int p = (int) pos;
+        return new Transaction(
+                (int) log.getLong(p + LOG_SEQ),
+                cardNumber,
+                Money.ofPaisa(log.getLong(p + LOG_AMOUNT)),
+                log.get(p + LOG_KIND) == KIND_WITHDRAW ? "WITHDRAW" : "DEPOSIT",
+                new Timestamp(log.getLong(p + LOG_TIME)));
+    }
+
+    /**
+     * Whether {@code pos} could be a posting position handed out by this store;
+     * used to validate page cursors.
+     */
+    boolean isPostingPosition(long pos) {
+        return pos >= HEADER_SIZE && pos < logTail && (pos - HEADER_SIZE) % LOG_RECORD_SIZE == 0
+                && (postingKind(pos) == KIND_DEPOSIT || postingKind(pos) == KIND_WITHDRAW);
+    }
+
+    // --- Helpers ---
+
+    private void index(int slot) {
+        cards.put(LongIntIndex.key(getString(slot, AccountField.CARD_NUMBER)), slot);
+        accountNumbers.put(LongIntIndex.key(getString(slot, AccountField.ACCOUNT_NUMBER)), slot);
+        phones.put(getString(slot, AccountField.PHONE_NUMBER), slot);
+        String email = getString(slot, AccountField.EMAIL);
+        if (email != null) {
+            emails.put(email, slot);
+        }
+        String nid = getString(slot, AccountField.NID);
+        if (nid != null) {
+            nids.put(nid, slot);
+        }
+    }
+
+    private void putString(int rec, AccountField field, String value) {
+        int off = rec + OFFSET.get(field);
+        if (value == null) {
+            accounts.put(off, (byte) NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > CAPACITY.get(field)) {
+            throw new IllegalArgumentException(field.getColumn() + " is too long (max " + CAPACITY.get(field)
+                    + " bytes)");
+        }
+        accounts.put(off, (byte) bytes.length);
+        accounts.put(off + 1, bytes);
+    }
+
+    private static String stringValue(Account account, AccountField field) {
+        return switch (field) {
+            case ACCOUNT_NUMBER -> account.getAccountNumber();
+            case CARD_NUMBER -> account.getCardNumber();
+            case NAME -> account.getName();
+            case PHONE_NUMBER -> account.getPhoneNumber();
+            case EMAIL -> account.getEmail();
+            case GENDER -> account.getGender();
+            case PROFESSION -> account.getProfession();
+            case NATIONALITY -> account.getNationality();
+            case NID -> account.getNid();
+            case ADDRESS -> account.getAddress();
+            default -> throw new IllegalArgumentException(field + " is not a string column");
+        };
+    }
+
+    private static int recordOffset(int slot) {
+        return HEADER_SIZE + slot * ACCOUNT_RECORD_SIZE;
+    }
+
+    private void ensureAccountCapacity(int slots) throws IOException {
+        long needed = HEADER_SIZE + (long) slots * ACCOUNT_RECORD_SIZE;
+        if (needed > accounts.capacity()) {
+            accounts = map(accountsChannel, Math.max(needed, Math.min(2L * accounts.capacity(), Integer.MAX_VALUE)));
+        }
+    }
+
+    private void ensureLogCapacity(long needed) throws IOException {
+        if (needed > log.capacity()) {
+            log = map(logChannel, Math.max(needed, Math.min(2L * log.capacity(), Integer.MAX_VALUE)));
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Ledger file size limit reached");
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[PIN_HASH_BYTES];
+        for (int i = 0; i < PIN_HASH_BYTES; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
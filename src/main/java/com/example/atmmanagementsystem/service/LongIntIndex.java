@@ -0,0 +1,104 @@
+package com.example.atmmanagementsystem.service;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from numeric keys (card and account numbers) to
+ * record slots, kept in two primitive arrays so a lookup is a few array reads
+ * with no boxing. Insert-only: accounts are never deleted. Not thread-safe.
+ */
+class LongIntIndex {
+
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    /**
+     * Parse an all-digit number as a key, or return -1 if it isn't one (so it
+     * can't be in the index).
+     */
+    static long key(String number) {
+        if (number == null || number.isEmpty() || number.length() > 18) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    int get(long key) {
+        if (key < 0) {
+            return MISSING;
+        }
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+            if (values[i] == MISSING) {
+                return MISSING;
+            }
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+    }
+
+    void put(long key, int value) {
+        if (key < 0 || value < 0) {
+            throw new IllegalArgumentException("Index keys and values must be non-negative");
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+            if (values[i] == MISSING) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, MISSING);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    // Sequential card numbers would otherwise cluster in neighbouring buckets
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,519 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-of-day settlement: reconciles every card's balance against its ledger
+ * and totals the day's transactions per type.
+ * <p>
+ * The cards are split into ranges of {@value #RANGE_CARDS} card numbers,
+ * planned once per settlement date in {@code settlement_ranges}. Ranges are
+ * settled in parallel on a fork-join pool. Each one streams its slice of the
+ * ledger (hot and archived) in a single read-only transaction, so balances and
+ * events come from the same snapshot even while postings continue. Per-card
+ * sums are held only for the range at hand, which keeps memory flat however
+ * large the ledger is.
+ * <p>
+ * A card whose stored balance (its derived balance in event-sourced mode)
+ * isn't its opening balance plus its events goes into
+ * {@code settlement_discrepancies}. So does a ledger card with no account.
+ * A range's discrepancies, its totals in {@code settlement_totals} and its
+ * checkpoint commit together. An interrupted run picks up at the first
+ * unfinished range when started again for the same date.
+ * <p>
+ * Reads go to a replica when one is configured.
+ * <p>
+ * Usage: {@code SettlementJob settle [date] [threads] [--restart]} or
+ * {@code SettlementJob report [date]}. The date defaults to today.
+ */
+public class SettlementJob {
+
+    static final int RANGE_CARDS = 2_000;
+    private static final int REPORTED_DISCREPANCIES = 20;
+
+    private static final String CARDS_SQL = "SELECT card_number FROM accounts ORDER BY card_number";
+
+    private static final String PLAN_SQL =
+            "INSERT INTO settlement_ranges (settlement_date, range_no, after_card, through_card) VALUES (?, ?, ?, ?)";
+
+    private static final String PENDING_RANGES_SQL =
+            "SELECT range_no, after_card, through_card FROM settlement_ranges "
+                    + "WHERE settlement_date = ? AND completed_at IS NULL ORDER BY range_no";
+
+    private static final String PLANNED_SQL = "SELECT COUNT(*) FROM settlement_ranges WHERE settlement_date = ?";
+
+    // Ranges are (after_card, through_card]; NULL leaves that end open
+    private static final String RANGE_FILTER =
+            " WHERE (? IS NULL OR card_number > ?) AND (? IS NULL OR card_number <= ?)";
+
+    private static final String ACCOUNTS_SQL = "SELECT card_number, balance, opening_balance FROM accounts"
+            + RANGE_FILTER;
+
+    private static final String DERIVED_ACCOUNTS_SQL =
+            "SELECT card_number, " + EventSourcedBalances.DERIVED_BALANCE + ", opening_balance FROM accounts"
+                    + RANGE_FILTER;
+
+    // The last column says whether the row falls on the settlement date
+    private static final String LEDGER_SQL =
+            "SELECT card_number, transaction_type, amount, timestamp >= ? AND timestamp < ? FROM %s" + RANGE_FILTER;
+
+    private static final String RECORD_DISCREPANCY_SQL =
+            "INSERT INTO settlement_discrepancies (settlement_date, card_number, stored_balance, ledger_balance) "
+                    + "VALUES (?, ?, ?, ?)";
+
+    private static final String RECORD_TOTAL_SQL =
+            "INSERT INTO settlement_totals (settlement_date, range_no, transaction_type, total_amount, txn_count) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String COMPLETE_RANGE_SQL =
+            "UPDATE settlement_ranges SET cards = ?, ledger_rows = ?, discrepancies = ?, completed_at = NOW() "
+                    + "WHERE settlement_date = ? AND range_no = ? AND completed_at IS NULL";
+
+    private static final String DAILY_TOTALS_SQL =
+            "SELECT transaction_type, SUM(total_amount), SUM(txn_count) FROM settlement_totals "
+                    + "WHERE settlement_date = ? GROUP BY transaction_type ORDER BY transaction_type";
+
+    private static final String PROGRESS_SQL =
+            "SELECT COUNT(*), COUNT(completed_at), COALESCE(SUM(cards), 0), COALESCE(SUM(discrepancies), 0) "
+                    + "FROM settlement_ranges WHERE settlement_date = ?";
+
+    private static final String DISCREPANCIES_SQL =
+            "SELECT card_number, stored_balance, ledger_balance FROM settlement_discrepancies "
+                    + "WHERE settlement_date = ? ORDER BY card_number LIMIT " + REPORTED_DISCREPANCIES;
+
+    private static final String[] RESTART_SQL = {
+            "DELETE FROM settlement_discrepancies WHERE settlement_date = ?",
+            "DELETE FROM settlement_totals WHERE settlement_date = ?",
+            "DELETE FROM settlement_ranges WHERE settlement_date = ?"
+    };
+
+    private final LocalDate date;
+    private final int threads;
+    private final boolean eventSourced = EventSourcedBalances.ENABLED;
+    private final AtomicInteger rangesDone = new AtomicInteger();
+    private final AtomicLong cardsSettled = new AtomicLong();
+    private final AtomicLong rowsRead = new AtomicLong();
+
+    public SettlementJob(LocalDate date, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        this.date = date;
+        this.threads = threads;
+    }
+
+    /**
+     * Settle every range of the date that isn't settled yet, planning the
+     * ranges first if this is the date's first run.
+     *
+     * @return number of cards settled by this run
+     */
+    public long settle() throws SQLException {
+        if (plannedRanges() == 0) {
+            plan();
+        }
+        List<Range> pending = pendingRanges();
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SettleRanges(pending, 0, pending.size()));
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        return cardsSettled.get();
+    }
+
+    /**
+     * Forget the date's settlement so the next run starts from scratch.
+     */
+    public void restart() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (String sql : RESTART_SQL) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setDate(1, Date.valueOf(date));
+                        pstmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private int plannedRanges() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(PLANNED_SQL)) {
+            pstmt.setDate(1, Date.valueOf(date));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Cut the card numbers into ranges by streaming them in order. The last
+     * range is open-ended, so cards created after planning are still settled.
+     */
+    private void plan() throws SQLException {
+        List<String> boundaries = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection();
+                PreparedStatement pstmt = conn.prepareStatement(CARDS_SQL)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int seen = 0;
+                while (rs.next()) {
+                    if (++seen % RANGE_CARDS == 0) {
+                        boundaries.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(PLAN_SQL)) {
+            conn.setAutoCommit(false);
+            try {
+                String after = null;
+                for (int i = 0; i <= boundaries.size(); i++) {
+                    String through = i < boundaries.size() ? boundaries.get(i) : null;
+                    pstmt.setDate(1, Date.valueOf(date));
+                    pstmt.setInt(2, i);
+                    pstmt.setString(3, after);
+                    pstmt.setString(4, through);
+                    pstmt.addBatch();
+                    after = through;
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private List<Range> pendingRanges() throws SQLException {
+        List<Range> ranges = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(PENDING_RANGES_SQL)) {
+            pstmt.setDate(1, Date.valueOf(date));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ranges.add(new Range(rs.getInt(1), rs.getString(2), rs.getString(3)));
+                }
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Splits the pending ranges in halves until one is left, settles it and
+     * adds up the ledger rows read on the way back.
+     */
+    private final class SettleRanges extends RecursiveTask<Long> {
+        // Tasks never leave the pool, so they are never actually serialized
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Range> ranges;
+        private final int from;
+        private final int to;
+
+        SettleRanges(List<Range> ranges, int from, int to) {
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from == 1) {
+                try {
+                    return settleRange(ranges.get(from));
+                } catch (SQLException e) {
+                    throw new RuntimeException("Settlement failed: " + e.getMessage(), e);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            SettleRanges left = new SettleRanges(ranges, from, mid);
+            left.fork();
+            long right = new SettleRanges(ranges, mid, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * @return ledger rows read
+     */
+    private long settleRange(Range range) throws SQLException {
+        Map<String, long[]> cards = new HashMap<>(); // card -> {stored, opening, ledger sum}, in paisa
+        Map<String, long[]> totals = new HashMap<>(); // type -> {paisa, count}
+        List<String> orphans = new ArrayList<>();
+        long rows = 0;
+
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            conn.setAutoCommit(false); // one snapshot for the balances and both ledger tables
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        eventSourced ? DERIVED_ACCOUNTS_SQL : ACCOUNTS_SQL)) {
+                    bindRange(pstmt, 1, range);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            BigDecimal stored = rs.getBigDecimal(2);
+                            BigDecimal opening = rs.getBigDecimal(3);
+                            cards.put(rs.getString(1), new long[] {
+                                    stored == null ? Long.MIN_VALUE : Money.of(stored).toPaisa(),
+                                    opening == null ? Long.MIN_VALUE : Money.of(opening).toPaisa(), 0 });
+                        }
+                    }
+                }
+                for (String table : new String[] { "transactions", "transactions_archive" }) {
+                    rows += sumLedger(conn, table, range, cards, totals, orphans);
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        record(range, cards, totals, orphans, rows);
+        rowsRead.addAndGet(rows);
+        cardsSettled.addAndGet(cards.size());
+        int done = rangesDone.incrementAndGet();
+        if (done % 50 == 0) {
+            System.out.println("Settled " + done + " range(s), " + cardsSettled.get() + " card(s), "
+                    + rowsRead.get() + " ledger row(s)");
+        }
+        return rows;
+    }
+
+    private long sumLedger(Connection conn, String table, Range range, Map<String, long[]> cards,
+            Map<String, long[]> totals, List<String> orphans) throws SQLException {
+        long rows = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(String.format(LEDGER_SQL, table))) {
+            pstmt.setTimestamp(1, Timestamp.valueOf(date.atStartOfDay()));
+            pstmt.setTimestamp(2, Timestamp.valueOf(date.plusDays(1).atStartOfDay()));
+            bindRange(pstmt, 3, range);
+            pstmt.setFetchSize(Integer.MIN_VALUE); // stream; a range can still hold millions of events
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String card = rs.getString(1);
+                    String type = rs.getString(2);
+                    long paisa = Money.of(rs.getBigDecimal(3)).toPaisa();
+                    long[] sums = cards.get(card);
+                    if (sums == null) {
+                        // Ledger rows without an account are always a discrepancy
+                        sums = new long[] { Long.MIN_VALUE, 0, 0 };
+                        cards.put(card, sums);
+                        orphans.add(card);
+                    }
+                    sums[2] += EventSourcedBalances.isCredit(type) ? paisa : -paisa;
+                    if (rs.getBoolean(4)) {
+                        long[] total = totals.computeIfAbsent(type, t -> new long[2]);
+                        total[0] += paisa;
+                        total[1]++;
+                    }
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Write the range's discrepancies and totals and mark it done, all in one
+     * transaction, so a rerun never sees half a range.
+     */
+    private void record(Range range, Map<String, long[]> cards, Map<String, long[]> totals, List<String> orphans,
+            long rows) throws SQLException {
+        Date day = Date.valueOf(date);
+        int discrepancies = 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement(RECORD_DISCREPANCY_SQL)) {
+                    for (Map.Entry<String, long[]> entry : cards.entrySet()) {
+                        long stored = entry.getValue()[0];
+                        long opening = entry.getValue()[1];
+                        long events = entry.getValue()[2];
+                        boolean orphan = stored == Long.MIN_VALUE;
+                        if (!orphan && opening != Long.MIN_VALUE && stored == opening + events) {
+                            continue;
+                        }
+                        pstmt.setDate(1, day);
+                        pstmt.setString(2, entry.getKey());
+                        pstmt.setBigDecimal(3, orphan ? null : Money.ofPaisa(stored).toBigDecimal());
+                        pstmt.setBigDecimal(4, opening == Long.MIN_VALUE
+                                ? null : Money.ofPaisa(opening + events).toBigDecimal());
+                        pstmt.addBatch();
+                        discrepancies++;
+                    }
+                    pstmt.executeBatch();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(RECORD_TOTAL_SQL)) {
+                    for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+                        pstmt.setDate(1, day);
+                        pstmt.setInt(2, range.number);
+                        pstmt.setString(3, entry.getKey());
+                        pstmt.setBigDecimal(4, Money.ofPaisa(entry.getValue()[0]).toBigDecimal());
+                        pstmt.setLong(5, entry.getValue()[1]);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(COMPLETE_RANGE_SQL)) {
+                    pstmt.setInt(1, cards.size() - orphans.size());
+                    pstmt.setLong(2, rows);
+                    pstmt.setInt(3, discrepancies);
+                    pstmt.setDate(4, day);
+                    pstmt.setInt(5, range.number);
+                    if (pstmt.executeUpdate() == 0) {
+                        throw new SQLException("Range " + range.number + " was settled by another run");
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void bindRange(PreparedStatement pstmt, int first, Range range) throws SQLException {
+        pstmt.setString(first, range.afterCard);
+        pstmt.setString(first + 1, range.afterCard);
+        pstmt.setString(first + 2, range.throughCard);
+        pstmt.setString(first + 3, range.throughCard);
+    }
+
+    /**
+     * Print the date's progress, daily totals per type and the first
+     * discrepancies, from what has been recorded so far.
+     */
+    public void printReport() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(PROGRESS_SQL)) {
+                pstmt.setDate(1, Date.valueOf(date));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    System.out.println("Settlement " + date + ": " + rs.getInt(2) + " of " + rs.getInt(1)
+                            + " range(s) done, " + rs.getLong(3) + " card(s), " + rs.getLong(4)
+                            + " discrepanc(ies)");
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(DAILY_TOTALS_SQL)) {
+                pstmt.setDate(1, Date.valueOf(date));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        System.out.printf("  %-14s %8d txn(s) %18s TK%n", rs.getString(1), rs.getLong(3),
+                                Money.of(rs.getBigDecimal(2)));
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(DISCREPANCIES_SQL)) {
+                pstmt.setDate(1, Date.valueOf(date));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        BigDecimal stored = rs.getBigDecimal(2);
+                        BigDecimal ledger = rs.getBigDecimal(3);
+                        System.out.println("  " + rs.getString(1) + ": stored "
+                                + (stored == null ? "none (no account)" : Money.of(stored))
+                                + ", ledger " + (ledger == null ? "unknown (no opening balance)" : Money.of(ledger)));
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Range {
+        private final int number;
+        private final String afterCard;
+        private final String throughCard;
+
+        Range(int number, String afterCard, String throughCard) {
+            this.number = number;
+            this.afterCard = afterCard;
+            this.throughCard = throughCard;
+        }
+    }
+
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "settle";
+        LocalDate date = LocalDate.now();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean restart = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("--restart".equals(args[i])) {
+                restart = true;
+            } else if (args[i].contains("-")) {
+                date = LocalDate.parse(args[i]);
+            } else {
+                threads = Integer.parseInt(args[i]);
+            }
+        }
+
+        SettlementJob job = new SettlementJob(date, threads);
+        try {
+            switch (command) {
+                case "settle" -> {
+                    if (restart) {
+                        job.restart();
+                    }
+                    long start = System.nanoTime();
+                    long cards = job.settle();
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("Settled %d card(s) and %d ledger row(s) on %d thread(s) in %.1f s "
+                                    + "(%.0f cards/s, %.0f rows/s)%n",
+                            cards, job.rowsRead.get(), threads, seconds, cards / Math.max(seconds, 1e-9),
+                            job.rowsRead.get() / Math.max(seconds, 1e-9));
+                    job.printReport();
+                }
+                case "report" -> job.printReport();
+                default -> System.err.println(
+                        "Usage: SettlementJob settle [date] [threads] [--restart] | report [date]");
+            }
+        } catch (SQLException e) {
+            System.err.println("Settlement failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
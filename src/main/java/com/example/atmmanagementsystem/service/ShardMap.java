@@ -0,0 +1,22 @@
+package com.example.atmmanagementsystem.service;
+
+/**
+ * Decides which shard owns a card. Every account lives entirely on the shard
+ * that owns its card number: the account row, its ledger and its daily usage
+ * counters.
+ */
+public interface ShardMap {
+
+    int shardCount();
+
+    /**
+     * Shard id (index into the shard list) that owns {@code cardNumber}.
+     */
+    int shardFor(String cardNumber);
+
+    /**
+     * Whether the card's data is being moved between shards (or this process
+     * can't currently tell), in which case writes must wait.
+     */
+    boolean isFrozen(String cardNumber);
+}
@@ -0,0 +1,334 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+import com.example.atmmanagementsystem.util.ReplicaRouter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Online resharding for {@link BucketShardMap}: moves buckets of accounts
+ * between shards while the application keeps running.
+ * <p>
+ * A move freezes the bucket (writes to its cards are refused with a "try again"
+ * error; reads keep working) and gives every process a chance to see the
+ * freeze. It then fences the bucket on the source shard: every shard-side
+ * write checks the bucket's {@code bucket_fences} row under a shared lock in
+ * its own transaction, so the fence waits for writes already in flight
+ * (queued in a group commit or retrying included) and refuses later ones
+ * however stale the writer's map is. Only then are the bucket's accounts,
+ * ledger rows (hot and archived) and daily usage counters copied to the
+ * target shard, and the bucket reassigned and unfrozen in one update. Ledger
+ * rows get new ids from the target's hot table, archived ones included;
+ * {@link com.example.atmmanagementsystem.util.TransactionArchiver} archives
+ * those again on its next run. Once every process routes to the new owner,
+ * the rows are deleted from the old shard, which stays fenced. A move that is
+ * interrupted can simply be run again; the copy step first clears anything a
+ * previous attempt left on the target.
+ * <p>
+ * To add a shard, append it to {@code atm.db.shards}, migrate it with
+ * {@code DatabaseInitializer.initialize(hostPort)}, restart the application
+ * and run {@code rebalance}.
+ * <p>
+ * Usage: {@code ShardRebalancer rebalance} or
+ * {@code ShardRebalancer move <bucket> <targetShard>}
+ */
+public class ShardRebalancer {
+
+    private static final int COPY_CHUNK = 500;
+    // Ledger ids are per-shard auto-increment values, so the target assigns new ones
+    private static final Set<String> SKIPPED_COLUMNS = Set.of("transactions.id", "transactions_archive.id");
+
+    private final List<ReplicaRouter> shards;
+
+    public ShardRebalancer(List<ReplicaRouter> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Move buckets one at a time until every shard owns an equal share.
+     *
+     * @return number of buckets moved
+     */
+    public int rebalance() throws SQLException, InterruptedException {
+        int[] owners = loadOwners();
+        List<List<Integer>> owned = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            owned.add(new ArrayList<>());
+        }
+        for (int bucket = 0; bucket < owners.length; bucket++) {
+            owned.get(owners[bucket]).add(bucket);
+        }
+
+        int moved = 0;
+        int fairShare = BucketShardMap.BUCKETS / shards.size();
+        for (int target = 0; target < shards.size(); target++) {
+            while (owned.get(target).size() < fairShare) {
+                int source = largest(owned);
+                if (owned.get(source).size() <= fairShare) {
+                    break;
+                }
+                List<Integer> sourceBuckets = owned.get(source);
+                int bucket = sourceBuckets.remove(sourceBuckets.size() - 1);
+                moveBucket(bucket, target);
+                owned.get(target).add(bucket);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private static int largest(List<List<Integer>> owned) {
+        int largest = 0;
+        for (int i = 1; i < owned.size(); i++) {
+            if (owned.get(i).size() > owned.get(largest).size()) {
+                largest = i;
+            }
+        }
+        return largest;
+    }
+
+    public void moveBucket(int bucket, int target) throws SQLException, InterruptedException {
+        int source = loadOwners()[bucket];
+        if (source == target) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        setFrozen(bucket, true);
+        List<String> cards;
+        try {
+            awaitMapRefresh(); // Not a barrier, just fewer writes waiting on the fence
+            setFenced(shards.get(source), bucket, true);
+            cards = cardsInBucket(shards.get(source), bucket);
+            for (int from = 0; from < cards.size(); from += COPY_CHUNK) {
+                copyChunk(cards.subList(from, Math.min(from + COPY_CHUNK, cards.size())), source, target);
+            }
+            // Left over if the bucket once moved away from the target
+            setFenced(shards.get(target), bucket, false);
+            assign(bucket, target);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                setFenced(shards.get(source), bucket, false);
+            } finally {
+                setFrozen(bucket, false);
+            }
+            throw e;
+        }
+
+        // Readers may still be routing to the old shard until they refresh; the
+        // source stays fenced, so writes routed there are refused, not lost
+        awaitMapRefresh();
+        for (int from = 0; from < cards.size(); from += COPY_CHUNK) {
+            deleteChunk(shards.get(source), cards.subList(from, Math.min(from + COPY_CHUNK, cards.size())));
+        }
+        System.out.println("Moved bucket " + bucket + " (" + cards.size() + " accounts) from shard " + source
+                + " to shard " + target + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static void awaitMapRefresh() throws InterruptedException {
+        Thread.sleep(2 * BucketShardMap.REFRESH_MILLIS);
+    }
+
+    private List<String> cardsInBucket(ReplicaRouter shard, int bucket) throws SQLException {
+        List<String> cards = new ArrayList<>();
+        try (Connection conn = shard.primary();
+                Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery("SELECT card_number FROM accounts")) {
+                while (rs.next()) {
+                    String card = rs.getString(1);
+                    if (BucketShardMap.bucketOf(card) == bucket) {
+                        cards.add(card);
+                    }
+                }
+            }
+        }
+        return cards;
+    }
+
+    private void copyChunk(List<String> cards, int source, int target) throws SQLException {
+        try (Connection from = shards.get(source).primary();
+                Connection to = shards.get(target).primary()) {
+            to.setAutoCommit(false);
+            try {
+                deleteRows(to, cards);
+                // Parent rows first for the ledger's foreign key
+                copyTable(from, to, "accounts", cards);
+                // Archived rows go through the hot table too, so every id comes
+                // from the target's own sequence, above any snapshot's
+                // last_event_id there. Oldest first, so each card's events
+                // keep their order
+                copyTable(from, to, "transactions_archive", "transactions", " ORDER BY id", cards);
+                copyTable(from, to, "transactions", "transactions", " ORDER BY id", cards);
+                copyTable(from, to, "daily_usage", cards);
+                copyTable(from, to, "idempotency_keys", cards);
+                // balance_snapshots isn't copied: the ledger gets new ids on the
+                // target, so balances there derive from the opening balance
+                to.commit();
+            } catch (SQLException | RuntimeException e) {
+                to.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private void deleteChunk(ReplicaRouter shard, List<String> cards) throws SQLException {
+        try (Connection conn = shard.primary()) {
+            conn.setAutoCommit(false);
+            try {
+                deleteRows(conn, cards);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static void deleteRows(Connection conn, List<String> cards) throws SQLException {
+        for (String table : List.of("balance_snapshots", "idempotency_keys", "transactions_archive",
+                "transactions", "daily_usage", "accounts")) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "DELETE FROM " + table + " WHERE card_number IN (" + placeholders(cards.size()) + ")")) {
+                bindAll(pstmt, cards);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Copy every row of {@code table} for the given cards, column by column as
+     * reported by the source, so the tool keeps working as columns are added.
+     */
+    private static void copyTable(Connection from, Connection to, String table, List<String> cards)
+            throws SQLException {
+        copyTable(from, to, table, table, "", cards);
+    }
+
+    /**
+     * Like {@link #copyTable(Connection, Connection, String, List)}, into
+     * {@code into} (which must have the copied columns) in the given order.
+     */
+    private static void copyTable(Connection from, Connection to, String table, String into, String orderBy,
+            List<String> cards) throws SQLException {
+        try (PreparedStatement select = from.prepareStatement(
+                "SELECT * FROM " + table + " WHERE card_number IN (" + placeholders(cards.size()) + ")"
+                        + orderBy)) {
+            bindAll(select, cards);
+            try (ResultSet rs = select.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                List<Integer> columns = new ArrayList<>();
+                List<String> names = new ArrayList<>();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    if (!SKIPPED_COLUMNS.contains(table + "." + meta.getColumnName(i))) {
+                        columns.add(i);
+                        names.add(meta.getColumnName(i));
+                    }
+                }
+                String insert = "INSERT INTO " + into + " (" + String.join(", ", names) + ") VALUES ("
+                        + placeholders(names.size()) + ")";
+                try (PreparedStatement pstmt = to.prepareStatement(insert)) {
+                    while (rs.next()) {
+                        for (int i = 0; i < columns.size(); i++) {
+                            pstmt.setObject(i + 1, rs.getObject(columns.get(i)));
+                        }
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+            }
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static void bindAll(PreparedStatement pstmt, List<String> values) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            pstmt.setString(i + 1, values.get(i));
+        }
+    }
+
+    private static int[] loadOwners() throws SQLException {
+        int[] owners = new int[BucketShardMap.BUCKETS];
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT bucket, shard_id FROM shard_buckets")) {
+            while (rs.next()) {
+                owners[rs.getInt(1)] = rs.getInt(2);
+            }
+        }
+        return owners;
+    }
+
+    private static void setFrozen(int bucket, boolean frozen) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement("UPDATE shard_buckets SET frozen = ? WHERE bucket = ?")) {
+            pstmt.setBoolean(1, frozen);
+            pstmt.setInt(2, bucket);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Set the bucket's fence on one shard. Raising it blocks until every
+     * write holding the fence row's shared lock has committed.
+     */
+    private static void setFenced(ReplicaRouter shard, int bucket, boolean fenced) throws SQLException {
+        try (Connection conn = shard.primary();
+                PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE bucket_fences SET fenced = ? WHERE bucket = ?")) {
+            pstmt.setBoolean(1, fenced);
+            pstmt.setInt(2, bucket);
+            if (pstmt.executeUpdate() == 0) {
+                throw new SQLException("Shard has no fence row for bucket " + bucket + "; is it migrated?");
+            }
+        }
+    }
+
+    private static void assign(int bucket, int shard) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE shard_buckets SET shard_id = ?, frozen = FALSE WHERE bucket = ?")) {
+            pstmt.setInt(1, shard);
+            pstmt.setInt(2, bucket);
+            pstmt.executeUpdate();
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            List<ReplicaRouter> shards = DatabaseConnection.getShardRouters();
+            if (shards.isEmpty()) {
+                System.err.println("No shards configured; set -D" + DatabaseConnection.SHARDS_PROPERTY);
+                return;
+            }
+            ShardRebalancer rebalancer = new ShardRebalancer(shards);
+            String command = args.length > 0 ? args[0] : "rebalance";
+            switch (command) {
+                case "rebalance":
+                    new BucketShardMap(shards.size()); // Seeds the map on first use
+                    System.out.println("Rebalanced: " + rebalancer.rebalance() + " bucket(s) moved");
+                    break;
+                case "move":
+                    rebalancer.moveBucket(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                    break;
+                default:
+                    System.err.println("Usage: ShardRebalancer rebalance | move <bucket> <targetShard>");
+            }
+        } catch (SQLException | InterruptedException e) {
+            System.err.println("Resharding failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
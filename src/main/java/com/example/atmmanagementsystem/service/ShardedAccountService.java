@@ -0,0 +1,345 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.AccountField;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
+import com.example.atmmanagementsystem.util.DatabaseConnection;
+import com.example.atmmanagementsystem.util.ReplicaRouter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * AccountService that spreads accounts over several databases.
+ * <p>
+ * Each account lives on the shard its card number maps to (see
+ * {@link ShardMap}), so every per-card operation touches exactly one shard and
+ * write throughput grows with the number of shards. Lookups by account
+ * number, phone, email or NID go through the {@code account_directory} table on
+ * the default database, whose primary key also enforces their uniqueness
+ * across shards. Listings are gathered from all shards in parallel.
+ * <p>
+ * Shards are configured with {@code -Datm.db.shards=host1:3306,host2:3306}.
+ */
+public class ShardedAccountService implements AccountService {
+
+    private static final String KEY_PHONE = "PHONE";
+    private static final String KEY_EMAIL = "EMAIL";
+    private static final String KEY_NID = "NID";
+    private static final String KEY_ACCOUNT = "ACCOUNT";
+
+    private static final String DIRECTORY_LOOKUP_SQL =
+            "SELECT card_number FROM account_directory WHERE key_type = ? AND key_value = ?";
+
+    private static final String DIRECTORY_INSERT_SQL =
+            "INSERT INTO account_directory (key_type, key_value, card_number) VALUES (?, ?, ?)";
+
+    private static final String DIRECTORY_DELETE_SQL = "DELETE FROM account_directory WHERE card_number = ?";
+
+    private static final int MAX_FROZEN_SKIPS = 3;
+
+    private static ShardedAccountService shared;
+
+    private final List<DatabaseAccountService> shards;
+    private final ShardMap shardMap;
+    private final ExecutorService scatter;
+
+    public ShardedAccountService(List<DatabaseAccountService> shards, ShardMap shardMap) {
+        if (shards.size() != shardMap.shardCount()) {
+            throw new IllegalArgumentException("Shard map expects " + shardMap.shardCount() + " shards, got "
+                    + shards.size());
+        }
+        this.shards = List.copyOf(shards);
+        this.shardMap = shardMap;
+        this.scatter = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread t = new Thread(r, "shard-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Build the service from the shards in {@code atm.db.shards}.
+     */
+    public static ShardedAccountService fromConfig() {
+        try {
+            List<ReplicaRouter> routers = DatabaseConnection.getShardRouters();
+            if (routers.isEmpty()) {
+                throw new IllegalStateException("No shards configured; set -D" + DatabaseConnection.SHARDS_PROPERTY);
+            }
+            List<DatabaseAccountService> shards = new ArrayList<>();
+            for (ReplicaRouter router : routers) {
+                shards.add(new DatabaseAccountService(router));
+            }
+            return new ShardedAccountService(shards, new BucketShardMap(routers.size()));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error while opening shards: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The process-wide instance used by {@link AccountService#getInstance()},
+     * so the shard pools and map are only opened once.
+     */
+    static synchronized ShardedAccountService shared() {
+        if (shared == null) {
+            shared = fromConfig();
+        }
+        return shared;
+    }
+
+    private DatabaseAccountService shardOf(String cardNumber) {
+        return shards.get(shardMap.shardFor(cardNumber));
+    }
+
+    /**
+     * Shard for a write. Refused while the card's bucket is being moved, since
+     * the write could land on the old shard after it was copied.
+     */
+    private DatabaseAccountService writableShardOf(String cardNumber) {
+        if (shardMap.isFrozen(cardNumber)) {
+            throw new IllegalStateException("This account is being migrated. Please try again in a few seconds.");
+        }
+        return shardOf(cardNumber);
+    }
+
+    @Override
+    public Account createAccount(String name, String phone, Money initialDeposit,
+            String email, String gender, String profession, String nationality, String nid, String address) {
+        // The constructor validates every field
+        Account draft = new Account(name, phone, initialDeposit, email, gender, profession, nationality, nid,
+                address);
+
+        String cardNumber = null;
+        boolean reserved = false;
+        try {
+            cardNumber = DatabaseAccountService.generateUniqueCardNumber();
+            // Skip numbers whose bucket is mid-move rather than failing the signup
+            for (int attempt = 1; shardMap.isFrozen(cardNumber) && attempt < MAX_FROZEN_SKIPS; attempt++) {
+                cardNumber = DatabaseAccountService.generateUniqueCardNumber();
+            }
+            draft.setAccountNumber(DatabaseAccountService.generateUniqueAccountNumber());
+            draft.setCardNumber(cardNumber);
+
+            reserveKeys(draft);
+            reserved = true;
+            return writableShardOf(cardNumber).createPrepared(draft);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            if (reserved) {
+                releaseKeys(cardNumber);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Claim the account's unique keys in the global directory in one
+     * transaction; a duplicate key means another account already has it.
+     */
+    private void reserveKeys(Account draft) throws SQLException {
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put(KEY_PHONE, draft.getPhoneNumber());
+        if (draft.getEmail() != null && !draft.getEmail().isEmpty()) {
+            keys.put(KEY_EMAIL, draft.getEmail());
+        }
+        if (draft.getNid() != null && !draft.getNid().isEmpty()) {
+            keys.put(KEY_NID, draft.getNid());
+        }
+        keys.put(KEY_ACCOUNT, draft.getAccountNumber());
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(DIRECTORY_INSERT_SQL)) {
+                for (Map.Entry<String, String> key : keys.entrySet()) {
+                    pstmt.setString(1, key.getKey());
+                    pstmt.setString(2, key.getValue());
+                    pstmt.setString(3, draft.getCardNumber());
+                    try {
+                        pstmt.executeUpdate();
+                    } catch (SQLIntegrityConstraintViolationException e) {
+                        throw new IllegalArgumentException(duplicateMessage(key.getKey()));
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static String duplicateMessage(String keyType) {
+        switch (keyType) {
+            case KEY_PHONE:
+                return "An account with this phone number already exists";
+            case KEY_EMAIL:
+                return "An account with this email already exists";
+            case KEY_NID:
+                return "An account with this NID already exists";
+            default:
+                return "Account number collision, please retry";
+        }
+    }
+
+    private void releaseKeys(String cardNumber) {
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(DIRECTORY_DELETE_SQL)) {
+            pstmt.setString(1, cardNumber);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Optional<String> cardFor(String keyType, String keyValue) {
+        if (keyValue == null) {
+            return Optional.empty();
+        }
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(DIRECTORY_LOOKUP_SQL)) {
+            pstmt.setString(1, keyType);
+            pstmt.setString(2, keyValue);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? Optional.of(rs.getString(1)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<Account> findByAccountNumber(String accountNumber) {
+        return cardFor(KEY_ACCOUNT, accountNumber).flatMap(this::findByCardNumber);
+    }
+
+    @Override
+    public Optional<Account> findByCardNumber(String cardNumber) {
+        return shardOf(cardNumber).findByCardNumber(cardNumber);
+    }
+
+    @Override
+    public Optional<Account> findByPhone(String phone) {
+        if (phone == null)
+            return Optional.empty();
+        return cardFor(KEY_PHONE, phone.replaceAll("\\D", "")).flatMap(this::findByCardNumber);
+    }
+
+    @Override
+    public Optional<Account> findByEmail(String email) {
+        return cardFor(KEY_EMAIL, email).flatMap(this::findByCardNumber);
+    }
+
+    @Override
+    public Optional<Account> findByNid(String nid) {
+        return cardFor(KEY_NID, nid).flatMap(this::findByCardNumber);
+    }
+
+    /**
+     * Scatter-gather: every shard is listed in parallel and the results are
+     * concatenated in shard order.
+     */
+    @Override
+    public List<Account> listAccounts() {
+        List<CompletableFuture<List<Account>>> parts = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(shard::listAccounts, scatter))
+                .collect(Collectors.toList());
+        List<Account> accounts = new ArrayList<>();
+        for (CompletableFuture<List<Account>> part : parts) {
+            accounts.addAll(part.join());
+        }
+        return accounts;
+    }
+
+    /**
+     * Streams shard after shard, so only one shard's cursor is open at a time.
+     */
+    @Override
+    public Stream<Account> streamAccounts(Set<AccountField> fields) {
+        return shards.stream().flatMap(shard -> shard.streamAccounts(fields));
+    }
+
+    @Override
+    public void blockAccount(String cardNumber, String nidProof) {
+        writableShardOf(cardNumber).blockAccount(cardNumber, nidProof);
+    }
+
+    @Override
+    public void deposit(String cardNumber, Money amount) {
+        writableShardOf(cardNumber).deposit(cardNumber, amount);
+    }
+
+    @Override
+    public void withdraw(String cardNumber, Money amount) {
+        writableShardOf(cardNumber).withdraw(cardNumber, amount);
+    }
+
+    @Override
+    public void deposit(String cardNumber, Money amount, String idempotencyKey) {
+        writableShardOf(cardNumber).deposit(cardNumber, amount, idempotencyKey);
+    }
+
+    @Override
+    public void withdraw(String cardNumber, Money amount, String idempotencyKey) {
+        writableShardOf(cardNumber).withdraw(cardNumber, amount, idempotencyKey);
+    }
+
+    @Override
+    public String resetPin(String cardNumber, String nidProof) {
+        return writableShardOf(cardNumber).resetPin(cardNumber, nidProof);
+    }
+
+    @Override
+    public void updatePin(String cardNumber, String newPin) {
+        writableShardOf(cardNumber).updatePin(cardNumber, newPin);
+    }
+
+    @Override
+    public void unblockAccount(String cardNumber) {
+        writableShardOf(cardNumber).unblockAccount(cardNumber);
+    }
+
+    @Override
+    public List<Transaction> getTransactions(String cardNumber) {
+        return shardOf(cardNumber).getTransactions(cardNumber);
+    }
+
+    @Override
+    public TransactionPage getTransactionPage(String cardNumber, String cursor, int pageSize) {
+        return shardOf(cardNumber).getTransactionPage(cardNumber, cursor, pageSize);
+    }
+
+    /**
+     * See {@link DatabaseAccountService#getTransactionPage(String, Timestamp, Timestamp, String, int)}.
+     */
+    public TransactionPage getTransactionPage(String cardNumber, Timestamp from, Timestamp to, String cursor,
+            int pageSize) {
+        return shardOf(cardNumber).getTransactionPage(cardNumber, from, to, cursor, pageSize);
+    }
+
+    @Override
+    public Stream<Transaction> streamTransactions(String cardNumber) {
+        return shardOf(cardNumber).streamTransactions(cardNumber);
+    }
+}
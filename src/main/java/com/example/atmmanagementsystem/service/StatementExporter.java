@@ -0,0 +1,504 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams transactions into a statement file without holding them in memory.
+ * <p>
+ * Rows come from a lazy stream, either the database cursor
+ * ({@link #fromDatabase}) or the API's pages ({@link #fromApi}). Each row is
+ * encoded straight into a pooled direct buffer, and the buffer is written to
+ * a {@link FileChannel} whenever it fills. With gzip on, a buffer is
+ * deflated into a second pooled buffer first. Heap use stays flat however
+ * many rows are exported.
+ * <p>
+ * Two formats:
+ * <ul>
+ * <li>CSV: {@code id,card_number,type,amount,timestamp} with a header
+ * line, amounts in two-decimal taka, timestamps as
+ * {@code yyyy-MM-dd HH:mm:ss}.</li>
+ * <li>Binary: the magic {@code ATMS} and a version byte, then one record
+ * per row. A record is a big-endian unsigned short length followed by that
+ * many bytes: id (int), timestamp in epoch millis (long, -1 if none),
+ * amount in paisa (long), then the card number and the type, each as a
+ * length byte and ASCII. The length lets a reader skip fields added in
+ * later versions. {@link #readBinary} reads it back.</li>
+ * </ul>
+ * <p>
+ * Usage: {@code StatementExporter csv|binary <file> [--gzip] [--card number]
+ * [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--api]} or
+ * {@code StatementExporter verify <file>}. The {@code --to} date is
+ * inclusive. Without a card, the whole range of the ledger is exported; the
+ * API only serves one card at a time.
+ */
+public final class StatementExporter {
+
+    public enum Format {
+        CSV, BINARY
+    }
+
+    static final int BUFFER_SIZE = Integer.getInteger("atm.export.bufferKb", 256) * 1024;
+    private static final int POOLED_BUFFERS = 8;
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE, POOLED_BUFFERS);
+    // Statements compress well even at the fastest level, which keeps gzip off the critical path
+    static final int GZIP_LEVEL = Integer.getInteger("atm.export.gzipLevel", Deflater.BEST_SPEED);
+
+    static final int MAGIC = 0x41544D53; // "ATMS"
+    static final byte VERSION = 1;
+
+    // Card numbers and types are short codes; capping them bounds a record,
+    // so a buffer with MAX_RECORD bytes left always fits the next row
+    private static final int MAX_TEXT = 64;
+    private static final int MAX_RECORD = 512;
+
+    private static final int API_PAGE_SIZE = 1_000;
+
+    private static final byte[] CSV_HEADER =
+            "id,card_number,type,amount,timestamp\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final Format format;
+    private final boolean gzip;
+    private final byte[] digits = new byte[20];
+
+    public StatementExporter(Format format, boolean gzip) {
+        this.format = format;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Stream the database's rows for a card (oldest first) or for every card.
+     *
+     * @param cardNumber null for every card
+     * @param from       first day, or null for no lower bound
+     * @param to         last day (inclusive), or null for no upper bound
+     */
+    public static Stream<Transaction> fromDatabase(DatabaseAccountService service, String cardNumber,
+            LocalDate from, LocalDate to) {
+        return service.streamTransactions(cardNumber,
+                from == null ? null : Timestamp.valueOf(from.atStartOfDay()),
+                to == null ? null : Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+    }
+
+    /**
+     * Page through a card's rows over the API, newest first, holding one page
+     * at a time. The dates are passed to the API's own filters.
+     */
+    public static Stream<Transaction> fromApi(ApiAccountService service, String cardNumber,
+            LocalDate from, LocalDate to) {
+        String dateFrom = from == null ? null : from.toString();
+        String dateTo = to == null ? null : to.toString();
+        return Stream.iterate(
+                service.getTransactionPage(cardNumber, null, dateFrom, dateTo, null, API_PAGE_SIZE),
+                page -> page != null,
+                page -> page.hasMore()
+                        ? service.getTransactionPage(cardNumber, null, dateFrom, dateTo, page.getNextCursor(),
+                                API_PAGE_SIZE)
+                        : null)
+                .flatMap(page -> page.getTransactions().stream());
+    }
+
+    /**
+     * Write every row of {@code rows} to {@code target}, replacing it, and
+     * close the stream. A failed export deletes the partial file.
+     */
+    public ExportStats export(Stream<Transaction> rows, Path target) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        ByteBuffer out = BUFFERS.acquire();
+        Sink sink = null;
+        try (rows; FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            sink = new Sink(channel, gzip);
+            if (format == Format.CSV) {
+                out.put(CSV_HEADER);
+            } else {
+                out.putInt(MAGIC).put(VERSION);
+            }
+
+            Iterator<Transaction> it = rows.iterator();
+            while (it.hasNext()) {
+                if (out.remaining() < MAX_RECORD) {
+                    sink.write(out.flip());
+                    out.clear();
+                }
+                if (format == Format.CSV) {
+                    putCsv(out, it.next());
+                } else {
+                    putRecord(out, it.next());
+                }
+                count++;
+            }
+            sink.write(out.flip());
+            sink.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        } finally {
+            if (sink != null) {
+                sink.release();
+            }
+            BUFFERS.release(out);
+        }
+        return new ExportStats(count, Files.size(target), System.nanoTime() - start);
+    }
+
+    private void putCsv(ByteBuffer out, Transaction t) {
+        putDigits(out, t.getId());
+        out.put((byte) ',');
+        putText(out, t.getCardNumber());
+        out.put((byte) ',');
+        putText(out, t.getType());
+        out.put((byte) ',');
+        long paisa = t.getAmount() == null ? 0 : t.getAmount().toPaisa();
+        if (paisa < 0) {
+            out.put((byte) '-');
+            paisa = -paisa;
+        }
+        putDigits(out, paisa / 100);
+        out.put((byte) '.');
+        out.put((byte) ('0' + paisa % 100 / 10));
+        out.put((byte) ('0' + paisa % 10));
+        out.put((byte) ',');
+        if (t.getTimestamp() != null) {
+            LocalDateTime time = t.getTimestamp().toLocalDateTime();
+            putPadded(out, time.getYear(), 4);
+            out.put((byte) '-');
+            putPadded(out, time.getMonthValue(), 2);
+            out.put((byte) '-');
+            putPadded(out, time.getDayOfMonth(), 2);
+            out.put((byte) ' ');
+            putPadded(out, time.getHour(), 2);
+            out.put((byte) ':');
+            putPadded(out, time.getMinute(), 2);
+            out.put((byte) ':');
+            putPadded(out, time.getSecond(), 2);
+        }
+        out.put((byte) '\n');
+    }
+
+    private static void putRecord(ByteBuffer out, Transaction t) {
+        int lengthAt = out.position();
+        out.putShort((short) 0); // patched below
+        out.putInt(t.getId());
+        out.putLong(t.getTimestamp() == null ? -1 : t.getTimestamp().getTime());
+        out.putLong(t.getAmount() == null ? 0 : t.getAmount().toPaisa());
+        putShortText(out, t.getCardNumber());
+        putShortText(out, t.getType());
+        out.putShort(lengthAt, (short) (out.position() - lengthAt - Short.BYTES));
+    }
+
+    private static void putShortText(ByteBuffer out, String text) {
+        int lengthAt = out.position();
+        out.put((byte) 0);
+        putText(out, text);
+        out.put(lengthAt, (byte) (out.position() - lengthAt - 1));
+    }
+
+    /**
+     * ASCII only: card numbers and types never leave it, anything else is
+     * written as {@code ?}. CSV special characters are dropped rather than
+     * quoted for the same reason.
+     */
+    private static void putText(ByteBuffer out, String text) {
+        if (text == null) {
+            return;
+        }
+        if (text.length() > MAX_TEXT) {
+            throw new IllegalArgumentException("Value too long to export: " + text);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                continue;
+            }
+            out.put((byte) (c < 0x80 ? c : '?'));
+        }
+    }
+
+    private void putDigits(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        out.put(digits, i, digits.length - i);
+    }
+
+    private static void putPadded(ByteBuffer out, int value, int width) {
+        for (int divisor = width == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Read a binary statement back, gzipped or not, record by record.
+     *
+     * @return rows read
+     * @throws IOException if the file isn't a binary statement or is cut short
+     */
+    public static long readBinary(Path source, Consumer<Transaction> action) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(source), BUFFER_SIZE)) {
+            raw.mark(2);
+            boolean gzipped = raw.read() == 0x1f && raw.read() == 0x8b;
+            raw.reset();
+            DataInputStream in = new DataInputStream(gzipped
+                    ? new BufferedInputStream(new GZIPInputStream(raw, BUFFER_SIZE), BUFFER_SIZE) : raw);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary statement: " + source);
+            }
+            int version = in.readUnsignedByte();
+            if (version > VERSION) {
+                throw new IOException("Unsupported statement version " + version + ": " + source);
+            }
+
+            byte[] record = new byte[MAX_RECORD];
+            long count = 0;
+            while (true) {
+                int length;
+                try {
+                    length = in.readUnsignedShort();
+                } catch (EOFException e) {
+                    return count;
+                }
+                if (length > record.length) {
+                    record = new byte[length];
+                }
+                in.readFully(record, 0, length);
+                ByteBuffer fields = ByteBuffer.wrap(record, 0, length);
+                int id = fields.getInt();
+                long millis = fields.getLong();
+                long paisa = fields.getLong();
+                String card = getShortText(fields);
+                String type = getShortText(fields);
+                action.accept(new Transaction(id, card, Money.ofPaisa(paisa), type,
+                        millis == -1 ? null : new Timestamp(millis)));
+                count++;
+            }
+        }
+    }
+
+    private static String getShortText(ByteBuffer fields) {
+        int length = Byte.toUnsignedInt(fields.get());
+        String text = new String(fields.array(), fields.position(), length, StandardCharsets.US_ASCII);
+        fields.position(fields.position() + length);
+        return text;
+    }
+
+    /**
+     * Writes encoded buffers to the channel, through a raw deflater and a
+     * gzip header and trailer when compressing.
+     */
+    private static final class Sink {
+        private final FileChannel channel;
+        private final Deflater deflater;
+        private final CRC32 crc;
+        private final ByteBuffer compressed;
+
+        Sink(FileChannel channel, boolean gzip) throws IOException {
+            this.channel = channel;
+            if (gzip) {
+                deflater = new Deflater(GZIP_LEVEL, true);
+                crc = new CRC32();
+                compressed = BUFFERS.acquire();
+                compressed.put(GZIP_HEADER);
+            } else {
+                deflater = null;
+                crc = null;
+                compressed = null;
+            }
+        }
+
+        void write(ByteBuffer data) throws IOException {
+            if (deflater == null) {
+                writeFully(data);
+                return;
+            }
+            int start = data.position();
+            crc.update(data);
+            data.position(start);
+            deflater.setInput(data);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        void finish() throws IOException {
+            if (deflater == null) {
+                return;
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (compressed.remaining() < 8) {
+                writeFully(compressed.flip());
+                compressed.clear();
+            }
+            putIntLittleEndian(compressed, (int) crc.getValue());
+            putIntLittleEndian(compressed, (int) deflater.getBytesRead()); // ISIZE is modulo 2^32
+            writeFully(compressed.flip());
+            compressed.clear();
+        }
+
+        void release() {
+            if (deflater != null) {
+                deflater.end();
+                BUFFERS.release(compressed);
+            }
+        }
+
+        private void deflate() throws IOException {
+            deflater.deflate(compressed);
+            if (!compressed.hasRemaining()) {
+                writeFully(compressed.flip());
+                compressed.clear();
+            }
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        private static void putIntLittleEndian(ByteBuffer out, int value) {
+            out.put((byte) value).put((byte) (value >>> 8)).put((byte) (value >>> 16)).put((byte) (value >>> 24));
+        }
+    }
+
+    /**
+     * Direct buffers are expensive to allocate and only freed by the GC, so
+     * exports borrow them from a small pool. Buffers beyond what the pool
+     * holds are simply dropped when returned.
+     */
+    private static final class BufferPool {
+        private final int size;
+        private final ArrayBlockingQueue<ByteBuffer> free;
+
+        BufferPool(int size, int capacity) {
+            this.size = size;
+            this.free = new ArrayBlockingQueue<>(capacity);
+        }
+
+        ByteBuffer acquire() {
+            ByteBuffer buffer = free.poll();
+            return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(size);
+        }
+
+        void release(ByteBuffer buffer) {
+            free.offer(buffer);
+        }
+    }
+
+    public static final class ExportStats {
+        private final long rows;
+        private final long bytes;
+        private final long nanos;
+
+        ExportStats(long rows, long bytes, long nanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        /** Rows written. */
+        public long getRows() {
+            return rows;
+        }
+
+        /** Size of the written file. */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** Wall time of the export, reading included. */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getRowsPerSecond() {
+            return rows / Math.max(nanos / 1e9, 1e-9);
+        }
+
+        @Override
+        public String toString() {
+            return "ExportStats{rows=" + rows + ", bytes=" + bytes + ", nanos=" + nanos + "}";
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: StatementExporter csv|binary <file> [--gzip] [--card number] "
+                    + "[--from yyyy-MM-dd] [--to yyyy-MM-dd] [--api] | verify <file>");
+            return;
+        }
+        Path file = Path.of(args[1]);
+
+        if ("verify".equals(args[0])) {
+            long start = System.nanoTime();
+            long[] paisa = new long[1];
+            long rows = readBinary(file, t -> paisa[0] += t.getAmount().toPaisa());
+            System.out.printf("Read %d row(s), %s TK in total, in %.2f s%n",
+                    rows, Money.ofPaisa(paisa[0]), (System.nanoTime() - start) / 1e9);
+            return;
+        }
+
+        Format format = Format.valueOf(args[0].toUpperCase());
+        boolean gzip = false;
+        boolean api = false;
+        String card = null;
+        LocalDate from = null;
+        LocalDate to = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--gzip" -> gzip = true;
+                case "--api" -> api = true;
+                case "--card" -> card = args[++i];
+                case "--from" -> from = LocalDate.parse(args[++i]);
+                case "--to" -> to = LocalDate.parse(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (api && card == null) {
+            throw new IllegalArgumentException("The API exports one card at a time; pass --card");
+        }
+
+        Stream<Transaction> rows = api
+                ? fromApi(new ApiAccountService(), card, from, to)
+                : fromDatabase(new DatabaseAccountService(), card, from, to);
+        ExportStats stats = new StatementExporter(format, gzip).export(rows, file);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("Exported %d row(s), %.1f MB, in %.2f s (%.0f rows/s); heap in use %d MB%n",
+                stats.getRows(), stats.getBytes() / 1e6, stats.getNanos() / 1e9, stats.getRowsPerSecond(),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+}
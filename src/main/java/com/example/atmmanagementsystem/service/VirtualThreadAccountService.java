@@ -0,0 +1,172 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import com.example.atmmanagementsystem.model.TransactionPage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AsyncAccountService} over a blocking {@link AccountService}, usually
+ * {@link DatabaseAccountService}: every call runs on its own virtual thread,
+ * so thousands of calls can wait on JDBC at once without a platform thread
+ * each. The connection pool still bounds how many talk to the database at
+ * the same time; the rest wait for a connection on their virtual threads.
+ * <p>
+ * Completing a future early interrupts its thread. A virtual thread blocked
+ * on a socket is woken by closing the socket, so the pool sees a broken
+ * connection and replaces it.
+ */
+public class VirtualThreadAccountService implements AsyncAccountService, AutoCloseable {
+
+    public static final Duration DEFAULT_TIMEOUT =
+            Duration.ofSeconds(Long.getLong("atm.async.timeoutSeconds", 30));
+
+    private final AccountService delegate;
+    private final Duration timeout;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("account-call-", 0).factory());
+
+    public VirtualThreadAccountService(AccountService delegate) {
+        this(delegate, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param timeout how long a call may take before its future fails with a
+     *                {@link java.util.concurrent.TimeoutException} and the call is interrupted
+     */
+    public VirtualThreadAccountService(AccountService delegate, Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.delegate = delegate;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Run {@code call} on a virtual thread. The returned future times out
+     * after the configured timeout, and completing it early from outside
+     * interrupts the call.
+     */
+    protected <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        // A no-op once the call has finished by itself
+        future.whenComplete((value, error) -> task.cancel(true));
+        return withTimeout(future);
+    }
+
+    /**
+     * Apply the configured timeout to a future produced some other way.
+     */
+    protected <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future) {
+        return future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    protected CompletableFuture<Void> run(Runnable call) {
+        return submit(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Account> createAccount(String name, String phone, Money initialDeposit,
+            String email, String gender, String profession, String nationality, String nid, String address) {
+        return submit(() -> delegate.createAccount(name, phone, initialDeposit, email, gender, profession,
+                nationality, nid, address));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Account>> findByAccountNumber(String accountNumber) {
+        return submit(() -> delegate.findByAccountNumber(accountNumber));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Account>> findByCardNumber(String cardNumber) {
+        return submit(() -> delegate.findByCardNumber(cardNumber));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Account>> findByPhone(String phone) {
+        return submit(() -> delegate.findByPhone(phone));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Account>> findByEmail(String email) {
+        return submit(() -> delegate.findByEmail(email));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Account>> findByNid(String nid) {
+        return submit(() -> delegate.findByNid(nid));
+    }
+
+    @Override
+    public CompletableFuture<List<Account>> listAccounts() {
+        return submit(delegate::listAccounts);
+    }
+
+    @Override
+    public CompletableFuture<Void> blockAccount(String cardNumber, String nidProof) {
+        return run(() -> delegate.blockAccount(cardNumber, nidProof));
+    }
+
+    @Override
+    public CompletableFuture<Void> deposit(String cardNumber, Money amount, String idempotencyKey) {
+        return run(() -> delegate.deposit(cardNumber, amount, idempotencyKey));
+    }
+
+    @Override
+    public CompletableFuture<Void> withdraw(String cardNumber, Money amount, String idempotencyKey) {
+        return run(() -> delegate.withdraw(cardNumber, amount, idempotencyKey));
+    }
+
+    @Override
+    public CompletableFuture<String> resetPin(String cardNumber, String nidProof) {
+        return submit(() -> delegate.resetPin(cardNumber, nidProof));
+    }
+
+    @Override
+    public CompletableFuture<Void> updatePin(String cardNumber, String newPin) {
+        return run(() -> delegate.updatePin(cardNumber, newPin));
+    }
+
+    @Override
+    public CompletableFuture<Void> unblockAccount(String cardNumber) {
+        return run(() -> delegate.unblockAccount(cardNumber));
+    }
+
+    @Override
+    public CompletableFuture<List<Transaction>> getTransactions(String cardNumber) {
+        return submit(() -> delegate.getTransactions(cardNumber));
+    }
+
+    @Override
+    public CompletableFuture<TransactionPage> getTransactionPage(String cardNumber, String cursor, int pageSize) {
+        return submit(() -> delegate.getTransactionPage(cardNumber, cursor, pageSize));
+    }
+
+    /**
+     * Interrupt calls still running and stop accepting new ones.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.atmmanagementsystem.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded JDBC connection pool.
+ * <p>
+ * Idle connections sit in a lock-free deque (most recently returned first, so
+ * warm connections are reused) and a semaphore caps the number of connections
+ * handed out at once. Connections that sat idle for a while are validated
+ * before being handed out, and a background thread closes connections that
+ * have been idle longer than the idle timeout.
+ * <p>
+ * Callers get a proxy whose {@code close()} returns the physical connection to
+ * the pool, so the usual try-with-resources pattern works unchanged. A
+ * connection returned with auto-commit switched off is rolled back and reset
+ * before anyone else can borrow it.
+ * <p>
+ * {@code prepareStatement(String)} on a pooled connection is served from a
+ * per-connection {@link StatementCache}, so fixed queries are only prepared
+ * once per physical connection. SQL built on the fly (IN lists sized to the
+ * input, and the like) should use
+ * {@code prepareStatement(sql, TYPE_FORWARD_ONLY, CONCUR_READ_ONLY)} instead,
+ * which is never cached and so can't push the fixed queries out.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, String user, String password, int maxSize,
+            long borrowTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis, int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout for one to become
+     * free. Closing the returned connection hands it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(url, user, password));
+                open.incrementAndGet();
+            }
+            active.incrementAndGet();
+            borrowCount.increment();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Pops idle connections until one passes validation. Connections that were
+     * used recently are trusted without a round-trip to the server.
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long idleFor = System.currentTimeMillis() - pooled.lastUsed;
+            if (idleFor < validationIntervalMillis || isUsable(pooled.physical)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        boolean healthy = resetState(pooled.physical);
+        if (healthy && !closed) {
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            discard(pooled);
+        }
+        permits.release();
+    }
+
+    /**
+     * Undo anything a caller left behind so the next borrower starts from a
+     * clean auto-commit connection.
+     */
+    private boolean resetState(Connection conn) {
+        try {
+            if (conn.isClosed()) {
+                return false;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        open.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Connection is being thrown away anyway
+        }
+    }
+
+    /**
+     * Close connections that have been idle longer than the idle timeout. The
+     * oldest connections sit at the tail of the deque.
+     */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        PooledConnection pooled;
+        while ((pooled = idle.pollLast()) != null) {
+            if (pooled.lastUsed > cutoff) {
+                idle.offerLast(pooled);
+                break;
+            }
+            discard(pooled);
+            evictedCount.increment();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.add(nanos);
+        long prev;
+        while (nanos > (prev = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(prev, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public PoolStats getStats() {
+        long borrows = borrowCount.sum();
+        long waitNanos = totalWaitNanos.sum();
+        return new PoolStats(maxSize, active.get(), idle.size(), open.get(),
+                permits.getQueueLength(), borrows,
+                borrows == 0 ? 0 : waitNanos / borrows, maxWaitNanos.get(), evictedCount.sum(),
+                statementHits.sum(), statementMisses.sum(), statementEvictions.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool. Each borrow gets a fresh proxy
+     * so a stale reference kept by an earlier borrower can't close or use the
+     * connection after it went back to the pool.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new StatementCache(physical, statementCacheSize,
+                    statementHits, statementMisses, statementEvictions);
+        }
+
+        Connection lease() {
+            AtomicBoolean returned = new AtomicBoolean(false);
+            InvocationHandler handler = (proxy, method, args) -> invoke(proxy, returned, method, args);
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+        }
+
+        private Object invoke(Object proxy, AtomicBoolean returned, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + physical + "]";
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return statements.prepare((String) args[0]);
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Point-in-time pool metrics.
+     */
+    public static final class PoolStats {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final int open;
+        private final int waiting;
+        private final long borrowCount;
+        private final long averageWaitNanos;
+        private final long maxWaitNanos;
+        private final long evictedCount;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long statementCacheEvictions;
+
+        PoolStats(int maxSize, int active, int idle, int open, int waiting, long borrowCount,
+                long averageWaitNanos, long maxWaitNanos, long evictedCount,
+                long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.open = open;
+            this.waiting = waiting;
+            this.borrowCount = borrowCount;
+            this.averageWaitNanos = averageWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.evictedCount = evictedCount;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+
+        public int getMaxSize() { return maxSize; }
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getOpen() { return open; }
+        public int getWaiting() { return waiting; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getAverageWaitNanos() { return averageWaitNanos; }
+        public long getMaxWaitNanos() { return maxWaitNanos; }
+        public long getEvictedCount() { return evictedCount; }
+        public long getStatementCacheHits() { return statementCacheHits; }
+        public long getStatementCacheMisses() { return statementCacheMisses; }
+        public long getStatementCacheEvictions() { return statementCacheEvictions; }
+
+        public double getStatementCacheHitRatio() {
+            long lookups = statementCacheHits + statementCacheMisses;
+            return lookups == 0 ? 0.0 : (double) statementCacheHits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolStats{" +
+                    "active=" + active +
+                    ", idle=" + idle +
+                    ", open=" + open + "/" + maxSize +
+                    ", waiting=" + waiting +
+                    ", borrows=" + borrowCount +
+                    ", avgWaitMicros=" + averageWaitNanos / 1_000 +
+                    ", maxWaitMicros=" + maxWaitNanos / 1_000 +
+                    ", evicted=" + evictedCount +
+                    ", stmtHits=" + statementCacheHits +
+                    ", stmtMisses=" + statementCacheMisses +
+                    ", stmtEvictions=" + statementCacheEvictions +
+                    '}';
+        }
+    }
+}
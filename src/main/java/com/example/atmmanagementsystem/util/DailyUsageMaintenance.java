@@ -0,0 +1,86 @@
+package com.example.atmmanagementsystem.util;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Maintenance for the daily_usage counters that back the daily limits.
+ * <p>
+ * Counters roll over on their own: each day gets a fresh row the first time a
+ * card transacts, so only today's rows are ever read. This tool rebuilds
+ * counters from the ledger (for data written before the table existed, or
+ * after manual ledger fixes) and purges rows for days that no longer matter.
+ * <p>
+ * Usage: {@code DailyUsageMaintenance backfill [days]} or
+ * {@code DailyUsageMaintenance purge [keepDays]}.
+ */
+public class DailyUsageMaintenance {
+
+    private static final String BACKFILL_SQL =
+            "INSERT INTO daily_usage (card_number, usage_date, transaction_type, total_amount, txn_count) "
+                    + "SELECT card_number, DATE(timestamp), transaction_type, SUM(amount), COUNT(*) "
+                    + "FROM transactions WHERE timestamp >= ? "
+                    + "GROUP BY card_number, DATE(timestamp), transaction_type "
+                    + "ON DUPLICATE KEY UPDATE total_amount = VALUES(total_amount), txn_count = VALUES(txn_count)";
+
+    private static final String PURGE_SQL = "DELETE FROM daily_usage WHERE usage_date < ?";
+
+    private DailyUsageMaintenance() {
+    }
+
+    /**
+     * Recompute counters from the ledger for every day from {@code from} up to
+     * today. Existing counters for those days are overwritten, so run it while
+     * no deposits or withdrawals are in flight.
+     *
+     * @return number of counter rows written
+     */
+    public static int backfill(LocalDate from) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(BACKFILL_SQL)) {
+            pstmt.setDate(1, Date.valueOf(from));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete counters for days before {@code before}. Limits only ever look at
+     * today, so anything older is safe to drop.
+     *
+     * @return number of counter rows deleted
+     */
+    public static int purgeBefore(LocalDate before) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(PURGE_SQL)) {
+            pstmt.setDate(1, Date.valueOf(before));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "backfill";
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        LocalDate today = LocalDate.now();
+
+        try {
+            switch (command) {
+                case "backfill":
+                    int written = backfill(today.minusDays(days - 1L));
+                    System.out.println("Backfilled daily usage for the last " + days + " day(s): " + written + " rows");
+                    break;
+                case "purge":
+                    int deleted = purgeBefore(today.minusDays(days - 1L));
+                    System.out.println("Purged daily usage older than " + days + " day(s): " + deleted + " rows");
+                    break;
+                default:
+                    System.err.println("Usage: DailyUsageMaintenance backfill|purge [days]");
+            }
+        } catch (SQLException e) {
+            System.err.println("Daily usage maintenance failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
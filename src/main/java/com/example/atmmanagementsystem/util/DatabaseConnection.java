@@ -1,35 +1,124 @@
 package com.example.atmmanagementsystem.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * @deprecated This class is no longer used. The application now uses the 
- * backend REST API instead of direct database connections.
- * Kept for backward compatibility if needed.
+ * Entry point for direct database access used by DatabaseAccountService.
+ * Every call to {@link #getConnection()} borrows its own connection from a
+ * shared pool; closing it returns it to the pool.
+ * <p>
+ * Read replicas are listed as {@code host:port} pairs in the
+ * {@code atm.db.replicas} system property. {@link #getReadConnection()} then
+ * serves lag-tolerant reads from them (see {@link ReplicaRouter}); without
+ * replicas it is the same as {@link #getConnection()}.
  */
-@Deprecated
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/bangla_bank";
+    // rewriteBatchedStatements turns JDBC batches into multi-row INSERTs;
+    // useServerPrepStmts makes the server parse each cached statement only once
+    private static final String URL_PREFIX = "jdbc:mysql://";
+    private static final String URL_SUFFIX = "/bangla_bank?rewriteBatchedStatements=true&useServerPrepStmts=true";
+    private static final String URL = URL_PREFIX + "localhost:3306" + URL_SUFFIX;
     private static final String USER = "root";
     private static final String PASSWORD = ""; // Default XAMPP password is empty
 
-    private static Connection connection;
+    // Pool tuning
+    public static final int MAX_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    public static final long BORROW_TIMEOUT_MILLIS = 10_000;
+    public static final long IDLE_TIMEOUT_MILLIS = 5 * 60_000;
+    public static final long VALIDATION_INTERVAL_MILLIS = 1_000;
+    public static final int STATEMENT_CACHE_SIZE = 64;
+
+    // Replica routing
+    public static final String REPLICAS_PROPERTY = "atm.db.replicas";
+    public static final long REPLICA_MAX_LAG_SECONDS = Long.getLong("atm.db.replicaMaxLagSeconds", 5);
+
+    // Sharding: shard servers as host:port pairs, in shard-id order
+    public static final String SHARDS_PROPERTY = "atm.db.shards";
 
     private DatabaseConnection() {
     }
 
-    public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            try {
-                // Load driver class explicitly to ensure it's available
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("MySQL JDBC Driver not found", e);
+    private static volatile ReplicaRouter router;
+    private static List<ReplicaRouter> shardRouters;
+
+    // Lazily created on first use so the API-only build never touches the driver
+    private static ReplicaRouter router() throws SQLException {
+        ReplicaRouter r = router;
+        if (r == null) {
+            synchronized (DatabaseConnection.class) {
+                r = router;
+                if (r == null) {
+                    try {
+                        // Load driver class explicitly to ensure it's available
+                        Class.forName("com.mysql.cj.jdbc.Driver");
+                    } catch (ClassNotFoundException e) {
+                        throw new SQLException("MySQL JDBC Driver not found", e);
+                    }
+                    List<ConnectionPool> replicas = new ArrayList<>();
+                    for (String hostPort : System.getProperty(REPLICAS_PROPERTY, "").split(",")) {
+                        if (!hostPort.isBlank()) {
+                            replicas.add(newPool(URL_PREFIX + hostPort.trim() + URL_SUFFIX));
+                        }
+                    }
+                    r = ReplicaRouter.create(newPool(URL), replicas, REPLICA_MAX_LAG_SECONDS);
+                    router = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * One router per shard listed in {@code atm.db.shards}, indexed by shard
+     * id; empty when sharding isn't configured. The default database keeps
+     * the shard map, the global account directory and the number sequences.
+     */
+    public static synchronized List<ReplicaRouter> getShardRouters() throws SQLException {
+        if (shardRouters == null) {
+            router(); // Loads the driver
+            List<ReplicaRouter> routers = new ArrayList<>();
+            for (String hostPort : System.getProperty(SHARDS_PROPERTY, "").split(",")) {
+                if (!hostPort.isBlank()) {
+                    routers.add(ReplicaRouter.create(newPool(URL_PREFIX + hostPort.trim() + URL_SUFFIX), List.of(),
+                            REPLICA_MAX_LAG_SECONDS));
+                }
             }
+            shardRouters = List.copyOf(routers);
         }
-        return connection;
+        return shardRouters;
+    }
+
+    private static ConnectionPool newPool(String url) {
+        return new ConnectionPool(url, USER, PASSWORD, MAX_POOL_SIZE,
+                BORROW_TIMEOUT_MILLIS, IDLE_TIMEOUT_MILLIS, VALIDATION_INTERVAL_MILLIS,
+                STATEMENT_CACHE_SIZE);
     }
+
+    /**
+     * Primary connection: use for every write and for reads that must see
+     * the caller's own writes.
+     */
+    public static Connection getConnection() throws SQLException {
+        return router().primary();
+    }
+
+    /**
+     * Connection for reads that may lag the primary by up to
+     * {@link #REPLICA_MAX_LAG_SECONDS}, such as statements and listings.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return router().replica();
+    }
+
+    public static ConnectionPool.PoolStats getPoolStats() throws SQLException {
+        return router().getPrimaryStats();
+    }
+
+    public static ReplicaRouter.RoutingStats getRoutingStats() throws SQLException {
+        return router().getStats();
+    }
+
 }
@@ -2,73 +2,228 @@ package com.example.atmmanagementsystem.util;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * @deprecated This class is no longer used. The backend API handles database initialization.
- * Kept for backward compatibility if needed.
+ * Creates the database and brings its schema up to date by applying
+ * {@link #MIGRATIONS} in version order.
+ * <p>
+ * Applied versions are recorded in {@code schema_version} together with a
+ * checksum of their statements. When the schema is already current, startup
+ * costs a single {@code SELECT MAX(version)}.
  */
-@Deprecated
 public class DatabaseInitializer {
 
-    private static final String BASE_URL = "jdbc:mysql://localhost:3306/";
+    private static final String DEFAULT_HOST = "localhost:3306";
     private static final String DB_NAME = "bangla_bank";
     private static final String USER = "root";
     private static final String PASSWORD = "";
 
+    // MySQL error codes that mean a re-run statement has already been applied
+    private static final int ER_BAD_DB_ERROR = 1049;
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_NO_SUCH_TABLE = 1146;
+
+    /**
+     * Ordered list of schema changes. Never edit or reorder an entry once it
+     * has shipped; add a new version instead.
+     */
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create accounts and transactions",
+                    "CREATE TABLE IF NOT EXISTS accounts (" +
+                            "account_number VARCHAR(20) PRIMARY KEY, " +
+                            "card_number VARCHAR(20) UNIQUE NOT NULL, " +
+                            "pin VARCHAR(64) NOT NULL, " +
+                            "name VARCHAR(100) NOT NULL, " +
+                            "phone_number VARCHAR(15) UNIQUE NOT NULL, " +
+                            "email VARCHAR(100) UNIQUE, " +
+                            "gender VARCHAR(20), " +
+                            "profession VARCHAR(50), " +
+                            "nationality VARCHAR(50), " +
+                            "nid VARCHAR(20) UNIQUE, " +
+                            "address TEXT, " +
+                            "balance DECIMAL(15, 2) DEFAULT 0.00, " +
+                            "blocked BOOLEAN DEFAULT FALSE, " +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                            ")",
+                    // Older installs created the PIN column too short for a SHA-256 hash
+                    "ALTER TABLE accounts MODIFY COLUMN pin VARCHAR(64) NOT NULL",
+                    "CREATE TABLE IF NOT EXISTS transactions (" +
+                            "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "card_number VARCHAR(20) NOT NULL, " +
+                            "amount DECIMAL(15, 2) NOT NULL, " +
+                            "transaction_type VARCHAR(20) NOT NULL, " +
+                            "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                            "FOREIGN KEY (card_number) REFERENCES accounts(card_number)" +
+                            ")"),
+            new Migration(2, "Create daily_usage counters",
+                    "CREATE TABLE IF NOT EXISTS daily_usage (" +
+                            "card_number VARCHAR(20) NOT NULL, " +
+                            "usage_date DATE NOT NULL, " +
+                            "transaction_type VARCHAR(20) NOT NULL, " +
+                            "total_amount DECIMAL(15, 2) NOT NULL DEFAULT 0.00, " +
+                            "txn_count INT NOT NULL DEFAULT 0, " +
+                            "PRIMARY KEY (card_number, usage_date, transaction_type)" +
+                            ")"),
+            new Migration(3, "Index transactions for statements and limit checks",
+                    // Statement/history reads: WHERE card_number = ? ORDER BY timestamp DESC
+                    "CREATE INDEX idx_transactions_card_time ON transactions (card_number, timestamp, id)",
+                    // Per-type history filters and ledger-based limit/backfill aggregates
+                    "CREATE INDEX idx_transactions_card_type_time "
+                            + "ON transactions (card_number, transaction_type, timestamp, amount)"),
+            new Migration(4, "Create number_sequences for block-allocated account and card numbers",
+                    "CREATE TABLE IF NOT EXISTS number_sequences (" +
+                            "name VARCHAR(40) PRIMARY KEY, " +
+                            "next_value BIGINT NOT NULL" +
+                            ")",
+                    // Account numbers are 12 digits; card numbers are an 11-digit body behind the BIN
+                    "INSERT IGNORE INTO number_sequences (name, next_value) VALUES " +
+                            "('account_number', 100000000000), ('card_number', 10000000000)"),
+            new Migration(5, "Create shard map and global account directory",
+                    // Card-number hash bucket -> owning shard; frozen while a bucket is being moved
+                    "CREATE TABLE IF NOT EXISTS shard_buckets (" +
+                            "bucket INT PRIMARY KEY, " +
+                            "shard_id INT NOT NULL, " +
+                            "frozen BOOLEAN NOT NULL DEFAULT FALSE" +
+                            ")",
+                    // Globally unique keys (PHONE, EMAIL, NID, ACCOUNT) -> card number
+                    "CREATE TABLE IF NOT EXISTS account_directory (" +
+                            "key_type VARCHAR(10) NOT NULL, " +
+                            "key_value VARCHAR(100) NOT NULL, " +
+                            "card_number VARCHAR(20) NOT NULL, " +
+                            "PRIMARY KEY (key_type, key_value), " +
+                            "INDEX idx_account_directory_card (card_number)" +
+                            ")"),
+            new Migration(6, "Create month-partitioned transaction archive",
+                    // Lets the archiver find the oldest hot rows without a full scan
+                    "CREATE INDEX idx_transactions_time ON transactions (timestamp)",
+                    // Cold history. No foreign key, since partitioned InnoDB tables can't have
+                    // one; TransactionArchiver splits one partition per month off pmax
+                    "CREATE TABLE IF NOT EXISTS transactions_archive (" +
+                            "id INT NOT NULL, " +
+                            "card_number VARCHAR(20) NOT NULL, " +
+                            "amount DECIMAL(15, 2) NOT NULL, " +
+                            "transaction_type VARCHAR(20) NOT NULL, " +
+                            "timestamp TIMESTAMP NOT NULL, " +
+                            "PRIMARY KEY (id, timestamp), " +
+                            "INDEX idx_transactions_archive_card_time (card_number, timestamp, id)" +
+                            ") ROW_FORMAT=COMPRESSED " +
+                            "PARTITION BY RANGE (UNIX_TIMESTAMP(timestamp)) " +
+                            "(PARTITION pmax VALUES LESS THAN MAXVALUE)",
+                    // Everything before archived_before may be in the archive; NULL until the first run
+                    "CREATE TABLE IF NOT EXISTS transaction_archive_state (" +
+                            "id INT PRIMARY KEY, " +
+                            "archived_before TIMESTAMP NULL" +
+                            ")",
+                    "INSERT IGNORE INTO transaction_archive_state (id, archived_before) VALUES (1, NULL)"),
+            new Migration(7, "Add opening balances and balance snapshots for event-sourced balances",
+                    "ALTER TABLE accounts ADD COLUMN opening_balance DECIMAL(15, 2) NULL",
+                    // Existing accounts: whatever the ledger doesn't explain was the opening deposit
+                    "UPDATE accounts SET opening_balance = balance"
+                            + " - (SELECT COALESCE(SUM(CASE WHEN transaction_type = 'DEPOSIT'"
+                            + " THEN amount ELSE -amount END), 0)"
+                            + " FROM transactions t WHERE t.card_number = accounts.card_number)"
+                            + " - (SELECT COALESCE(SUM(CASE WHEN transaction_type = 'DEPOSIT'"
+                            + " THEN amount ELSE -amount END), 0)"
+                            + " FROM transactions_archive t WHERE t.card_number = accounts.card_number)"
+                            + " WHERE opening_balance IS NULL",
+                    // Balance as of last_event_id; events after it are added on read
+                    "CREATE TABLE IF NOT EXISTS balance_snapshots (" +
+                            "card_number VARCHAR(20) PRIMARY KEY, " +
+                            "balance DECIMAL(15, 2) NOT NULL, " +
+                            "last_event_id INT NOT NULL, " +
+                            "taken_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+                            ")",
+                    // Events after a snapshot, per card; the hot table's card_number index already ends in id
+                    "CREATE INDEX idx_transactions_archive_card_id ON transactions_archive (card_number, id)"),
+            new Migration(8, "Add a version column to accounts for compare-and-set updates",
+                    "ALTER TABLE accounts ADD COLUMN version BIGINT NOT NULL DEFAULT 0"),
+            new Migration(9, "Create idempotency_keys for retry-safe money movements",
+                    "CREATE TABLE IF NOT EXISTS idempotency_keys (" +
+                            "idem_key VARCHAR(64) PRIMARY KEY, " +
+                            "operation VARCHAR(20) NOT NULL, " +
+                            "card_number VARCHAR(20) NOT NULL, " +
+                            "amount DECIMAL(15, 2) NOT NULL, " +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                            "expires_at TIMESTAMP NOT NULL, " +
+                            "INDEX idx_idempotency_keys_expiry (expires_at), " +
+                            "INDEX idx_idempotency_keys_card (card_number)" +
+                            ")"),
+            new Migration(10, "Index accounts by creation time for number-filter catch-up",
+                    "CREATE INDEX idx_accounts_created_at ON accounts (created_at)"),
+            new Migration(11, "Create settlement tables for the end-of-day reconciliation job",
+                    // One row per card-number range of a settlement; completed_at is the checkpoint
+                    "CREATE TABLE IF NOT EXISTS settlement_ranges (" +
+                            "settlement_date DATE NOT NULL, " +
+                            "range_no INT NOT NULL, " +
+                            "after_card VARCHAR(20) NULL, " +
+                            "through_card VARCHAR(20) NULL, " +
+                            "cards INT NULL, " +
+                            "ledger_rows BIGINT NULL, " +
+                            "discrepancies INT NULL, " +
+                            "completed_at TIMESTAMP NULL, " +
+                            "PRIMARY KEY (settlement_date, range_no)" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS settlement_totals (" +
+                            "settlement_date DATE NOT NULL, " +
+                            "range_no INT NOT NULL, " +
+                            "transaction_type VARCHAR(20) NOT NULL, " +
+                            "total_amount DECIMAL(20, 2) NOT NULL, " +
+                            "txn_count BIGINT NOT NULL, " +
+                            "PRIMARY KEY (settlement_date, range_no, transaction_type)" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS settlement_discrepancies (" +
+                            "settlement_date DATE NOT NULL, " +
+                            "card_number VARCHAR(20) NOT NULL, " +
+                            "stored_balance DECIMAL(15, 2) NULL, " +
+                            "ledger_balance DECIMAL(20, 2) NULL, " +
+                            "PRIMARY KEY (settlement_date, card_number)" +
+                            ")"),
+            new Migration(12, "Create per-shard bucket fences for resharding",
+                    // One row per BucketShardMap bucket, so writers lock an existing row
+                    // (not a gap) and ShardRebalancer's fence queues behind them
+                    "CREATE TABLE IF NOT EXISTS bucket_fences (" +
+                            "bucket INT PRIMARY KEY, " +
+                            "fenced BOOLEAN NOT NULL DEFAULT FALSE" +
+                            ")",
+                    // 32 x 32 = 1024 buckets; counting to 1023 directly would exceed cte_max_recursion_depth
+                    "INSERT IGNORE INTO bucket_fences (bucket) "
+                            + "WITH RECURSIVE n (i) AS (SELECT 0 UNION ALL SELECT i + 1 FROM n WHERE i < 31) "
+                            + "SELECT a.i * 32 + b.i FROM n a CROSS JOIN n b"),
+            new Migration(13, "Record the other party of an idempotent operation",
+                    // A transfer's recipient card; a reused key must name the same one
+                    "ALTER TABLE idempotency_keys ADD COLUMN counterparty VARCHAR(20) NULL AFTER card_number"));
+
     public static void initialize() {
+        initialize(DEFAULT_HOST);
+    }
+
+    /**
+     * Create and migrate the database on {@code hostPort}; used for the
+     * default server and for each shard.
+     */
+    public static void initialize(String hostPort) {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
 
-            // 1. Create Database if not exists
-            try (Connection conn = DriverManager.getConnection(BASE_URL, USER, PASSWORD);
-                    Statement stmt = conn.createStatement()) {
-                stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS " + DB_NAME);
-            }
-
-            // 2. Create Table
-            try (Connection conn = DriverManager.getConnection(BASE_URL + DB_NAME, USER, PASSWORD);
-                    Statement stmt = conn.createStatement()) {
-
-                String sql = "CREATE TABLE IF NOT EXISTS accounts (" +
-                        "account_number VARCHAR(20) PRIMARY KEY, " +
-                        "card_number VARCHAR(20) UNIQUE NOT NULL, " +
-                        "pin VARCHAR(64) NOT NULL, " +
-                        "name VARCHAR(100) NOT NULL, " +
-                        "phone_number VARCHAR(15) UNIQUE NOT NULL, " +
-                        "email VARCHAR(100) UNIQUE, " +
-                        "gender VARCHAR(20), " +
-                        "profession VARCHAR(50), " +
-                        "nationality VARCHAR(50), " +
-                        "nid VARCHAR(20) UNIQUE, " +
-                        "address TEXT, " +
-                        "balance DECIMAL(15, 2) DEFAULT 0.00, " +
-                        "blocked BOOLEAN DEFAULT FALSE, " +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                        ")";
-                stmt.execute(sql);
-
-                // 3. Ensure Schema Compatibility (force update PIN column if it exists with old
-                // length)
-                try {
-                    stmt.execute("ALTER TABLE accounts MODIFY COLUMN pin VARCHAR(64) NOT NULL");
-                } catch (SQLException e) {
-                    // Ignore
+            try (Connection conn = openDatabase("jdbc:mysql://" + hostPort + "/")) {
+                int current = currentVersion(conn);
+                int latest = MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion();
+                if (current >= latest) {
+                    return;
                 }
-
-                String trxTable = "CREATE TABLE IF NOT EXISTS transactions (" +
-                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "card_number VARCHAR(20) NOT NULL, " +
-                        "amount DECIMAL(15, 2) NOT NULL, " +
-                        "transaction_type VARCHAR(20) NOT NULL, " +
-                        "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                        "FOREIGN KEY (card_number) REFERENCES accounts(card_number)" +
-                        ")";
-                stmt.execute(trxTable);
+                migrate(conn, current);
             }
 
-            System.out.println("Database and tables initialized successfully.");
+            System.out.println("Database schema migrated to version "
+                    + MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion() + ".");
 
         } catch (ClassNotFoundException e) {
             System.err.println("MySQL Driver not found: " + e.getMessage());
@@ -77,4 +232,96 @@ public class DatabaseInitializer {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Connect to the application database, creating it on first run.
+     */
+    private static Connection openDatabase(String baseUrl) throws SQLException {
+        try {
+            return DriverManager.getConnection(baseUrl + DB_NAME, USER, PASSWORD);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_BAD_DB_ERROR) {
+                throw e;
+            }
+        }
+        try (Connection conn = DriverManager.getConnection(baseUrl, USER, PASSWORD);
+                Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS " + DB_NAME);
+        }
+        return DriverManager.getConnection(baseUrl + DB_NAME, USER, PASSWORD);
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_NO_SUCH_TABLE) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    private static void migrate(Connection conn, int current) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "checksum CHAR(64) NOT NULL, " +
+                    "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        }
+
+        Map<Integer, String> applied = appliedChecksums(conn);
+        for (Migration migration : MIGRATIONS) {
+            String recorded = applied.get(migration.getVersion());
+            if (recorded != null) {
+                if (!recorded.equals(migration.checksum())) {
+                    throw new SQLException("Checksum mismatch for applied migration " + migration
+                            + "; migrations must not be edited after they ship");
+                }
+                continue;
+            }
+            if (migration.getVersion() <= current) {
+                throw new SQLException("Migration " + migration + " is missing from schema_version");
+            }
+            apply(conn, migration);
+        }
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        System.out.println("Applying migration " + migration);
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : migration.getStatements()) {
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    // Column or index left behind by an earlier, interrupted run
+                    if (e.getErrorCode() != ER_DUP_FIELDNAME && e.getErrorCode() != ER_DUP_KEYNAME) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        String sql = "INSERT IGNORE INTO schema_version (version, description, checksum) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, migration.getVersion());
+            pstmt.setString(2, migration.getDescription());
+            pstmt.setString(3, migration.checksum());
+            pstmt.executeUpdate();
+        }
+    }
 }
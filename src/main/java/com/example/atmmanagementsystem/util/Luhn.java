@@ -0,0 +1,39 @@
+package com.example.atmmanagementsystem.util;
+
+/**
+ * Luhn (mod 10) check digits for card numbers.
+ */
+public class Luhn {
+
+    private Luhn() {
+    }
+
+    /**
+     * Check digit to append to {@code payload} so the full number passes
+     * {@link #isValid(String)}.
+     */
+    public static int checkDigit(String payload) {
+        int sum = 0;
+        boolean doubleIt = true; // Rightmost payload digit is doubled once the check digit is appended
+        for (int i = payload.length() - 1; i >= 0; i--) {
+            int d = payload.charAt(i) - '0';
+            if (doubleIt) {
+                d *= 2;
+                if (d > 9) {
+                    d -= 9;
+                }
+            }
+            sum += d;
+            doubleIt = !doubleIt;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    public static boolean isValid(String number) {
+        if (number == null || number.length() < 2 || !number.chars().allMatch(Character::isDigit)) {
+            return false;
+        }
+        int last = number.length() - 1;
+        return checkDigit(number.substring(0, last)) == number.charAt(last) - '0';
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.atmmanagementsystem.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * One versioned schema change applied by {@link DatabaseInitializer}.
+ * <p>
+ * Statements should be safe to re-run (IF NOT EXISTS, MODIFY, ...) because
+ * MySQL commits DDL immediately and a migration that fails half-way will be
+ * retried from its first statement on the next start.
+ */
+public class Migration {
+
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    public Migration(int version, String description, String... statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = List.of(statements);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    /**
+     * SHA-256 over the statements, recorded when the migration is applied so
+     * that later edits to an already-applied migration are detected.
+     */
+    public String checksum() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String sql : statements) {
+                digest.update(sql.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ';');
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not found", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " " + description;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.atmmanagementsystem.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes connections between a primary pool and any number of read replica
+ * pools.
+ * <p>
+ * Writes, and reads that must see the caller's own writes, use
+ * {@link #primary()}. Reads that tolerate a little staleness use
+ * {@link #replica()}, which round-robins over replicas that passed their last
+ * health check. A background check runs every few seconds and marks a replica
+ * unhealthy when it can't be reached, its replication threads are stopped, or
+ * it lags more than {@code maxLagSeconds} behind. When no replica is healthy,
+ * or borrowing from one fails, the read falls back to the primary.
+ * <p>
+ * A server that reports no replication status at all (for example a plain
+ * local instance standing in for a replica) is treated as current.
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    public static final long HEALTH_CHECK_INTERVAL_MILLIS = 2_000;
+
+    private final ConnectionPool primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagSeconds;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    private final LongAdder primaryBorrows = new LongAdder();
+    private final LongAdder replicaBorrows = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder replicaFailures = new LongAdder();
+
+    private ReplicaRouter(ConnectionPool primary, List<ConnectionPool> replicaPools, long maxLagSeconds) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLagSeconds;
+        for (ConnectionPool pool : replicaPools) {
+            replicas.add(new Replica(pool));
+        }
+
+        if (replicas.isEmpty()) {
+            healthChecker = null;
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Route over {@code primary} and {@code replicaPools}, starting the
+     * replica health check once the router is fully built.
+     */
+    public static ReplicaRouter create(ConnectionPool primary, List<ConnectionPool> replicaPools,
+                                       long maxLagSeconds) {
+        ReplicaRouter router = new ReplicaRouter(primary, replicaPools, maxLagSeconds);
+        if (router.healthChecker != null) {
+            router.healthChecker.scheduleWithFixedDelay(router::checkHealth, 0, HEALTH_CHECK_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+        return router;
+    }
+
+    /**
+     * Connection for writes and read-your-writes reads.
+     */
+    public Connection primary() throws SQLException {
+        primaryBorrows.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Connection for reads that can be up to {@code maxLagSeconds} stale.
+     */
+    public Connection replica() throws SQLException {
+        int count = replicas.size();
+        int start = count == 0 ? 0 : Math.floorMod(nextReplica.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection conn = replica.pool.getConnection();
+                replica.borrows.increment();
+                replicaBorrows.increment();
+                return conn;
+            } catch (SQLException e) {
+                // Don't wait for the next health check to stop using it
+                replica.healthy = false;
+                replicaFailures.increment();
+            }
+        }
+        if (count > 0) {
+            fallbacks.increment();
+        }
+        return primary();
+    }
+
+    /**
+     * Longest replica lag the router accepts, which is also how long a
+     * caller's own writes may take to show up on a replica.
+     */
+    public long getMaxLagSeconds() {
+        return maxLagSeconds;
+    }
+
+    void checkHealth() {
+        for (Replica replica : replicas) {
+            Long lag = null;
+            try (Connection conn = replica.pool.getConnection()) {
+                lag = replicationLag(conn);
+            } catch (SQLException e) {
+                replicaFailures.increment();
+            }
+            replica.lagSeconds = lag == null ? -1 : lag;
+            replica.healthy = lag != null && lag <= maxLagSeconds;
+        }
+    }
+
+    /**
+     * Seconds the server is behind its source, 0 if it isn't a replica, or
+     * null if replication is configured but not running.
+     */
+    private static Long replicationLag(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String column = "Seconds_Behind_Source";
+            ResultSet rs;
+            try {
+                rs = stmt.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                // MySQL before 8.0.22
+                column = "Seconds_Behind_Master";
+                rs = stmt.executeQuery("SHOW SLAVE STATUS");
+            }
+            try (ResultSet status = rs) {
+                if (!status.next()) {
+                    return 0L;
+                }
+                long lag = status.getLong(column);
+                return status.wasNull() ? null : lag;
+            }
+        }
+    }
+
+    public ConnectionPool.PoolStats getPrimaryStats() {
+        return primary.getStats();
+    }
+
+    public RoutingStats getStats() {
+        List<String> replicaStates = new ArrayList<>();
+        for (Replica replica : replicas) {
+            replicaStates.add((replica.healthy ? "up" : "down") + " lag=" + replica.lagSeconds + "s borrows="
+                    + replica.borrows.sum());
+        }
+        return new RoutingStats(primaryBorrows.sum(), replicaBorrows.sum(), fallbacks.sum(), replicaFailures.sum(),
+                replicaStates);
+    }
+
+    @Override
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+        primary.close();
+    }
+
+    private static final class Replica {
+        private final ConnectionPool pool;
+        private final LongAdder borrows = new LongAdder();
+        private volatile boolean healthy;
+        private volatile long lagSeconds = -1;
+
+        Replica(ConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Snapshot of routing counters.
+     */
+    public static final class RoutingStats {
+        private final long primaryBorrows;
+        private final long replicaBorrows;
+        private final long fallbacks;
+        private final long replicaFailures;
+        private final List<String> replicas;
+
+        RoutingStats(long primaryBorrows, long replicaBorrows, long fallbacks, long replicaFailures,
+                List<String> replicas) {
+            this.primaryBorrows = primaryBorrows;
+            this.replicaBorrows = replicaBorrows;
+            this.fallbacks = fallbacks;
+            this.replicaFailures = replicaFailures;
+            this.replicas = replicas;
+        }
+
+        /** Connections handed out by the primary, including fallbacks. */
+        public long getPrimaryBorrows() {
+            return primaryBorrows;
+        }
+
+        public long getReplicaBorrows() {
+            return replicaBorrows;
+        }
+
+        /** Replica reads served by the primary because no replica was usable. */
+        public long getFallbacks() {
+            return fallbacks;
+        }
+
+        /** Failed replica borrows and health checks. */
+        public long getReplicaFailures() {
+            return replicaFailures;
+        }
+
+        public List<String> getReplicas() {
+            return replicas;
+        }
+
+        @Override
+        public String toString() {
+            return "RoutingStats{" +
+                    "primary=" + primaryBorrows +
+                    ", replica=" + replicaBorrows +
+                    ", fallbacks=" + fallbacks +
+                    ", replicaFailures=" + replicaFailures +
+                    ", replicas=" + replicas +
+                    '}';
+        }
+    }
+}
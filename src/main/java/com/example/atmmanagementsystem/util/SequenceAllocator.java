@@ -0,0 +1,62 @@
+package com.example.atmmanagementsystem.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hands out numbers from a named row in {@code number_sequences} in blocks.
+ * <p>
+ * Each refill reserves {@code blockSize} values with one atomic UPDATE, after
+ * which numbers are served from memory. Every process reserves its own
+ * disjoint blocks, so several terminals or nodes can allocate in parallel
+ * without talking to each other. Values left in a block when the process
+ * exits are simply skipped.
+ */
+public class SequenceAllocator {
+
+    // LAST_INSERT_ID(expr) stores the new value for this connection, so the
+    // reservation and the read of its upper bound need no explicit transaction
+    private static final String RESERVE_SQL =
+            "UPDATE number_sequences SET next_value = LAST_INSERT_ID(next_value + ?) WHERE name = ?";
+
+    private final String name;
+    private final int blockSize;
+    private long next;
+    private long limit;
+
+    public SequenceAllocator(String name, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.name = name;
+        this.blockSize = blockSize;
+    }
+
+    public synchronized long next() throws SQLException {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return next++;
+    }
+
+    private void reserveBlock() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(RESERVE_SQL)) {
+                pstmt.setInt(1, blockSize);
+                pstmt.setString(2, name);
+                if (pstmt.executeUpdate() == 0) {
+                    throw new SQLException("Unknown number sequence: " + name);
+                }
+            }
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                limit = rs.getLong(1);
+                next = limit - blockSize;
+            }
+        }
+    }
+}
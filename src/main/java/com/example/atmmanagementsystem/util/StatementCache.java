@@ -0,0 +1,155 @@
+package com.example.atmmanagementsystem.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL.
+ * <p>
+ * Callers get a proxy whose {@code close()} resets the statement (parameters,
+ * batch, open result set, and any fetch size, row limit or timeout the caller
+ * set) and keeps it for the next caller instead of closing it. Only one
+ * borrower uses a pooled connection at a time, so the cache needs no locking.
+ * If the same SQL is prepared again while its cached statement is still open,
+ * the second caller gets an ordinary uncached statement.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+            cached.inUse = true;
+            return cached.proxy;
+        }
+        misses.increment();
+        if (cached != null || maxSize == 0) {
+            return physical.prepareStatement(sql);
+        }
+
+        cached = new CachedStatement(physical.prepareStatement(sql));
+        cached.inUse = true;
+        statements.put(sql, cached);
+        evictOverflow();
+        return cached.proxy;
+    }
+
+    /**
+     * Drop least recently used statements beyond the cache size. A statement
+     * that is still open is closed when its caller releases it.
+     */
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            evictions.increment();
+            if (eldest.inUse) {
+                eldest.evicted = true;
+            } else {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Statement is being thrown away anyway
+        }
+    }
+
+    private static final class CachedStatement {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        private boolean evicted;
+        // Settings from before the current borrower first changed any; null while untouched
+        private int[] defaults;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                release();
+                                return null;
+                            case "isClosed":
+                                return !inUse || statement.isClosed();
+                            case "equals":
+                                return p == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(p);
+                            case "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows",
+                                 "setMaxFieldSize", "setQueryTimeout":
+                                if (defaults == null) {
+                                    defaults = new int[] { statement.getFetchSize(), statement.getFetchDirection(),
+                                            statement.getMaxRows(), statement.getMaxFieldSize(),
+                                            statement.getQueryTimeout() };
+                                }
+                                break;
+                            default:
+                                break;
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        private void release() throws SQLException {
+            if (!inUse) {
+                return;
+            }
+            inUse = false;
+            if (evicted) {
+                statement.close();
+                return;
+            }
+            ResultSet rs = statement.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            if (defaults != null) {
+                // A streaming caller's fetch size would otherwise make the next
+                // borrower's ordinary query stream too
+                statement.setFetchSize(defaults[0]);
+                statement.setFetchDirection(defaults[1]);
+                statement.setMaxRows(defaults[2]);
+                statement.setMaxFieldSize(defaults[3]);
+                statement.setQueryTimeout(defaults[4]);
+                defaults = null;
+            }
+        }
+    }
+}
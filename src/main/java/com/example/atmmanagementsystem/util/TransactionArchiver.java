@@ -0,0 +1,263 @@
+package com.example.atmmanagementsystem.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@code transactions} table down to the last few months by moving
+ * older months into {@code transactions_archive}.
+ * <p>
+ * The archive is compressed and range-partitioned by month; a partition is
+ * split off its catch-all {@code pmax} partition before each month is moved.
+ * Rows move in chunks, each in its own transaction that inserts them into the
+ * archive, deletes them from the hot table and raises the archive watermark,
+ * so history readers see every row exactly once at any point (see
+ * {@code DatabaseAccountService.getTransactionPage}). An interrupted run
+ * simply continues where it stopped the next time.
+ * <p>
+ * The hot table stays unpartitioned: it keeps its foreign key to accounts,
+ * which MySQL doesn't allow on partitioned tables.
+ * <p>
+ * Usage: {@code TransactionArchiver archive [hotMonths]} for a single run or
+ * {@code TransactionArchiver schedule [hotMonths] [intervalHours]} to keep
+ * running.
+ */
+public class TransactionArchiver implements AutoCloseable {
+
+    public static final int DEFAULT_HOT_MONTHS = Integer.getInteger("atm.archive.hotMonths", 3);
+
+    private static final int CHUNK_SIZE = 2_000;
+    private static final String CATCH_ALL_PARTITION = "pmax";
+
+    private static final String OLDEST_HOT_SQL = "SELECT MIN(timestamp) FROM transactions";
+
+    private static final String CHUNK_IDS_SQL =
+            "SELECT id FROM transactions WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp, id LIMIT ? "
+                    + "FOR UPDATE";
+
+    private static final String RAISE_WATERMARK_SQL =
+            "UPDATE transaction_archive_state SET archived_before = ? "
+                    + "WHERE id = 1 AND (archived_before IS NULL OR archived_before < ?)";
+
+    private static final String PARTITION_BOUNDS_SQL =
+            "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'transactions_archive'";
+
+    private final int hotMonths;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param hotMonths months kept in the hot table, counting the current one
+     */
+    public TransactionArchiver(int hotMonths) {
+        if (hotMonths < 1) {
+            throw new IllegalArgumentException("At least the current month must stay hot");
+        }
+        this.hotMonths = hotMonths;
+    }
+
+    /**
+     * Archive every month that has fallen out of the hot window, oldest first.
+     *
+     * @return number of rows moved
+     */
+    public synchronized int archive() throws SQLException {
+        YearMonth firstHot = YearMonth.now().minusMonths(hotMonths - 1L);
+        int moved = 0;
+        for (YearMonth month = oldestHotMonth(); month != null && month.isBefore(firstHot);
+                month = month.plusMonths(1)) {
+            moved += archiveMonth(month);
+        }
+        return moved;
+    }
+
+    /**
+     * Run {@link #archive()} now and then every {@code intervalHours} on a
+     * background thread until {@link #close()}.
+     */
+    public synchronized void start(long intervalHours) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "transaction-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                int moved = archive();
+                if (moved > 0) {
+                    System.out.println("Archived " + moved + " transaction(s)");
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Keep the schedule alive; the next run picks up where this one stopped
+                System.err.println("Transaction archival failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, 0, intervalHours, TimeUnit.HOURS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static YearMonth oldestHotMonth() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(OLDEST_HOT_SQL)) {
+            Timestamp oldest = rs.next() ? rs.getTimestamp(1) : null;
+            return oldest == null ? null : YearMonth.from(oldest.toLocalDateTime());
+        }
+    }
+
+    private int archiveMonth(YearMonth month) throws SQLException {
+        long start = System.nanoTime();
+        Timestamp from = startOf(month);
+        Timestamp until = startOf(month.plusMonths(1));
+        ensurePartition(month);
+
+        int moved = 0;
+        int chunk;
+        do {
+            chunk = moveChunk(from, until);
+            moved += chunk;
+        } while (chunk == CHUNK_SIZE);
+
+        System.out.println("Archived " + month + ": " + moved + " row(s) in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return moved;
+    }
+
+    private static int moveChunk(Timestamp from, Timestamp until) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Integer> ids = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(CHUNK_IDS_SQL)) {
+                    pstmt.setTimestamp(1, from);
+                    pstmt.setTimestamp(2, until);
+                    pstmt.setInt(3, CHUNK_SIZE);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                        }
+                    }
+                }
+
+                // Raised with the first chunk so readers look in the archive from now on
+                try (PreparedStatement pstmt = conn.prepareStatement(RAISE_WATERMARK_SQL)) {
+                    pstmt.setTimestamp(1, until);
+                    pstmt.setTimestamp(2, until);
+                    pstmt.executeUpdate();
+                }
+
+                if (!ids.isEmpty()) {
+                    String in = " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "INSERT IGNORE INTO transactions_archive (id, card_number, amount, transaction_type, "
+                                    + "timestamp) SELECT id, card_number, amount, transaction_type, timestamp "
+                                    + "FROM transactions" + in)) {
+                        bindIds(pstmt, ids);
+                        pstmt.executeUpdate();
+                    }
+                    try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM transactions" + in)) {
+                        bindIds(pstmt, ids);
+                        pstmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+                return ids.size();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void bindIds(PreparedStatement pstmt, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            pstmt.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    /**
+     * Split a partition for {@code month} off the catch-all partition, unless
+     * the existing partitions already reach past it. Range partitions can only
+     * be added in increasing order, which holds because months are archived
+     * oldest first.
+     */
+    private static void ensurePartition(YearMonth month) throws SQLException {
+        long upperBound = startOf(month.plusMonths(1)).getTime() / 1000;
+        try (Connection conn = DatabaseConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            long highest = Long.MIN_VALUE;
+            try (ResultSet rs = stmt.executeQuery(PARTITION_BOUNDS_SQL)) {
+                while (rs.next()) {
+                    if (!CATCH_ALL_PARTITION.equals(rs.getString(1))) {
+                        highest = Math.max(highest, Long.parseLong(rs.getString(2)));
+                    }
+                }
+            }
+            if (highest >= upperBound) {
+                return;
+            }
+            stmt.execute("ALTER TABLE transactions_archive REORGANIZE PARTITION " + CATCH_ALL_PARTITION
+                    + " INTO (PARTITION p" + month.getYear() + String.format("%02d", month.getMonthValue())
+                    + " VALUES LESS THAN (" + upperBound + "), PARTITION " + CATCH_ALL_PARTITION
+                    + " VALUES LESS THAN MAXVALUE)");
+        }
+    }
+
+    // Same zone the JDBC driver uses for Timestamp parameters
+    private static Timestamp startOf(YearMonth month) {
+        LocalDate first = month.atDay(1);
+        return Timestamp.from(first.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "archive";
+        int hotMonths = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HOT_MONTHS;
+        TransactionArchiver archiver = new TransactionArchiver(hotMonths);
+
+        try {
+            switch (command) {
+                case "archive":
+                    System.out.println("Archived " + archiver.archive() + " transaction(s) older than "
+                            + hotMonths + " month(s)");
+                    break;
+                case "schedule":
+                    long intervalHours = args.length > 2 ? Long.parseLong(args[2]) : 24;
+                    archiver.start(intervalHours);
+                    Thread.currentThread().join();
+                    break;
+                default:
+                    System.err.println("Usage: TransactionArchiver archive|schedule [hotMonths] [intervalHours]");
+            }
+        } catch (SQLException e) {
+            System.err.println("Transaction archival failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            archiver.close();
+        }
+    }
+}
@@ -12,6 +12,7 @@ module com.example.atmmanagementsystem {
     requires javafx.graphics;
     requires java.sql;
     requires java.net.http;
+    requires jdk.httpserver;
     requires com.google.gson;
     requires java.desktop;
 
@@ -62,7 +62,7 @@ public class TestTransactionParsing {
                 System.out.println("  id: " + obj.get("id").getAsInt());
                 System.out.println("  card_number: " + obj.get("card_number").getAsString());
                 System.out.println("  amount (raw): " + obj.get("amount").getAsString());
-                System.out.println("  amount (parsed): " + Double.parseDouble(obj.get("amount").getAsString()));
+                System.out.println("  amount (parsed): " + com.example.atmmanagementsystem.model.Money.parse(obj.get("amount").getAsString()));
                 System.out.println("  transaction_type: " + obj.get("transaction_type").getAsString());
                 System.out.println("  timestamp: " + obj.get("timestamp").getAsString());
                 System.out.println();
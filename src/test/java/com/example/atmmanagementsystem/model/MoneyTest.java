@@ -0,0 +1,123 @@
+package com.example.atmmanagementsystem.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void parsesPlainAmounts() {
+        assertEquals(50000, Money.parsePaisa("500"));
+        assertEquals(2075, Money.parsePaisa("20.75"));
+        assertEquals(50, Money.parsePaisa(".5"));
+        assertEquals(500, Money.parsePaisa("5."));
+        assertEquals(123, Money.parsePaisa("  1.23 \t"));
+        assertEquals(123, Money.parsePaisa("+1.23"));
+    }
+
+    @Test
+    void ignoresGroupingCommas() {
+        assertEquals(125050, Money.parsePaisa("1,250.5"));
+        assertEquals(100000000, Money.parsePaisa("1,000,000"));
+    }
+
+    @Test
+    void acceptsTrailingZerosBeyondTwoDecimals() {
+        assertEquals(50000, Money.parsePaisa("500.000"));
+        assertEquals(1210, Money.parsePaisa("12.1000"));
+    }
+
+    @Test
+    void rejectsMoreThanTwoSignificantDecimals() {
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("500.001"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("0.125"));
+    }
+
+    @Test
+    void parsesNegatives() {
+        assertEquals(-2075, Money.parsePaisa("-20.75"));
+        assertEquals(-125050, Money.parsePaisa("-1,250.5"));
+        assertEquals(0, Money.parsePaisa("-0.00"));
+    }
+
+    @Test
+    void rejectsMalformedText() {
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa(null));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa(""));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("   "));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("-"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("."));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("12a"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("1.2,5"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("--5"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("1e3"));
+    }
+
+    @Test
+    void parsesUpToTheLargestRepresentableAmount() {
+        long maxTaka = (Long.MAX_VALUE - 99) / 100;
+        assertEquals(maxTaka * 100 + 99, Money.parsePaisa(maxTaka + ".99"));
+        assertEquals(-(maxTaka * 100 + 99), Money.parsePaisa("-" + maxTaka + ".99"));
+    }
+
+    @Test
+    void rejectsOverflowAsAnInvalidAmount() {
+        long maxTaka = (Long.MAX_VALUE - 99) / 100;
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa((maxTaka + 1) + ".00"));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa(Long.toString(Long.MAX_VALUE)));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("-" + Long.MAX_VALUE));
+        assertThrows(NumberFormatException.class, () -> Money.parsePaisa("99999999999999999999999"));
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertEquals("0.00", format(0));
+        assertEquals("0.05", format(5));
+        assertEquals("0.50", format(50));
+        assertEquals("1250.50", format(125050));
+        assertEquals("500.00", format(50000));
+    }
+
+    @Test
+    void formatsNegatives() {
+        assertEquals("-0.05", format(-5));
+        assertEquals("-20.75", format(-2075));
+        assertEquals("-1250.50", format(-125050));
+    }
+
+    @Test
+    void formatsLongExtremes() {
+        assertEquals("92233720368547758.07", format(Long.MAX_VALUE));
+        assertEquals("-92233720368547758.08", format(Long.MIN_VALUE));
+    }
+
+    @Test
+    void formatAppendsToExistingText() {
+        assertEquals("TK 1.01", Money.format(101, new StringBuilder("TK ")).toString());
+    }
+
+    @Test
+    void formatAndParseRoundTrip() {
+        long[] samples = {0, 1, -1, 99, 100, -100, 125050, -2075, 123456789012L, (Long.MAX_VALUE - 99) / 100 * 100 + 99};
+        for (long paisa : samples) {
+            assertEquals(paisa, Money.parsePaisa(format(paisa)), () -> "round trip of " + paisa);
+        }
+    }
+
+    @Test
+    void agreesWithBigDecimalBinding() {
+        Money amount = Money.parse("1,250.5");
+        assertEquals(new BigDecimal("1250.50"), amount.toBigDecimal());
+        assertEquals(amount, Money.of(new BigDecimal("1250.50")));
+        assertEquals(Money.parse("500.000"), Money.ofTaka(500));
+    }
+
+    private static String format(long paisa) {
+        return Money.format(paisa, new StringBuilder()).toString();
+    }
+}
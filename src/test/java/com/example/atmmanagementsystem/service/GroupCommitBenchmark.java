@@ -0,0 +1,96 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.BulkCreateResult;
+import com.example.atmmanagementsystem.model.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deposit throughput with one commit per posting against group
+ * commit. Each worker thread gets its own freshly created card and makes the
+ * daily maximum of five deposits on it, so the two modes do the same work and
+ * don't contend on rows.
+ * <p>
+ * It creates real accounts and ledger rows; run it against a test database.
+ * <p>
+ * Usage: {@code GroupCommitBenchmark [threads] [maxDelayMillis] [maxBatchSize]}
+ */
+public class GroupCommitBenchmark {
+
+    private static final int DEPOSITS_PER_CARD = 5;
+    private static final Money DEPOSIT_AMOUNT = Money.ofTaka(500);
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        long maxDelayMillis = args.length > 1 ? Long.parseLong(args[1]) : 2;
+        int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        DatabaseAccountService perOperation = new DatabaseAccountService();
+        List<String> cards = createCards(perOperation, threads * 2);
+        List<String> perOperationCards = cards.subList(0, threads);
+        List<String> groupCards = cards.subList(threads, cards.size());
+
+        double perOperationRate = run(perOperation, perOperationCards);
+        System.out.printf("Per-operation commit: %.0f deposits/s%n", perOperationRate);
+
+        DatabaseAccountService grouped = new DatabaseAccountService(maxDelayMillis, maxBatchSize);
+        try {
+            double groupRate = run(grouped, groupCards);
+            System.out.printf("Group commit (%d ms, %d max): %.0f deposits/s (%.2fx)%n",
+                    maxDelayMillis, maxBatchSize, groupRate, groupRate / perOperationRate);
+        } finally {
+            grouped.close();
+        }
+    }
+
+    private static List<String> createCards(DatabaseAccountService service, int count) {
+        // Unique per run so repeated runs don't trip the phone/email/NID constraints
+        long tag = System.currentTimeMillis() % 100_000_000L;
+        List<Account> drafts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String digits = String.format("99%08d%04d", tag, i);
+            drafts.add(new Account("Benchmark " + i, digits, Money.ofTaka(1000), "bench" + digits + "@example.com",
+                    "Other", "Benchmark", null, digits, "Benchmark"));
+        }
+
+        List<String> cards = new ArrayList<>(count);
+        for (BulkCreateResult result : service.createAccounts(drafts)) {
+            if (!result.isSuccess()) {
+                throw new IllegalStateException("Could not create benchmark account: " + result.getError());
+            }
+            cards.add(result.getAccount().getCardNumber());
+        }
+        return cards;
+    }
+
+    /**
+     * @return deposits per second
+     */
+    private static double run(DatabaseAccountService service, List<String> cards) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(cards.size());
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> workers = new ArrayList<>(cards.size());
+            for (String card : cards) {
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < DEPOSITS_PER_CARD; i++) {
+                        service.deposit(card, DEPOSIT_AMOUNT);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            return cards.size() * DEPOSITS_PER_CARD / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
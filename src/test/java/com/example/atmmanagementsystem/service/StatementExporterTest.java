@@ -0,0 +1,171 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StatementExporterTest {
+
+    // Enough rows to spill several export buffers
+    private static final int ROWS = 20_000;
+    private static final String[] TYPES = { "DEPOSIT", "WITHDRAWAL", "TRANSFER_IN", "TRANSFER_OUT" };
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 31, 23, 59, 58);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void csvRoundTrip() throws IOException {
+        Path file = dir.resolve("statement.csv");
+        StatementExporter.ExportStats stats = new StatementExporter(StatementExporter.Format.CSV, false)
+                .export(rows(), file);
+
+        assertEquals(ROWS, stats.getRows());
+        assertEquals(Files.size(file), stats.getBytes());
+        try (InputStream in = Files.newInputStream(file)) {
+            assertCsv(in);
+        }
+    }
+
+    @Test
+    void gzippedCsvRoundTrip() throws IOException {
+        Path file = dir.resolve("statement.csv.gz");
+        new StatementExporter(StatementExporter.Format.CSV, true).export(rows(), file);
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertCsv(in);
+        }
+    }
+
+    @Test
+    void binaryRoundTrip() throws IOException {
+        Path file = dir.resolve("statement.bin");
+        StatementExporter.ExportStats stats = new StatementExporter(StatementExporter.Format.BINARY, false)
+                .export(rows(), file);
+
+        assertEquals(ROWS, stats.getRows());
+        assertBinary(file);
+    }
+
+    @Test
+    void gzippedBinaryRoundTrip() throws IOException {
+        Path plain = dir.resolve("statement.bin");
+        Path file = dir.resolve("statement.bin.gz");
+        new StatementExporter(StatementExporter.Format.BINARY, false).export(rows(), plain);
+        new StatementExporter(StatementExporter.Format.BINARY, true).export(rows(), file);
+
+        assertBinary(file);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertArrayEquals(Files.readAllBytes(plain), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void emptyExportsAreReadable() throws IOException {
+        Path csv = dir.resolve("empty.csv.gz");
+        Path binary = dir.resolve("empty.bin.gz");
+        new StatementExporter(StatementExporter.Format.CSV, true).export(Stream.empty(), csv);
+        new StatementExporter(StatementExporter.Format.BINARY, true).export(Stream.empty(), binary);
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(csv))) {
+            assertEquals("id,card_number,type,amount,timestamp\n",
+                    new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+        assertEquals(0, StatementExporter.readBinary(binary, t -> { }));
+    }
+
+    @Test
+    void missingTimestampSurvivesBinaryRoundTrip() throws IOException {
+        Path file = dir.resolve("statement.bin");
+        new StatementExporter(StatementExporter.Format.BINARY, false).export(
+                Stream.of(new Transaction(7, "1234", Money.parse("-0.05"), "WITHDRAWAL", null)), file);
+
+        List<Transaction> read = new ArrayList<>();
+        StatementExporter.readBinary(file, read::add);
+        assertEquals(1, read.size());
+        assertEquals(Money.ofPaisa(-5), read.get(0).getAmount());
+        assertNull(read.get(0).getTimestamp());
+    }
+
+    @Test
+    void failedExportDeletesThePartialFile() {
+        Path file = dir.resolve("statement.bin");
+        Stream<Transaction> failing = Stream.concat(rows().limit(1000),
+                Stream.of(new Transaction(0, "x".repeat(100), Money.ZERO, "DEPOSIT", null)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new StatementExporter(StatementExporter.Format.BINARY, true).export(failing, file));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void readBinaryRejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("statement.csv");
+        new StatementExporter(StatementExporter.Format.CSV, false).export(rows().limit(10), file);
+
+        assertThrows(IOException.class, () -> StatementExporter.readBinary(file, t -> { }));
+    }
+
+    private static Stream<Transaction> rows() {
+        return IntStream.range(0, ROWS).mapToObj(StatementExporterTest::row);
+    }
+
+    private static Transaction row(int i) {
+        long paisa = (i % 7 == 0 ? -1 : 1) * (i * 1_013L % 10_000_000);
+        return new Transaction(i + 1, String.format("4000%012d", i % 500), Money.ofPaisa(paisa),
+                TYPES[i % TYPES.length], Timestamp.valueOf(START.plusSeconds(i * 37L)));
+    }
+
+    private static void assertCsv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        assertEquals("id,card_number,type,amount,timestamp", reader.readLine());
+        for (int i = 0; i < ROWS; i++) {
+            Transaction expected = row(i);
+            String[] cols = reader.readLine().split(",", -1);
+            assertEquals(5, cols.length);
+            assertEquals(expected.getId(), Integer.parseInt(cols[0]));
+            assertEquals(expected.getCardNumber(), cols[1]);
+            assertEquals(expected.getType(), cols[2]);
+            assertEquals(expected.getAmount(), Money.parse(cols[3]));
+            assertEquals(expected.getTimestamp(), Timestamp.valueOf(cols[4]));
+        }
+        assertNull(reader.readLine());
+    }
+
+    private static void assertBinary(Path file) throws IOException {
+        List<Transaction> read = new ArrayList<>(ROWS);
+        assertEquals(ROWS, StatementExporter.readBinary(file, read::add));
+        assertEquals(ROWS, read.size());
+        for (int i = 0; i < ROWS; i++) {
+            Transaction expected = row(i);
+            Transaction actual = read.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getCardNumber(), actual.getCardNumber());
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getAmount(), actual.getAmount());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        }
+    }
+}
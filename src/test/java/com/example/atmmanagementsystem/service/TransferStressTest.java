@@ -0,0 +1,182 @@
+package com.example.atmmanagementsystem.service;
+
+import com.example.atmmanagementsystem.model.Account;
+import com.example.atmmanagementsystem.model.BalanceView;
+import com.example.atmmanagementsystem.model.BulkCreateResult;
+import com.example.atmmanagementsystem.model.Money;
+import com.example.atmmanagementsystem.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress test for transfers: many threads move money in both directions
+ * between a handful of hot cards, mixed with deposits and withdrawals on the
+ * same cards, then every card is checked for lost updates.
+ * <p>
+ * Each round creates fresh cards, since the daily limits (five of each kind
+ * per card) cap how much one set of cards can do. A card's expected balance
+ * is its opening balance plus every call that returned normally; it has to
+ * match both the stored balance and the card's ledger. Calls rejected by a
+ * limit rule are expected and only counted. Exits with status 1 if anything
+ * doesn't add up or a call failed with anything but a rejection.
+ * <p>
+ * It creates real accounts and ledger rows; run it against a test database.
+ * <p>
+ * Usage: {@code TransferStressTest [threads] [hotCards] [rounds]}
+ */
+public class TransferStressTest {
+
+    private static final Money OPENING_BALANCE = Money.ofTaka(20_000);
+    private static final Money AMOUNT = Money.ofTaka(500);
+    // Enough attempts to run every card into its daily limits
+    private static final int ATTEMPTS_PER_CARD = 40;
+
+    private final DatabaseAccountService service = new DatabaseAccountService();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder postings = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private int mismatches;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int hotCards = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        if (hotCards < 2) {
+            throw new IllegalArgumentException("Need at least two cards to transfer between");
+        }
+
+        TransferStressTest test = new TransferStressTest();
+        long elapsed = 0;
+        for (int round = 0; round < rounds; round++) {
+            elapsed += test.runRound(threads, hotCards, round);
+        }
+
+        double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+        long calls = test.transfers.sum() + test.postings.sum() + test.rejected.sum() + test.failed.sum();
+        System.out.printf("%d transfers, %d deposits/withdrawals, %d rejected by limits, %d failed in %.2f s%n",
+                test.transfers.sum(), test.postings.sum(), test.rejected.sum(), test.failed.sum(), seconds);
+        System.out.printf("Throughput: %.0f calls/s, %.0f transfers/s%n",
+                calls / seconds, test.transfers.sum() / seconds);
+
+        if (test.mismatches > 0 || test.failed.sum() > 0) {
+            System.out.println("FAILED: " + test.mismatches + " balance mismatch(es), "
+                    + test.failed.sum() + " failed call(s)");
+            System.exit(1);
+        }
+        System.out.println("OK: no lost updates");
+    }
+
+    /**
+     * @return nanoseconds spent moving money, account creation and checks excluded
+     */
+    private long runRound(int threads, int hotCards, int round) throws Exception {
+        List<Account> accounts = createAccounts(hotCards, round);
+        AtomicLongArray deltas = new AtomicLongArray(hotCards); // paisa, per card
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            int attemptsPerThread = Math.max(1, hotCards * ATTEMPTS_PER_CARD / threads);
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        step(accounts, deltas);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (int i = 0; i < hotCards; i++) {
+            verify(accounts.get(i).getCardNumber(), OPENING_BALANCE.plus(Money.ofPaisa(deltas.get(i))));
+        }
+        return elapsed;
+    }
+
+    private void step(List<Account> accounts, AtomicLongArray deltas) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts.size());
+        try {
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    service.deposit(accounts.get(from).getCardNumber(), AMOUNT);
+                    deltas.addAndGet(from, AMOUNT.toPaisa());
+                    postings.increment();
+                }
+                case 1 -> {
+                    service.withdraw(accounts.get(from).getCardNumber(), AMOUNT);
+                    deltas.addAndGet(from, -AMOUNT.toPaisa());
+                    postings.increment();
+                }
+                default -> {
+                    int to = (from + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+                    // Half by card, half by account number; opposing pairs are as likely as any
+                    if (random.nextBoolean()) {
+                        service.transferToCard(accounts.get(from).getCardNumber(),
+                                accounts.get(to).getCardNumber(), AMOUNT);
+                    } else {
+                        service.transferToAccount(accounts.get(from).getCardNumber(),
+                                accounts.get(to).getAccountNumber(), AMOUNT);
+                    }
+                    deltas.addAndGet(from, -AMOUNT.toPaisa());
+                    deltas.addAndGet(to, AMOUNT.toPaisa());
+                    transfers.increment();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            rejected.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            System.err.println("Call failed: " + e.getMessage());
+        }
+    }
+
+    private void verify(String cardNumber, Money expected) {
+        Money stored = service.findBalance(cardNumber).map(BalanceView::getBalance).orElse(null);
+        Money fromLedger = OPENING_BALANCE;
+        for (Transaction t : service.getTransactions(cardNumber)) {
+            fromLedger = EventSourcedBalances.isCredit(t.getType())
+                    ? fromLedger.plus(t.getAmount()) : fromLedger.minus(t.getAmount());
+        }
+        if (!expected.equals(stored) || !expected.equals(fromLedger)) {
+            mismatches++;
+            System.out.println("Mismatch on " + cardNumber + ": expected " + expected + ", stored " + stored
+                    + ", ledger " + fromLedger);
+        }
+    }
+
+    private List<Account> createAccounts(int count, int round) {
+        // Unique per run so repeated runs don't trip the phone/email/NID constraints
+        long tag = System.currentTimeMillis() % 10_000_000L;
+        List<Account> drafts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String digits = String.format("98%07d%02d%03d", tag, round % 100, i);
+            drafts.add(new Account("Stress " + i, digits, OPENING_BALANCE, "stress" + digits + "@example.com",
+                    "Other", "Stress test", null, digits, "Stress test"));
+        }
+
+        List<Account> accounts = new ArrayList<>(count);
+        for (BulkCreateResult result : service.createAccounts(drafts)) {
+            if (!result.isSuccess()) {
+                throw new IllegalStateException("Could not create stress test account: " + result.getError());
+            }
+            accounts.add(result.getAccount());
+        }
+        return accounts;
+    }
+}